@@ -0,0 +1,20 @@
+#!/bin/bash
+
+cd $(dirname $0)
+cd ..
+
+# CP=$CP:$(pwd)/classes
+CP=$CP:$(pwd)/lib/lwjgl/jar/lwjgl.jar
+CP=$CP:$(pwd)/lib/lwjgl/jar/lwjgl_util.jar
+CP=$CP:$(pwd)/lib/lwjgl/jar/jinput.jar
+
+CP=$CP:$(pwd)/dist/bifstk.jar
+
+config="config/bifstk.conf"
+
+# add --add-modules jdk.incubator.vector for SIMD span blending
+
+$JAVA_HOME/bin/java -cp $CP \
+	-Djava.awt.headless=true \
+	$@ test.SoftwareBenchmark $config
+
@@ -3,6 +3,8 @@ package bifstk;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.lwjgl.Sys;
 import org.lwjgl.input.Keyboard;
@@ -13,15 +15,27 @@ import bifstk.config.Cursors;
 import bifstk.config.Cursors.Type;
 import bifstk.config.Fonts;
 import bifstk.config.Theme;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.SceneRasterizer;
+import bifstk.jmx.Monitors;
 import bifstk.util.BifstkException;
+import bifstk.util.FrameEvent;
+import bifstk.util.FrameStats;
+import bifstk.util.FrameStats.Phase;
 import bifstk.util.Logger;
 import bifstk.util.SharedFrameException;
 import bifstk.util.ThreadAccessException;
+import bifstk.util.Tracer;
+import bifstk.wm.AnimationScheduler;
 import bifstk.wm.Area;
+import bifstk.wm.Damage;
 import bifstk.wm.Logic;
 import bifstk.wm.Renderer;
+import bifstk.wm.Scene;
+import bifstk.wm.SceneBuffer;
 import bifstk.wm.State.DockPosition;
 import bifstk.wm.Window;
+import bifstk.wm.util.PerfHud;
 
 /**
  * Main class for Bifstk
@@ -33,11 +47,30 @@ public class Bifstk {
 	/** thread in which the application will be run */
 	private static Thread runner = null;
 
+	/**
+	 * thread running the WM logic and the user callbacks: the runner thread,
+	 * or a thread of its own when {@link Config#isDisplayThreaded()}
+	 */
+	private static volatile Thread logicThread = null;
+
 	/** path to the configuration file */
 	private static String config = null;
 
 	/** exit flag : thread will stop if set to true */
-	private static boolean stop = false;
+	private static volatile boolean stop = false;
+
+	/** set when the logic thread stopped on an error */
+	private static volatile boolean failed = false;
+
+	/** set by {@link #invalidate()} to draw the whole display again */
+	private static volatile boolean invalidated = false;
+
+	/** notified to wake up the runner thread when idle */
+	private static final Object idleLock = new Object();
+
+	/** tasks waiting to run in the logic thread, see runLater */
+	private static final Queue<Runnable> tasks =
+			new ConcurrentLinkedQueue<Runnable>();
 
 	/** static pointer to the WM's logic, used by the API */
 	private static Logic logic = null;
@@ -101,15 +134,13 @@ public class Bifstk {
 				}
 
 				boolean vsync = Config.get().isDisplayVsync();
-				int fps_target = 60;
+				int fps_target = Config.get().getDisplayFps();
 				boolean capped = Config.get().isDisplayFpsCap();
 
 				String log = "Display refresh rate: ";
 				if (vsync) {
 					int freq = Display.getDisplayMode().getFrequency();
-					if (freq > 10) {
-						fps_target = freq;
-					}
+					fps_target = (freq > 10) ? freq : 60;
 					log += "vsync";
 					if (!capped)
 						Logger.warn("Framerate will be capped due to VSync");
@@ -117,44 +148,99 @@ public class Bifstk {
 					if (!capped) {
 						log += "unlimited";
 					} else {
-						fps_target = Config.get().getDisplayFps();
 						log += fps_target;
 					}
 				}
 				Logger.info(log);
 
+				if (Config.get().isDisplayJmx()) {
+					Monitors.register(logic.getState());
+				}
+
+				if (Config.get().isDisplayThreaded()) {
+					runThreaded(h, renderer, vsync, fps_target);
+					Monitors.unregister();
+					return;
+				}
+
 				// user initialization
+				long init = Tracer.begin();
 				h.init();
+				Tracer.end("Handler.init", init);
 
 				/* main loop */
 				while (!(logic.isExitRequested() || stop)) {
 
 					try {
+						long frame = FrameStats.start();
+						FrameEvent event = new FrameEvent();
+						event.begin();
+						long trace = Tracer.begin();
+
 						// poll input
+						long t = FrameStats.start();
 						Display.processMessages();
-						logic.update();
+						FrameStats.end(Phase.INPUT, t);
 
-						// foreground window: maintain framerate
-						if (Display.isActive()) {
-							renderer.render();
-							if (capped) {
-								Display.sync(fps_target);
+						update();
+
+						if (invalidated) {
+							invalidated = false;
+							Damage.addFull();
+						}
+
+						// idle: draw and swap only when something changed
+						if (Config.get().isDisplayIdle()) {
+							boolean visible = Display.isActive()
+									|| Display.isVisible() || Display.isDirty();
+							if (visible && renderer.render()) {
+								swap();
+								endFrame(frame, event, trace);
+								if (Config.get().isDisplayFpsCap()) {
+									Display.sync(fps_target);
+								}
+							} else if (AnimationScheduler.get().isAnimating()) {
+								// nothing visible changed yet
+								if (Config.get().isDisplayFpsCap()) {
+									Display.sync(fps_target);
+								}
+							} else {
+								idle(renderer.getNextUpdate());
 							}
+							continue;
+						}
+
+						// foreground window: maintain framerate
+						boolean active = Display.isActive();
+						boolean drawn = false;
+						if (active) {
+							drawn = renderer.render();
 						}
-						// background window: lazy update
+						// background window: lazy update, not measured
 						else {
+							frame = 0;
 							try {
 								Thread.sleep(100);
 							} catch (InterruptedException e) {
 							}
 							// do not repaint if window is not visible
 							if (Display.isVisible() || Display.isDirty()) {
-								renderer.render();
+								drawn = renderer.render();
 							}
 						}
-						
-						// swap buffers
-						Display.update(false);
+
+						// swap buffers: the back buffer is only complete when
+						// something was drawn
+						if (drawn) {
+							swap();
+							endFrame(frame, event, trace);
+						}
+
+						// without a swap, vsync does not pace the loop
+						if (active
+								&& (Config.get().isDisplayFpsCap() || !drawn)) {
+							Display.sync(fps_target);
+						}
 
 					} catch (Throwable t) {
 						Logger.error("Fatal error, exiting", t);
@@ -164,11 +250,221 @@ public class Bifstk {
 
 				}
 
+				Monitors.unregister();
 			}
 
 		});
 	}
 
+	/**
+	 * Runs the WM in a logic thread, when {@link Config#isDisplayThreaded()}
+	 * <p>
+	 * Input handling, layout, animations and user callbacks run in the logic
+	 * thread, which builds a {@link Scene} of each frame that changed. The
+	 * runner thread only pumps the input events of the display, and draws the
+	 * latest scene: a slow callback does not delay the next frame. LWJGL
+	 * queues input events under its own lock, they are read by the logic
+	 * thread as usual
+	 * 
+	 * @param h the user event handler
+	 * @param renderer renderer of the WM
+	 * @param vsync true if the swap waits for the vertical blank: the logic
+	 *            thread then always runs at most fpsTarget times per second,
+	 *            else only when {@link Config#isDisplayFpsCap()}
+	 * @param fpsTarget
+	 */
+	private static void runThreaded(final Handler h, final Renderer renderer,
+			final boolean vsync, final int fpsTarget) {
+		final SceneBuffer scenes = new SceneBuffer();
+		failed = false;
+
+		Thread worker = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				Rasterizer.setSceneRasterizer(new SceneRasterizer());
+				try {
+					// user initialization
+					long init = Tracer.begin();
+					h.init();
+					Tracer.end("Handler.init", init);
+
+					while (!(logic.isExitRequested() || stop)) {
+						update();
+
+						if (invalidated) {
+							invalidated = false;
+							Damage.addFull();
+						}
+
+						boolean built = renderer.capture(scenes
+								.getWriteScene());
+						if (built) {
+							scenes.publish();
+						}
+
+						if (Config.get().isDisplayIdle() && !built
+								&& !AnimationScheduler.get().isAnimating()) {
+							idle(renderer.getNextUpdate());
+						} else if (vsync || Config.get().isDisplayFpsCap()) {
+							Display.sync(fpsTarget);
+						}
+					}
+				} catch (Throwable t) {
+					Logger.error("Fatal error, exiting", t);
+					failed = true;
+				}
+				stop = true;
+				scenes.wake();
+			}
+		});
+		worker.setName("bifstk-logic");
+		logicThread = worker;
+		worker.start();
+
+		/* drawing loop */
+		while (!stop) {
+			try {
+				long frame = FrameStats.start();
+				FrameEvent event = new FrameEvent();
+				event.begin();
+				long trace = Tracer.begin();
+				Display.processMessages();
+				Cursors.update();
+				FrameStats.end(Phase.INPUT, frame);
+
+				// scenes wait for the display to show again
+				if (!(Display.isActive() || Display.isVisible() || Display
+						.isDirty())) {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+					}
+					continue;
+				}
+
+				// the back buffer can be completed without a new scene
+				long wait = renderer.isPending() ? 0 : Config.get()
+						.getDisplayIdlePoll();
+				Scene scene = scenes.take(wait);
+				// waiting for the scene is not part of the frame
+				if (scene != null) {
+					frame = FrameStats.start();
+					event.begin();
+					trace = Tracer.begin();
+				}
+				if (renderer.draw(scene)) {
+					swap();
+					endFrame(frame, event, trace);
+				}
+			} catch (Throwable t) {
+				Logger.error("Fatal error, exiting", t);
+				failed = true;
+				stop = true;
+			}
+		}
+
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+		}
+		if (failed) {
+			Display.destroy();
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Updates the WM logic and the animations
+	 */
+	private static void update() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+
+		long t = FrameStats.start();
+		logic.update();
+		FrameStats.end(Phase.LOGIC, t);
+
+		t = FrameStats.start();
+		AnimationScheduler.get().update();
+		FrameStats.end(Phase.ANIMATIONS, t);
+	}
+
+	/**
+	 * Swaps the buffers of the display
+	 */
+	private static void swap() {
+		long t = FrameStats.start();
+		Display.update(false);
+		FrameStats.end(Phase.SWAP, t);
+	}
+
+	/**
+	 * Records a frame that was drawn and swapped
+	 * 
+	 * @param frame value of {@link FrameStats#start()} when it began
+	 * @param event recording event begun with the frame
+	 * @param trace value of {@link Tracer#begin()} when it began
+	 */
+	private static void endFrame(long frame, FrameEvent event, long trace) {
+		FrameStats.end(Phase.FRAME, frame);
+		Tracer.endFrame(trace);
+		if (Config.get().isWmHud()) {
+			PerfHud.publish();
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			Rasterizer r = Rasterizer.getInstance();
+			event.quads = r.getQuadCount();
+			event.drawCalls = r.getDrawCount();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Blocks the thread running the WM logic while nothing needs to be drawn
+	 * <p>
+	 * LWJGL cannot wait for input events: they are polled every
+	 * {@link Config#getDisplayIdlePoll()} ms, which costs next to nothing
+	 * compared to drawing a frame
+	 * 
+	 * @param next time at which a Frame will change on its own, 0 if none
+	 */
+	private static void idle(long next) {
+		long wait = Config.get().getDisplayIdlePoll();
+		if (next != 0) {
+			wait = Math.max(1, Math.min(wait, next - Sys.getTime()));
+		}
+		synchronized (idleLock) {
+			if (invalidated || stop || !tasks.isEmpty())
+				return;
+			try {
+				idleLock.wait(wait);
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+
+	/**
+	 * Requests the whole display to be drawn again, ie. when the content
+	 * drawn by the {@link Root} changed
+	 * <p>
+	 * Can be called from any thread. Only needed in idle mode: the WM is
+	 * otherwise drawn continuously, and changes to Windows and Widgets are
+	 * tracked automatically
+	 * 
+	 * @see Config#isDisplayIdle()
+	 */
+	public static void invalidate() {
+		synchronized (idleLock) {
+			invalidated = true;
+			idleLock.notifyAll();
+		}
+	}
+
 	/**
 	 * Starts Bifstk in a new Thread
 	 * <p>
@@ -227,16 +523,35 @@ public class Bifstk {
 
 		Bifstk.config = configFile;
 		internalStart(h, r);
+		logicThread = runner;
 		runner.setName("bifstk-runner");
 		runner.start();
 	}
 
+	/**
+	 * Runs a task in the thread of the WM logic, before its next update
+	 * <p>
+	 * Can be called from any thread, ie. to change the configuration or the
+	 * WM from outside the Bifstk thread
+	 * 
+	 * @param task the task to run
+	 */
+	public static void runLater(Runnable task) {
+		tasks.add(task);
+		synchronized (idleLock) {
+			idleLock.notifyAll();
+		}
+	}
+
 	/**
 	 * Asynchronously stops the Bifstk thread, can be called from outside the
 	 * Bifstk thread
 	 */
 	public static void stop() {
 		stop = true;
+		synchronized (idleLock) {
+			idleLock.notifyAll();
+		}
 	}
 
 	/**
@@ -322,12 +637,13 @@ public class Bifstk {
 	}
 
 	/**
-	 * Checks that the current Thread is the Bifstk thread
+	 * Checks that the current Thread is the Bifstk thread, the one that runs
+	 * the WM logic
 	 * 
 	 * @throws ThreadAccessException
 	 */
 	private static void checkThread() throws ThreadAccessException {
-		if (!Thread.currentThread().equals(Bifstk.runner)) {
+		if (!Thread.currentThread().equals(Bifstk.logicThread)) {
 			throw new ThreadAccessException(
 					"This method cannot be called outside the Bifstk thread");
 		}
@@ -364,6 +680,10 @@ public class Bifstk {
 		Logger.debug("PWD:        " + System.getProperty("user.dir"));
 		
 		Logger.info("Config loaded from: " + config);
+
+		// decode cursors and rasterize glyphs while the display is created
+		Cursors.preload(Config.get().getCursorsPath());
+		Fonts.preload();
 	}
 
 	/**
@@ -4,6 +4,15 @@ package bifstk;
  * Client-side renderer
  * <p>
  * Renders the Root of the WM
+ * <p>
+ * When {@link bifstk.config.Config#isDisplayIdle()}, the Root is only drawn
+ * when the WM changes: call {@link Bifstk#invalidate()} when its content
+ * does. Otherwise, as the Root may draw anywhere at each frame, the whole
+ * display is drawn again at each frame, whatever the damage of the WM
+ * <p>
+ * When {@link bifstk.config.Config#isDisplayThreaded()}, the Root is called
+ * from the logic thread and is captured with the WM: it must only draw
+ * through {@link bifstk.gl.Rasterizer#getInstance()}, without GL calls
  * 
  */
 public interface Root {
@@ -10,8 +10,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 
+import bifstk.gl.Rasterizer;
 import bifstk.gl.Util;
 import bifstk.util.BifstkException;
+import bifstk.wm.Frame;
 
 /**
  * Bifstk's Configuration facility
@@ -241,6 +243,208 @@ public class Config {
 				displayAntialiasSamplesMin, displayAntialiasSamplesMax);
 	}
 
+	private Rasterizer.Backend displayRasterizer = Rasterizer.Backend.AUTO;
+
+	/**
+	 * @return the backend used for 2D drawing operations
+	 */
+	public Rasterizer.Backend getDisplayRasterizer() {
+		return this.displayRasterizer;
+	}
+
+	/**
+	 * @param backend the backend used for 2D drawing operations; only read
+	 *            when the display is created
+	 */
+	public void setDisplayRasterizer(Rasterizer.Backend backend) {
+		this.displayRasterizer = backend;
+	}
+
+	private int displayRasterizerThreads = 0;
+
+	/**
+	 * @return the number of threads used by the software rasterizer, 0 for
+	 *         one per available processor
+	 */
+	public int getDisplayRasterizerThreads() {
+		return this.displayRasterizerThreads;
+	}
+
+	/**
+	 * @param threads the number of threads used by the software rasterizer,
+	 *            0 for one per available processor
+	 */
+	public void setDisplayRasterizerThreads(int threads) {
+		this.displayRasterizerThreads = Math.max(0, threads);
+	}
+
+	private boolean displayRasterizerSimd = false;
+
+	/**
+	 * @return true if the software rasterizer blends with the Vector API
+	 *         when the module is available
+	 */
+	public boolean isDisplayRasterizerSimd() {
+		return this.displayRasterizerSimd;
+	}
+
+	/**
+	 * @param simd true to blend with the Vector API in the software
+	 *            rasterizer; only read when the rasterizer is created
+	 */
+	public void setDisplayRasterizerSimd(boolean simd) {
+		this.displayRasterizerSimd = simd;
+	}
+
+	private boolean displayIdle;
+
+	/**
+	 * @return true if frames are only drawn when input, an invalidation or an
+	 *         animation changes the display, false to draw at a constant rate
+	 */
+	public boolean isDisplayIdle() {
+		return this.displayIdle;
+	}
+
+	/**
+	 * @param b true if frames are only drawn when input, an invalidation or
+	 *            an animation changes the display, false to draw at a
+	 *            constant rate
+	 */
+	public void setDisplayIdle(boolean b) {
+		this.displayIdle = b;
+	}
+
+	private int displayIdlePoll;
+
+	/**
+	 * @return milliseconds between two input polls when nothing is drawn
+	 */
+	public int getDisplayIdlePoll() {
+		return this.displayIdlePoll;
+	}
+
+	/**
+	 * @param ms milliseconds between two input polls when nothing is drawn
+	 */
+	public void setDisplayIdlePoll(int ms) {
+		this.displayIdlePoll = Math.max(1, ms);
+	}
+
+	private boolean displayThreaded;
+
+	/**
+	 * @return true if input, layout and user callbacks run in a logic thread
+	 *         that hands snapshots of the display to the drawing thread
+	 */
+	public boolean isDisplayThreaded() {
+		return this.displayThreaded;
+	}
+
+	/**
+	 * @param b true if input, layout and user callbacks run in a logic thread
+	 *            that hands snapshots of the display to the drawing thread
+	 */
+	public void setDisplayThreaded(boolean b) {
+		this.displayThreaded = b;
+	}
+
+	private boolean displayStats;
+
+	/**
+	 * @return true if the duration of each phase of the frames is measured
+	 * @see bifstk.util.FrameStats
+	 */
+	public boolean isDisplayStats() {
+		return this.displayStats;
+	}
+
+	/**
+	 * @param b true to measure the duration of each phase of the frames
+	 * @see bifstk.util.FrameStats
+	 */
+	public void setDisplayStats(boolean b) {
+		this.displayStats = b;
+	}
+
+	private boolean displayJmx;
+
+	/**
+	 * @return true if the MBeans monitoring Bifstk are registered in the
+	 *         platform MBean server
+	 * @see bifstk.jmx.Monitors
+	 */
+	public boolean isDisplayJmx() {
+		return this.displayJmx;
+	}
+
+	/**
+	 * @param b true to register the MBeans monitoring Bifstk in the platform
+	 *            MBean server, read on startup
+	 * @see bifstk.jmx.Monitors
+	 */
+	public void setDisplayJmx(boolean b) {
+		this.displayJmx = b;
+	}
+
+	private boolean displayTrace;
+
+	/**
+	 * @return true if spans of the frames are recorded
+	 * @see bifstk.util.Tracer
+	 */
+	public boolean isDisplayTrace() {
+		return this.displayTrace;
+	}
+
+	/**
+	 * @param b true to record spans of the frames
+	 * @see bifstk.util.Tracer
+	 */
+	public void setDisplayTrace(boolean b) {
+		this.displayTrace = b;
+	}
+
+	private int displayTraceThreshold;
+
+	/**
+	 * @return milliseconds above which a frame writes the recorded spans to
+	 *         a file, 0 to only write them on demand
+	 * @see bifstk.util.Tracer
+	 */
+	public int getDisplayTraceThreshold() {
+		return this.displayTraceThreshold;
+	}
+
+	/**
+	 * @param ms milliseconds above which a frame writes the recorded spans
+	 *            to a file, 0 to only write them on demand
+	 * @see bifstk.util.Tracer
+	 */
+	public void setDisplayTraceThreshold(int ms) {
+		this.displayTraceThreshold = Math.max(0, ms);
+	}
+
+	private String displayTracePath;
+
+	/**
+	 * @return path of the trace files, completed with the time they are
+	 *         written and <code>.json</code>
+	 * @see bifstk.util.Tracer
+	 */
+	public String getDisplayTracePath() {
+		return this.displayTracePath;
+	}
+
+	/**
+	 * @param path path of the trace files, completed with the time they are
+	 *            written and <code>.json</code>
+	 * @see bifstk.util.Tracer
+	 */
+	public void setDisplayTracePath(String path) {
+		this.displayTracePath = path;
+	}
+
 	private String fontPath;
 
 	/**
@@ -290,6 +494,65 @@ public class Config {
 		this.fontSizeSmall = Util.clampi(size, fontSizeMin, fontSizeMax);
 	}
 
+	private int fontCache;
+	private static final int fontCacheMin = 16, fontCacheMax = 4096;
+
+	/**
+	 * @return maximum number of glyphs outside of Latin-1 rasterized in the
+	 *         atlas for each font, the least recently used being evicted
+	 * @see bifstk.gl.TrueTypeFont
+	 */
+	public int getFontCache() {
+		return this.fontCache;
+	}
+
+	/**
+	 * @param glyphs maximum number of glyphs outside of Latin-1 rasterized in
+	 *            the atlas for each font, used by the fonts loaded afterwards;
+	 *            clamped between 16 and 4096
+	 * @see bifstk.gl.TrueTypeFont
+	 */
+	public void setFontCache(int glyphs) {
+		this.fontCache = Util.clampi(glyphs, fontCacheMin, fontCacheMax);
+	}
+
+	private boolean fontSheets;
+
+	/**
+	 * @return true if the preloaded glyphs of the fonts are stored on disk
+	 *         and read at the next start instead of being rasterized
+	 * @see bifstk.gl.TrueTypeFont
+	 */
+	public boolean isFontSheets() {
+		return this.fontSheets;
+	}
+
+	/**
+	 * @param b true to store the preloaded glyphs of the fonts on disk and
+	 *            read them at the next start
+	 * @see bifstk.gl.TrueTypeFont
+	 */
+	public void setFontSheets(boolean b) {
+		this.fontSheets = b;
+	}
+
+	private String fontSheetsPath;
+
+	/**
+	 * @return directory where the preloaded glyphs of the fonts are stored
+	 */
+	public String getFontSheetsPath() {
+		return this.fontSheetsPath;
+	}
+
+	/**
+	 * @param path directory where the preloaded glyphs of the fonts are
+	 *            stored
+	 */
+	public void setFontSheetsPath(String path) {
+		this.fontSheetsPath = path;
+	}
+
 	private String loggerDateFormat;
 
 	/**
@@ -451,6 +714,7 @@ public class Config {
 	 */
 	public void setWmDebugLayout(boolean d) {
 		this.wmDebugLayout = d;
+		this.invalidate();
 	}
 
 	private boolean wmFocusFollowmouse;
@@ -586,6 +850,7 @@ public class Config {
 	 */
 	public void setWmAnimations(boolean b) {
 		this.wmAnimations = b;
+		this.invalidate();
 	}
 
 	private int wmAnimationsLength;
@@ -604,6 +869,180 @@ public class Config {
 		this.wmAnimationsLength = ms;
 	}
 
+	private boolean wmRetained;
+
+	/**
+	 * @return true if the geometry or the texture cache of Frames that did
+	 *         not change since the last frame is reused instead of being drawn
+	 *         again
+	 */
+	public boolean isWmRetained() {
+		return this.wmRetained;
+	}
+
+	/**
+	 * @param b true if the geometry or the texture cache of Frames that did
+	 *            not change since the last frame is reused instead of being
+	 *            drawn again
+	 */
+	public void setWmRetained(boolean b) {
+		this.wmRetained = b;
+		this.invalidate();
+	}
+
+	private boolean wmTextureCache;
+
+	/**
+	 * @return true if Frames with a texture cache are composited from an
+	 *         offscreen texture on hardware rasterizers, else their geometry
+	 *         is reused
+	 * @see bifstk.wm.Frame#setTextureCache(boolean)
+	 */
+	public boolean isWmTextureCache() {
+		return this.wmTextureCache;
+	}
+
+	/**
+	 * @param b true if Frames with a texture cache are composited from an
+	 *            offscreen texture on hardware rasterizers, else their
+	 *            geometry is reused
+	 * @see bifstk.wm.Frame#setTextureCache(boolean)
+	 */
+	public void setWmTextureCache(boolean b) {
+		this.wmTextureCache = b;
+		this.invalidate();
+	}
+
+	private boolean wmDamage;
+
+	/**
+	 * @return true if only the regions of the display that changed since the
+	 *         last frame are drawn again
+	 */
+	public boolean isWmDamage() {
+		return this.wmDamage;
+	}
+
+	/**
+	 * @param b true if only the regions of the display that changed since the
+	 *            last frame are drawn again
+	 */
+	public void setWmDamage(boolean b) {
+		this.wmDamage = b;
+		this.invalidate();
+	}
+
+	private int wmDamageThreshold;
+
+	/**
+	 * @return percentage of the display above which the damaged region is
+	 *         ignored and the whole display is drawn again
+	 */
+	public int getWmDamageThreshold() {
+		return this.wmDamageThreshold;
+	}
+
+	/**
+	 * @param p percentage of the display above which the damaged region is
+	 *            ignored and the whole display is drawn again
+	 */
+	public void setWmDamageThreshold(int p) {
+		this.wmDamageThreshold = p;
+	}
+
+	private boolean wmDamagePreserved;
+
+	/**
+	 * By default, the WM is drawn in a buffer that keeps the last frame, then
+	 * copied to the back buffer, whose content is undefined after a swap.
+	 * When the swap exchanges the buffers, the WM can be drawn directly in
+	 * the back buffer, along with the region drawn by the last frame. Without
+	 * an offscreen buffer nor a preserved back buffer, every frame that
+	 * changed is fully drawn
+	 * 
+	 * @return true if the back buffer holds the frame before the last one
+	 *         after a swap
+	 * @see #isWmDamage()
+	 */
+	public boolean isWmDamagePreserved() {
+		return this.wmDamagePreserved;
+	}
+
+	/**
+	 * @param b true if the back buffer holds the frame before the last one
+	 *            after a swap
+	 * @see #isWmDamage()
+	 */
+	public void setWmDamagePreserved(boolean b) {
+		this.wmDamagePreserved = b;
+		this.invalidate();
+	}
+
+	private int wmThreads;
+
+	/**
+	 * @return the number of threads building the geometry of Windows in
+	 *         parallel, 0 for one per available processor, 1 to build it in
+	 *         the drawing thread
+	 */
+	public int getWmThreads() {
+		return this.wmThreads;
+	}
+
+	/**
+	 * @param threads the number of threads building the geometry of Windows
+	 *            in parallel, 0 for one per available processor, 1 to build
+	 *            it in the drawing thread
+	 */
+	public void setWmThreads(int threads) {
+		this.wmThreads = Math.max(0, threads);
+	}
+
+	private boolean wmDebugDamage;
+
+	/**
+	 * @return true if the regions of the display drawn again are highlighted
+	 */
+	public boolean isWmDebugDamage() {
+		return this.wmDebugDamage;
+	}
+
+	/**
+	 * @param b true if the regions of the display drawn again are highlighted
+	 */
+	public void setWmDebugDamage(boolean b) {
+		this.wmDebugDamage = b;
+		this.invalidate();
+	}
+
+	private boolean wmHud;
+
+	/**
+	 * @return true if the performance overlay is displayed
+	 * @see bifstk.wm.util.PerfHud
+	 */
+	public boolean isWmHud() {
+		return this.wmHud;
+	}
+
+	/**
+	 * @param b true to display the performance overlay
+	 * @see bifstk.wm.util.PerfHud
+	 */
+	public void setWmHud(boolean b) {
+		this.wmHud = b;
+	}
+
+	/**
+	 * Draws all the Frames again when a setting that changes how they are
+	 * drawn is modified in the active configuration
+	 */
+	private void invalidate() {
+		if (this == instance) {
+			Frame.invalidateAll();
+		}
+	}
+
 	private void readProps(Map<ConfigProperty, String> props)
 			throws BifstkException {
 		for (Entry<ConfigProperty, String> prop : props.entrySet()) {
@@ -638,6 +1077,40 @@ public class Config {
 				case displayAntialiasSamples:
 					setDisplayAntialiasSamples(Integer.parseInt(sval));
 					break;
+				case displayRasterizer:
+					setDisplayRasterizer(Rasterizer.Backend.valueOf(sval.trim()
+							.toUpperCase()));
+					break;
+				case displayRasterizerThreads:
+					setDisplayRasterizerThreads(Integer.parseInt(sval));
+					break;
+				case displayRasterizerSimd:
+					setDisplayRasterizerSimd(Boolean.parseBoolean(sval));
+					break;
+				case displayIdle:
+					setDisplayIdle(Boolean.parseBoolean(sval));
+					break;
+				case displayIdlePoll:
+					setDisplayIdlePoll(Integer.parseInt(sval));
+					break;
+				case displayThreaded:
+					setDisplayThreaded(Boolean.parseBoolean(sval));
+					break;
+				case displayStats:
+					setDisplayStats(Boolean.parseBoolean(sval));
+					break;
+				case displayJmx:
+					setDisplayJmx(Boolean.parseBoolean(sval));
+					break;
+				case displayTrace:
+					setDisplayTrace(Boolean.parseBoolean(sval));
+					break;
+				case displayTraceThreshold:
+					setDisplayTraceThreshold(Integer.parseInt(sval));
+					break;
+				case displayTracePath:
+					setDisplayTracePath(sval.trim());
+					break;
 				case gfxFontPath:
 					setFontPath(sval);
 					break;
@@ -647,6 +1120,15 @@ public class Config {
 				case gfxFontSizeSmall:
 					setFontSizeSmall(Integer.parseInt(sval));
 					break;
+				case gfxFontCache:
+					setFontCache(Integer.parseInt(sval));
+					break;
+				case gfxFontSheets:
+					setFontSheets(Boolean.parseBoolean(sval));
+					break;
+				case gfxFontSheetsPath:
+					setFontSheetsPath(sval.trim());
+					break;
 				case loggerDateFormat:
 					setLoggerDateFormat(sval);
 					break;
@@ -704,6 +1186,30 @@ public class Config {
 				case wmAnimationsLength:
 					setWmAnimationsLength(Integer.parseInt(sval));
 					break;
+				case wmRetained:
+					setWmRetained(Boolean.parseBoolean(sval));
+					break;
+				case wmTextureCache:
+					setWmTextureCache(Boolean.parseBoolean(sval));
+					break;
+				case wmDamage:
+					setWmDamage(Boolean.parseBoolean(sval));
+					break;
+				case wmDamageThreshold:
+					setWmDamageThreshold(Integer.parseInt(sval));
+					break;
+				case wmDamagePreserved:
+					setWmDamagePreserved(Boolean.parseBoolean(sval));
+					break;
+				case wmThreads:
+					setWmThreads(Integer.parseInt(sval));
+					break;
+				case wmDebugDamage:
+					setWmDebugDamage(Boolean.parseBoolean(sval));
+					break;
+				case wmHud:
+					setWmHud(Boolean.parseBoolean(sval));
+					break;
 				}
 			} catch (Throwable t) {
 				throw new BifstkException("Could not read value for "
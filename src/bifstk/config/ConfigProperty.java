@@ -46,6 +46,28 @@ public enum ConfigProperty {
 	displayVsync("display.vsync"),
 	/** INT number of antialias samples for Multisampling */
 	displayAntialiasSamples("display.antialias.samples"),
+	/** STRING 2D backend: auto, legacy, vbo or software */
+	displayRasterizer("display.rasterizer"),
+	/** INT threads used by the software rasterizer, 0 for one per core */
+	displayRasterizerThreads("display.rasterizer.threads"),
+	/** BOOL blend with the Vector API in the software rasterizer if present */
+	displayRasterizerSimd("display.rasterizer.simd"),
+	/** BOOL only draw when input, invalidation or animations require it */
+	displayIdle("display.idle"),
+	/** INT milliseconds between two input polls when idle */
+	displayIdlePoll("display.idle.poll"),
+	/** BOOL run input handling and layout in a thread apart from drawing */
+	displayThreaded("display.threaded"),
+	/** BOOL measure the duration of each phase of the frames */
+	displayStats("display.stats"),
+	/** BOOL register MBeans to monitor the display and the WM with JMX */
+	displayJmx("display.jmx"),
+	/** BOOL record spans of the frames to be written as a Chrome trace */
+	displayTrace("display.trace"),
+	/** INT milliseconds above which a frame dumps the trace, 0 for never */
+	displayTraceThreshold("display.trace.threshold"),
+	/** STRING path of the trace files, completed with a time and .json */
+	displayTracePath("display.trace.path"),
 
 	// //////////////////////////
 	// /// Graphical resources
@@ -56,6 +78,12 @@ public enum ConfigProperty {
 	gfxFontSizeSmall("gfx.font.size.small"),
 	/** INT point size of the normal font size */
 	gfxFontSizeNormal("gfx.font.size.normal"),
+	/** INT glyphs outside of Latin-1 kept in the atlas for each font */
+	gfxFontCache("gfx.font.cache"),
+	/** BOOL store the preloaded glyphs to read them at the next start */
+	gfxFontSheets("gfx.font.sheets"),
+	/** STRING directory of the stored glyphs */
+	gfxFontSheetsPath("gfx.font.sheets.path"),
 	/** STRING Path to the directory containing the mouse cursor bitmaps */
 	cursorsPath("gfx.cursors.path"),
 	/** STRING Path to the theme file */
@@ -83,7 +111,23 @@ public enum ConfigProperty {
 	/** BOOL enable animations */
 	wmAnimations("wm.animations"),
 	/** INT length in milliseconds for animations */
-	wmAnimationsLength("wm.animations.length");
+	wmAnimationsLength("wm.animations.length"),
+	/** BOOL replay the geometry or texture of frames that did not change */
+	wmRetained("wm.retained"),
+	/** BOOL composite the frames asking for it from offscreen textures */
+	wmTextureCache("wm.texturecache"),
+	/** BOOL redraw only the regions of the display that changed */
+	wmDamage("wm.damage"),
+	/** INT percentage of the display above which damage is fully redrawn */
+	wmDamageThreshold("wm.damage.threshold"),
+	/** BOOL draw in the back buffer, holding the frame before the last */
+	wmDamagePreserved("wm.damage.preserved"),
+	/** INT threads building Windows, 0 for one per core, 1 for none */
+	wmThreads("wm.threads"),
+	/** BOOL flashes the regions of the display that are redrawn */
+	wmDebugDamage("wm.debug.damage"),
+	/** BOOL shows the performance overlay, toggled with F12 */
+	wmHud("wm.hud");
 
 	private String property = null;
 
@@ -4,8 +4,13 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.imageio.ImageIO;
 
@@ -60,13 +65,25 @@ public class Cursors {
 	/** currently used cursor */
 	private Type current = null;
 
+	/** cursor requested by the logic thread, displayed by the display thread */
+	private volatile Type requested = null;
+
+	/** images decoded by {@link #preload(String)}, or null */
+	private static ForkJoinTask<Map<String, BufferedImage>> pending = null;
+
+	/** directory given to {@link #preload(String)} */
+	private static String pendingPath = null;
+
 	/**
 	 * Default constructor
 	 * 
 	 * @param path path to the directory containing the cursors
+	 * @param images images already decoded by absolute path of their file, or
+	 *            null
 	 * @throws BifstkException
 	 */
-	private Cursors(String path) throws BifstkException {
+	private Cursors(String path, Map<String, BufferedImage> images)
+			throws BifstkException {
 		this.cursors = new HashMap<Type, Cursor>();
 
 		File dir = new File(path);
@@ -101,7 +118,7 @@ public class Cursors {
 				// cursor = CursorLoader.get().getCursor(cur.getAbsolutePath(),
 				// xHotspot, yHotspot);
 				cursor = this.loadCursor(cur.getAbsolutePath(), xHotspot,
-						yHotspot);
+						yHotspot, images);
 			} catch (Exception e) {
 				throw new BifstkException("Error generating cursor", e);
 			}
@@ -122,10 +139,14 @@ public class Cursors {
 		}
 	}
 
-	private Cursor loadCursor(String path, int xHotspot, int yHotspot)
-			throws IOException, LWJGLException {
+	private Cursor loadCursor(String path, int xHotspot, int yHotspot,
+			Map<String, BufferedImage> images) throws IOException,
+			LWJGLException {
 
-		BufferedImage img = ImageIO.read(new File(path));
+		BufferedImage img = (images != null) ? images.get(path) : null;
+		if (img == null) {
+			img = ImageIO.read(new File(path));
+		}
 		ByteBuffer byteBuf = Util.imageToByteBuffer(img, true);
 
 		return new Cursor(Util.npot(img.getWidth()),
@@ -140,6 +161,32 @@ public class Cursors {
 	 */
 	public static void setCursor(Type type) {
 		check();
+		// the native cursor belongs to the display thread
+		if (Config.get().isDisplayThreaded()) {
+			instance.requested = type;
+			return;
+		}
+		apply(type);
+	}
+
+	/**
+	 * Displays the cursor last requested by {@link #setCursor(Type)}, when
+	 * {@link Config#isDisplayThreaded()}
+	 * <p>
+	 * Called by the display thread
+	 */
+	public static void update() {
+		check();
+		Type type = instance.requested;
+		if (type != null) {
+			apply(type);
+		}
+	}
+
+	/**
+	 * @param type cursor to display
+	 */
+	private static void apply(Type type) {
 		if (type.equals(instance.current)) {
 			return;
 		}
@@ -183,7 +230,70 @@ public class Cursors {
 	 * @throws BifstkException
 	 */
 	public static void load(String path) throws BifstkException {
-		instance = new Cursors(path);
+		Map<String, BufferedImage> images = null;
+		if (pending != null) {
+			if (path.equals(pendingPath)) {
+				images = pending.join();
+			}
+			pending = null;
+			pendingPath = null;
+		}
+		instance = new Cursors(path, images);
 		Logger.debug("Cursors loaded from: " + path);
 	}
+
+	/**
+	 * Starts decoding the cursor images in the background, so that
+	 * {@link #load(String)} only has to create the native cursors
+	 * <p>
+	 * Optional, can be called from any thread
+	 * 
+	 * @param path path to the directory containing the cursor files
+	 */
+	public static void preload(final String path) {
+		pendingPath = path;
+		pending = ForkJoinPool.commonPool().submit(
+				new Callable<Map<String, BufferedImage>>() {
+					@Override
+					public Map<String, BufferedImage> call() {
+						return read(path);
+					}
+				});
+	}
+
+	/**
+	 * Decodes the images of a directory concurrently
+	 * 
+	 * @param path path to the directory
+	 * @return the images by absolute path of their file, without those that
+	 *         could not be decoded: {@link #load(String)} reports them
+	 */
+	private static Map<String, BufferedImage> read(String path) {
+		Map<String, BufferedImage> images = new HashMap<String, BufferedImage>();
+		File[] files = new File(path).listFiles();
+		if (files == null) {
+			return images;
+		}
+
+		List<ForkJoinTask<BufferedImage>> tasks = new ArrayList<ForkJoinTask<BufferedImage>>();
+		for (final File f : files) {
+			tasks.add(ForkJoinTask.adapt(new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() throws IOException {
+					return f.isFile() ? ImageIO.read(f) : null;
+				}
+			}).fork());
+		}
+		for (int i = 0; i < files.length; i++) {
+			try {
+				BufferedImage img = tasks.get(i).join();
+				if (img != null) {
+					images.put(files[i].getAbsolutePath(), img);
+				}
+			} catch (RuntimeException e) {
+				// read again by load
+			}
+		}
+		return images;
+	}
 }
@@ -2,8 +2,16 @@ package bifstk.config;
 
 import java.awt.Font;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
 
 import bifstk.gl.TrueTypeFont;
+import bifstk.gl.TrueTypeFont.Glyphs;
 import bifstk.util.BifstkException;
 import bifstk.util.Logger;
 
@@ -19,30 +27,118 @@ public class Fonts {
 
 	private Font loadedFont = null;
 
-	private Fonts() {
+	/** glyphs being prepared by {@link #preload()}, or null */
+	private static ForkJoinTask<Glyphs[]> pending = null;
+
+	/**
+	 * @param glyphs glyphs of the normal and small fonts
+	 */
+	private Fonts(Glyphs[] glyphs) {
+		int cache = Config.get().getFontCache();
+
+		this.loadedFont = glyphs[0].getFont();
+		this.normal = new TrueTypeFont(glyphs[0], cache);
+		this.small = new TrueTypeFont(glyphs[1], cache);
+	}
+
+	/**
+	 * Reads the font file and rasterizes the glyphs of both sizes
+	 * concurrently, without touching the GL context
+	 * 
+	 * @return glyphs of the normal and small fonts
+	 */
+	private static Glyphs[] prepare() {
 		Font f;
 		String path = Config.get().getFontPath();
 		int normalSize = Config.get().getFontSizeNormal();
 		int smallSize = Config.get().getFontSizeSmall();
+		File sheets = null;
+		String source = null;
 
 		try {
 			f = Font.createFont(Font.TRUETYPE_FONT, new File(path));
 			f = f.deriveFont(Font.PLAIN, normalSize);
+
+			if (Config.get().isFontSheets()) {
+				try {
+					source = hash(new File(path));
+					sheets = new File(Config.get().getFontSheetsPath());
+				} catch (IOException e) {
+					Logger.warn("Could not hash font " + path, e);
+				}
+			}
 		} catch (Exception e) {
 			Logger.error("Could not load font " + path + ", defaulting to '"
 					+ defaultFont + "'", e);
 			f = new Font("Arial", Font.PLAIN, normalSize);
 		}
-		this.loadedFont = f;
 
-		this.normal = new TrueTypeFont(f, true);
+		final Font smallFont = f.deriveFont(Font.PLAIN, smallSize);
+		final File smallSheets = sheets;
+		final String smallSource = source;
+		ForkJoinTask<Glyphs> small = ForkJoinTask.adapt(
+				new Callable<Glyphs>() {
+					@Override
+					public Glyphs call() {
+						return TrueTypeFont.prepare(smallFont, true, null,
+								smallSheets, smallSource);
+					}
+				}).fork();
+
+		Glyphs normal = TrueTypeFont.prepare(f, true, null, sheets, source);
+		return new Glyphs[] { normal, small.join() };
+	}
+
+	/**
+	 * @param file a font file
+	 * @return identifies the content of the file
+	 * @throws IOException the file could not be read
+	 */
+	private static String hash(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buf = new byte[65536];
+		InputStream in = new FileInputStream(file);
+		try {
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				crc.update(buf, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return Long.toHexString(crc.getValue()) + "-" + file.length();
+	}
 
-		f = f.deriveFont(Font.PLAIN, smallSize);
-		this.small = new TrueTypeFont(f, true);
+	/**
+	 * Starts reading the font file and rasterizing the glyphs in the
+	 * background, so that {@link #load()} only has to put them in the atlas
+	 * <p>
+	 * Optional, can be called from any thread once the configuration is set
+	 */
+	public static void preload() {
+		pending = ForkJoinPool.commonPool().submit(new Callable<Glyphs[]>() {
+			@Override
+			public Glyphs[] call() {
+				return prepare();
+			}
+		});
 	}
 
+	/**
+	 * Loads the fonts in the atlas, waiting for {@link #preload()} if it was
+	 * called: must be called from the thread of the GL context
+	 * 
+	 * @throws BifstkException
+	 */
 	public static void load() throws BifstkException {
-		instance = new Fonts();
+		Glyphs[] glyphs;
+		if (pending != null) {
+			glyphs = pending.join();
+			pending = null;
+		} else {
+			glyphs = prepare();
+		}
+		instance = new Fonts(glyphs);
 
 		String strStyle;
 		if (instance.loadedFont.isBold()) {
@@ -46,24 +46,25 @@ public class TextureLoader {
 			throw new BifstkException("Failed to load texture map at " + path,
 					e);
 		}
-		Atlas.getInstance().load(img, img.getHeight());
+		Image map = Atlas.getInstance().load(img, img.getWidth(),
+				img.getHeight());
 
 		// this is hardcoded, deal with it
-		this.blank = new Image(323, 147, 16, 16);
+		this.blank = map.getRegion(323, 147, 16, 16);
 
-		this.bifstk256 = new Image(1, 1, 256, 256);
-		this.bifstk128 = new Image(258, 1, 128, 128);
-		this.bifstk64 = new Image(258, 130, 64, 64);
-		this.bifstk32 = new Image(258, 195, 32, 32);
-		this.bifstk16 = new Image(291, 196, 16, 16);
+		this.bifstk256 = map.getRegion(1, 1, 256, 256);
+		this.bifstk128 = map.getRegion(258, 1, 128, 128);
+		this.bifstk64 = map.getRegion(258, 130, 64, 64);
+		this.bifstk32 = map.getRegion(258, 195, 32, 32);
+		this.bifstk16 = map.getRegion(291, 196, 16, 16);
 
-		this.shadowLeft = new Image(323, 130, 16, 16);
-		this.shadowTopLeft = new Image(340, 130, 16, 16);
+		this.shadowLeft = map.getRegion(323, 130, 16, 16);
+		this.shadowTopLeft = map.getRegion(340, 130, 16, 16);
 
-		this.windowMaximize = new Image(357, 130, 12, 12);
-		this.windowClose = new Image(370, 130, 12, 12);
+		this.windowMaximize = map.getRegion(357, 130, 12, 12);
+		this.windowClose = map.getRegion(370, 130, 12, 12);
 
-		this.checkbox = new Image(323, 164, 10, 10);
+		this.checkbox = map.getRegion(323, 164, 10, 10);
 	}
 
 	/**
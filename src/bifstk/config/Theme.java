@@ -59,6 +59,8 @@ public class Theme {
 	public float windowAlpha;
 	public Color windowShadowFocusedColor;
 	public Color windowShadowUnfocusedColor;
+	/** windowColor with windowUnfocusedMask, read at each frame */
+	public Color windowUnfocusedColor;
 
 	public int areaBorderWidth;
 	public float[] areaUnfocusedMask;
@@ -67,6 +69,8 @@ public class Theme {
 	public Color areaBorderColor;
 	public float areaAlpha;
 	public float areaUnfocusedAlpha;
+	/** areaColor with areaUnfocusedMask, read at each frame */
+	public Color areaUnfocusedColor;
 
 	public float[] uiButtonMask;
 	public float[] uiButtonHoverMask;
@@ -149,6 +153,10 @@ public class Theme {
 		}
 
 		readProps(readProperties);
+
+		this.windowUnfocusedColor = this.windowColor
+				.add(this.windowUnfocusedMask);
+		this.areaUnfocusedColor = this.areaColor.add(this.areaUnfocusedMask);
 	}
 
 	private void readProps(Map<ThemeProperty, String> props)
@@ -1,38 +1,86 @@
 package bifstk.gl;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
+import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 
+import bifstk.util.AtlasEvent;
 import bifstk.util.Logger;
 
 /**
  * Texture atlas
  * <p>
- * All Bifstk textures are drawn in a single actual texture atlas handled by
- * this class
+ * All Bifstk textures are drawn in a few actual textures handled by this
+ * class, the pages of the atlas
  * <p>
  * This allows geometry to be rendered in batch using only one texture and
- * different coords to address the right sub texture
- * 
+ * different coords to address the right sub texture. Images are packed in
+ * the first page as long as it can grow, up to {@link #getMaxSize()}: the
+ * following pages are only created when it is full, and the quads are then
+ * drawn with one draw call per run of quads on the same page
+ *
  */
 public class Atlas {
 
+	/** size in pixels of a new page */
+	public static final int PAGE_SIZE = 512;
+
+	/**
+	 * maximum size of a page, if the GL context allows it: pages are also
+	 * kept in memory to be sent again when they grow
+	 */
+	public static final int MAX_SIZE = 4096;
+
+	/** maximum number of pages: pages are stored as bytes */
+	public static final int MAX_PAGES = 16;
+
 	/** singleton instance */
 	private static Atlas instance = null;
 
-	/** width in pixels of the atlas texture */
-	private int width = 512;
-	/** height in pixels of the atlas texture */
-	private int height = 512;
+	/**
+	 * A single texture of the atlas
+	 */
+	private static class Page {
+		/** id of the texture in the GL context, -1 without one */
+		private int texId = -1;
+		/** content of the texture */
+		private BufferedImage img = null;
+		/**
+		 * pixels sampled by the software rasterizer, null with a texture:
+		 * img as of the last upload, so that writes from other threads are
+		 * not seen in the middle of a batch
+		 */
+		private int[] pixels = null;
+		/** free space of the texture */
+		private Packer packer = null;
+		/** region written but not uploaded yet, empty if x1 <= x0 */
+		private int dirtyX0, dirtyY0, dirtyX1, dirtyY1;
+	}
+
+	/** pages of the atlas, never removed */
+	private List<Page> pages = new ArrayList<Page>();
 
-	/** id of the tex atlas in the GL context */
-	private int texId = -1;
+	/** size in pixels pages cannot grow beyond */
+	private int maxSize = MAX_SIZE;
 
-	private int offset = 0;
-	private BufferedImage img = null;
+	/** true if pages are textures in the GL context */
+	private boolean hardware = false;
+
+	/** bytes uploaded by growing pages during the last allocation */
+	private int grown = 0;
+
+	/** pixels of the regions sent to the GL context, grown when needed */
+	private IntBuffer staging = null;
 
 	/**
 	 * @return the current texture atlas
@@ -44,15 +92,24 @@ public class Atlas {
 	}
 
 	private Atlas() {
-		this.img = new BufferedImage(this.width, this.height,
-				BufferedImage.TYPE_INT_ARGB);
-		this.texId = GL11.glGenTextures();
+		// software rasterization samples the images directly
+		this.hardware = Rasterizer.getInstance().isHardware();
+		if (this.hardware) {
+			int max = GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE);
+			if (max > 0) {
+				this.maxSize = Math.min(max, MAX_SIZE);
+			}
+		}
+		this.addPage(PAGE_SIZE, PAGE_SIZE);
 	}
 
 	@Override
 	public void finalize() throws Throwable {
 		try {
-			GL11.glDeleteTextures(this.texId);
+			for (Page p : this.pages) {
+				if (p.texId != -1)
+					GL11.glDeleteTextures(p.texId);
+			}
 		} catch (Throwable e) {
 			Logger.error("Could not finalize texture", e);
 		}
@@ -60,61 +117,393 @@ public class Atlas {
 	}
 
 	/**
-	 * @return pixel width of the texture atlas
+	 * @return number of pages, at least one
 	 */
-	public int getWidth() {
-		return this.width;
+	public int getPageCount() {
+		return this.pages.size();
 	}
 
 	/**
-	 * @return pixel height of the texture atlas
+	 * @param page index of the page
+	 * @return pixel width of the page
 	 */
-	public int getHeight() {
-		return this.height;
+	public int getWidth(int page) {
+		return this.pages.get(page).img.getWidth();
 	}
 
 	/**
-	 * @return the GL texture ID of the atlas
+	 * @param page index of the page
+	 * @return pixel height of the page
 	 */
-	public int getTexId() {
-		return this.texId;
+	public int getHeight(int page) {
+		return this.pages.get(page).img.getHeight();
 	}
 
-	public int getOffset() {
-		return this.offset;
+	/**
+	 * @param page index of the page
+	 * @return the GL texture ID of the page
+	 */
+	public int getTexId(int page) {
+		return this.pages.get(page).texId;
 	}
 
 	/**
-	 * Load new textures in the Atlas
+	 * Regions written with {@link #write(Image, BufferedImage)} are only
+	 * there after the next {@link #upload()}
 	 * 
+	 * @param page index of the page
+	 * @return the ARGB pixels of the page, row major from the top left
+	 *         corner; replaced when the page grows
+	 */
+	public int[] getPixels(int page) {
+		Page p = this.pages.get(page);
+		if (p.pixels != null)
+			return p.pixels;
+		return ((DataBufferInt) p.img.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * @return size in pixels pages cannot grow beyond
+	 */
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * @return fraction of the pages holding textures, between 0 and 1
+	 */
+	public synchronized float getFill() {
+		long used = 0, total = 0;
+		for (Page p : this.pages) {
+			used += p.packer.getUsed();
+			total += (long) p.packer.getWidth() * p.packer.getHeight();
+		}
+		return (float) used / (float) total;
+	}
+
+	/**
+	 * @return number of pixels of the pages holding textures
+	 */
+	public synchronized long getUsed() {
+		long used = 0;
+		for (Page p : this.pages) {
+			used += p.packer.getUsed();
+		}
+		return used;
+	}
+
+	/**
+	 * Load new textures in the Atlas
+	 * <p>
+	 * The region is placed where it fits in an existing page, in a page grown
+	 * for it, or in a new page. Must be called from the thread of the GL
+	 * context
+	 *
 	 * @param buf a BufferedImage containing the new textures to load
-	 * @param height the height of the image; can be different than
-	 *            bug.getHeight() if this buffered image is higher than the
-	 *            actual height of the content
+	 * @param width width of the region of buf to load, from its top left
+	 *            corner
+	 * @param height height of the region of buf to load
+	 * @return the loaded region in the atlas: images in buf are obtained with
+	 *         {@link Image#getRegion(int, int, int, int)}
+	 * @throws IllegalArgumentException the region is larger than
+	 *             {@link #getMaxSize()}
+	 * @throws IllegalStateException all {@link #MAX_PAGES} pages are full
+	 */
+	public synchronized Image load(BufferedImage buf, int width, int height) {
+		width = Math.max(1, Math.min(width, buf.getWidth()));
+		height = Math.max(1, Math.min(height, buf.getHeight()));
+
+		AtlasEvent event = new AtlasEvent();
+		event.begin();
+
+		this.grown = 0;
+		Image region = this.allocate(width, height);
+
+		Page p = this.pages.get(region.getPage());
+		int x = region.getTexX(), y = region.getTexY();
+		Graphics2D g = (Graphics2D) p.img.getGraphics();
+		g.drawImage(buf, x, y, x + width, y + height, 0, 0, width, height,
+				null);
+		g.dispose();
+
+		int bytes = this.grown + this.update(p, x, y, width, height);
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.page = region.getPage();
+			event.width = width;
+			event.height = height;
+			event.bytes = bytes;
+			event.commit();
+		}
+
+		return region;
+	}
+
+	/**
+	 * Reserves a region of the Atlas to be filled later with
+	 * {@link #write(Image, BufferedImage)}
+	 * <p>
+	 * Placed like the regions of {@link #load(BufferedImage, int, int)}, and
+	 * must be called from the thread of the GL context as well
+	 *
+	 * @param width width of the region
+	 * @param height height of the region
+	 * @return the reserved region, of undefined content
+	 * @throws IllegalArgumentException the region is larger than
+	 *             {@link #getMaxSize()}
+	 * @throws IllegalStateException all {@link #MAX_PAGES} pages are full
+	 */
+	public synchronized Image reserve(int width, int height) {
+		this.grown = 0;
+		return this.allocate(Math.max(1, width), Math.max(1, height));
+	}
+
+	/**
+	 * Replaces the pixels of a region of the Atlas
+	 * <p>
+	 * Can be called from any thread: the region is only sent to the GL
+	 * context, or seen by the software rasterizer, after the next call to
+	 * {@link #upload()}, along with all the regions written before, so that
+	 * many small images cost a single upload
+	 *
+	 * @param dst a region of the atlas
+	 * @param src its new pixels, copied from the top left corner and cut to
+	 *            the size of dst
+	 */
+	public synchronized void write(Image dst, BufferedImage src) {
+		Page p = this.pages.get(dst.getPage());
+		int x = dst.getTexX(), y = dst.getTexY();
+		int w = Math.min(dst.getWidth(), src.getWidth());
+		int h = Math.min(dst.getHeight(), src.getHeight());
+
+		Graphics2D g = (Graphics2D) p.img.getGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(src, x, y, x + w, y + h, 0, 0, w, h, null);
+		g.dispose();
+
+		if (p.dirtyX1 <= p.dirtyX0 || p.dirtyY1 <= p.dirtyY0) {
+			p.dirtyX0 = x;
+			p.dirtyY0 = y;
+			p.dirtyX1 = x + w;
+			p.dirtyY1 = y + h;
+		} else {
+			p.dirtyX0 = Math.min(p.dirtyX0, x);
+			p.dirtyY0 = Math.min(p.dirtyY0, y);
+			p.dirtyX1 = Math.max(p.dirtyX1, x + w);
+			p.dirtyY1 = Math.max(p.dirtyY1, y + h);
+		}
+	}
+
+	/**
+	 * Sends the regions written with {@link #write(Image, BufferedImage)} to
+	 * the GL context, or to the pixels sampled by the software rasterizer,
+	 * as one region per page
+	 * <p>
+	 * Called by the rasterizers before drawing each batch, from the drawing
+	 * thread
+	 */
+	public synchronized void upload() {
+		for (int i = 0; i < this.pages.size(); i++) {
+			Page p = this.pages.get(i);
+			if (p.dirtyX1 <= p.dirtyX0 || p.dirtyY1 <= p.dirtyY0)
+				continue;
+
+			AtlasEvent event = new AtlasEvent();
+			event.begin();
+			int w = p.dirtyX1 - p.dirtyX0, h = p.dirtyY1 - p.dirtyY0;
+			int bytes = this.update(p, p.dirtyX0, p.dirtyY0, w, h);
+			p.dirtyX1 = p.dirtyX0;
+			event.end();
+			if (event.shouldCommit()) {
+				event.page = i;
+				event.width = w;
+				event.height = h;
+				event.bytes = bytes;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Finds room for a region in the existing space first, then by growing
+	 * the first pages so that most quads stay on a single texture, and in a
+	 * new page last
+	 *
+	 * @param width width of the region
+	 * @param height height of the region
+	 * @return the allocated region
+	 */
+	private Image allocate(int width, int height) {
+		if (width > this.maxSize || height > this.maxSize) {
+			throw new IllegalArgumentException("Image of " + width + "x"
+					+ height + " is too large for the atlas");
+		}
+
+		int page = -1;
+		Point pos = null;
+
+		for (int i = 0; pos == null && i < this.pages.size(); i++) {
+			pos = this.pages.get(i).packer.allocate(width, height);
+			page = i;
+		}
+		for (int i = 0; pos == null && i < this.pages.size(); i++) {
+			while (pos == null && this.canGrow(i)) {
+				this.grown += this.grow(i);
+				pos = this.pages.get(i).packer.allocate(width, height);
+			}
+			page = i;
+		}
+		if (pos == null) {
+			if (this.pages.size() == MAX_PAGES) {
+				throw new IllegalStateException("Texture atlas is full");
+			}
+			int size = PAGE_SIZE;
+			while (size < width || size < height) {
+				size *= 2;
+			}
+			page = this.addPage(size, size);
+			pos = this.pages.get(page).packer.allocate(width, height);
+			Logger.debug("Texture atlas page " + page + " created");
+		}
+
+		return new Image(page, pos.x, pos.y, width, height);
+	}
+
+	/**
+	 * @param w width of the page
+	 * @param h height of the page
+	 * @return index of the new page
+	 */
+	private int addPage(int w, int h) {
+		Page p = new Page();
+		p.img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		p.packer = new Packer(w, h);
+		if (!this.hardware) {
+			p.pixels = new int[w * h];
+		} else {
+			p.texId = GL11.glGenTextures();
+
+			// storage only: regions are sent when textures are loaded
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, p.texId);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D,
+					GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D,
+					GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+			GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, w, h, 0,
+					GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		}
+		this.pages.add(p);
+		return this.pages.size() - 1;
+	}
+
+	/**
+	 * @param page index of the page
+	 * @return true if the page is smaller than {@link #getMaxSize()}
+	 */
+	private boolean canGrow(int page) {
+		Page p = this.pages.get(page);
+		return p.img.getWidth() < this.maxSize
+				|| p.img.getHeight() < this.maxSize;
+	}
+
+	/**
+	 * Doubles the smallest dimension of a page, keeping its content where it
+	 * is so that the texture coordinates of the quads already built remain
+	 * valid
+	 *
+	 * @param page index of the page
+	 * @return number of bytes uploaded
 	 */
-	public void load(BufferedImage buf, int height) {
-		Graphics2D g = (Graphics2D) this.img.getGraphics();
-		g.drawImage(buf, 0, this.offset, null);
+	private int grow(int page) {
+		Page p = this.pages.get(page);
+		int w = p.img.getWidth(), h = p.img.getHeight();
+		if (h <= w && h < this.maxSize) {
+			h = Math.min(2 * h, this.maxSize);
+		} else {
+			w = Math.min(2 * w, this.maxSize);
+		}
+
+		BufferedImage img = new BufferedImage(w, h,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = (Graphics2D) img.getGraphics();
+		g.drawImage(p.img, 0, 0, null);
+		g.dispose();
+		int bottom = p.packer.getBottom();
+		int right = p.img.getWidth();
+		p.img = img;
+		p.packer.grow(w, h);
+		if (p.pixels != null) {
+			p.pixels = new int[w * h];
+		}
+
+		Logger.debug("Texture atlas page " + page + " grown to " + w + "x"
+				+ h);
 
-		this.offset += height;
+		if (p.texId == -1)
+			return this.update(p, 0, 0, right, bottom);
 
-		this.update();
+		// new storage: send again what was already loaded
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, p.texId);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, w, h, 0,
+				GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		return this.update(p, 0, 0, right, bottom);
 	}
 
-	private void update() {
-		ByteBuffer buf = Util.imageToByteBuffer(img);
+	/**
+	 * Sends a region of a page to the GL context, or copies it to the
+	 * pixels sampled by the software rasterizer
+	 * <p>
+	 * Only the given rows and columns are copied and uploaded, so that
+	 * textures can be added at any time without sending the whole page
+	 *
+	 * @param p the page
+	 * @param x left column of the region
+	 * @param y top row of the region
+	 * @param w width of the region
+	 * @param h height of the region
+	 * @return number of bytes uploaded, 0 without GL context
+	 */
+	private int update(Page p, int x, int y, int w, int h) {
+		int pw = p.img.getWidth();
+		x = Math.max(0, x);
+		y = Math.max(0, y);
+		w = Math.min(w, pw - x);
+		h = Math.min(h, p.img.getHeight() - y);
+		if (w <= 0 || h <= 0)
+			return 0;
 
-		GL11.glEnable(GL11.GL_TEXTURE_2D);
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, this.texId);
-		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER,
-				GL11.GL_NEAREST);
-		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER,
-				GL11.GL_NEAREST);
+		int[] pixels = ((DataBufferInt) p.img.getRaster().getDataBuffer())
+				.getData();
+		if (p.texId == -1) {
+			if (p.pixels != null) {
+				for (int row = y; row < y + h; row++) {
+					System.arraycopy(pixels, row * pw + x, p.pixels, row * pw
+							+ x, w);
+				}
+			}
+			return 0;
+		}
 
-		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, this.width,
-				this.height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buf);
+		if (this.staging == null || this.staging.capacity() < w * h) {
+			this.staging = BufferUtils.createIntBuffer(w * h);
+		}
+		this.staging.clear();
+		for (int row = y; row < y + h; row++) {
+			this.staging.put(pixels, row * pw + x, w);
+		}
+		this.staging.flip();
 
+		// ARGB ints, whatever the byte order
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, p.texId);
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+		GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, x, y, w, h,
+				GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, this.staging);
 		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+		return w * h * 4;
 	}
 
 }
@@ -126,6 +126,30 @@ public class Color {
 		return res;
 	}
 
+	/**
+	 * @param alpha multiply alpha
+	 * @return this color packed as a 32 bit ABGR int: red in the lowest byte,
+	 *         alpha in the highest
+	 */
+	public int toABGR(float alpha) {
+		return pack(this.red, this.green, this.blue, this.alpha * alpha);
+	}
+
+	/**
+	 * @param r [0.0, 1.0]
+	 * @param g [0.0, 1.0]
+	 * @param b [0.0, 1.0]
+	 * @param a [0.0, 1.0]
+	 * @return the components packed as a 32 bit ABGR int
+	 */
+	public static int pack(float r, float g, float b, float a) {
+		int ir = (int) (Util.clampf(r, 0.0f, 1.0f) * 255.0f + 0.5f);
+		int ig = (int) (Util.clampf(g, 0.0f, 1.0f) * 255.0f + 0.5f);
+		int ib = (int) (Util.clampf(b, 0.0f, 1.0f) * 255.0f + 0.5f);
+		int ia = (int) (Util.clampf(a, 0.0f, 1.0f) * 255.0f + 0.5f);
+		return (ia << 24) | (ib << 16) | (ig << 8) | ir;
+	}
+
 	/**
 	 * Fill an array with this Color's elements
 	 * 
@@ -0,0 +1,152 @@
+package bifstk.gl;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.EXTFramebufferBlit;
+import org.lwjgl.opengl.EXTFramebufferObject;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GLContext;
+
+import bifstk.config.Config;
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+
+/**
+ * Offscreen copy of the display, drawn into instead of the back buffer
+ * <p>
+ * The content of the back buffer after a swap depends on the driver: the
+ * WM is drawn in this buffer, which keeps the previous frame, and the whole
+ * buffer is copied to the back buffer with {@link #blit()} before each
+ * swap. Only the regions of the display that changed need to be drawn
+ *
+ */
+public class DisplayBuffer {
+
+	/** null until the context was checked */
+	private static Boolean supported = null;
+
+	/** id of the framebuffer object */
+	private int fbo = 0;
+	/** id of the color attachment */
+	private int rbo = 0;
+
+	/** dimensions in pixels */
+	private int width = 0, height = 0;
+
+	/**
+	 * @return true if the current context can draw offscreen and copy the
+	 *         result to a single sampled display
+	 */
+	public static boolean isSupported() {
+		if (supported == null) {
+			ContextCapabilities caps = GLContext.getCapabilities();
+			supported = caps != null && caps.GL_EXT_framebuffer_object
+					&& caps.GL_EXT_framebuffer_blit
+					&& Config.get().getDisplayAntialiasSamples() == 0;
+			if (!supported) {
+				Logger.debug("Offscreen display buffer is not supported");
+			}
+		}
+		return supported;
+	}
+
+	/**
+	 * Default constructor
+	 * <p>
+	 * Requires a current GL context, see {@link #isSupported()}
+	 *
+	 * @param w width in pixels
+	 * @param h height in pixels
+	 * @throws BifstkException the framebuffer could not be created
+	 */
+	public DisplayBuffer(int w, int h) throws BifstkException {
+		this.fbo = EXTFramebufferObject.glGenFramebuffersEXT();
+		this.rbo = EXTFramebufferObject.glGenRenderbuffersEXT();
+		this.resize(w, h);
+	}
+
+	/**
+	 * Changes the dimensions of the buffer
+	 *
+	 * @param w width in pixels
+	 * @param h height in pixels
+	 * @return true if the content was discarded and must be drawn again
+	 * @throws BifstkException the framebuffer could not be created
+	 */
+	public boolean resize(int w, int h) throws BifstkException {
+		w = Math.max(1, w);
+		h = Math.max(1, h);
+		if (w == this.width && h == this.height)
+			return false;
+
+		this.width = w;
+		this.height = h;
+
+		EXTFramebufferObject.glBindRenderbufferEXT(
+				EXTFramebufferObject.GL_RENDERBUFFER_EXT, this.rbo);
+		EXTFramebufferObject.glRenderbufferStorageEXT(
+				EXTFramebufferObject.GL_RENDERBUFFER_EXT, GL11.GL_RGBA8, w, h);
+		EXTFramebufferObject.glBindRenderbufferEXT(
+				EXTFramebufferObject.GL_RENDERBUFFER_EXT, 0);
+
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, this.fbo);
+		EXTFramebufferObject.glFramebufferRenderbufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT,
+				EXTFramebufferObject.GL_COLOR_ATTACHMENT0_EXT,
+				EXTFramebufferObject.GL_RENDERBUFFER_EXT, this.rbo);
+		int status = EXTFramebufferObject
+				.glCheckFramebufferStatusEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT);
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+
+		if (status != EXTFramebufferObject.GL_FRAMEBUFFER_COMPLETE_EXT) {
+			throw new BifstkException("Incomplete framebuffer: 0x"
+					+ Integer.toHexString(status));
+		}
+		return true;
+	}
+
+	/**
+	 * Redirects drawing to this buffer, keeping its content
+	 */
+	public void bind() {
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, this.fbo);
+	}
+
+	/**
+	 * Restores drawing to the display
+	 */
+	public void unbind() {
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+	}
+
+	/**
+	 * Copies the whole buffer to the back buffer of the display
+	 * <p>
+	 * Must be called with drawing restored to the display and without
+	 * scissor, which would cut the copy
+	 */
+	public void blit() {
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferBlit.GL_READ_FRAMEBUFFER_EXT, this.fbo);
+		EXTFramebufferBlit.glBlitFramebufferEXT(0, 0, this.width,
+				this.height, 0, 0, this.width, this.height,
+				GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferBlit.GL_READ_FRAMEBUFFER_EXT, 0);
+	}
+
+	/**
+	 * Frees the GL resources; this buffer cannot be used anymore
+	 */
+	public void destroy() {
+		if (this.fbo != 0) {
+			EXTFramebufferObject.glDeleteFramebuffersEXT(this.fbo);
+			EXTFramebufferObject.glDeleteRenderbuffersEXT(this.rbo);
+			this.fbo = 0;
+			this.rbo = 0;
+		}
+	}
+}
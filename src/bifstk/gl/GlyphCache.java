@@ -0,0 +1,398 @@
+package bifstk.gl;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import bifstk.util.Logger;
+
+/**
+ * Glyphs of a {@link TrueTypeFont} rasterized on first use
+ * <p>
+ * A region of the {@link Atlas} is reserved once and cut in cells as high
+ * as the font, each holding one glyph. Glyphs are drawn in the Atlas with
+ * {@link Atlas#write(Image, BufferedImage)}, so that all the glyphs needed
+ * by a frame cost one upload.
+ * <p>
+ * When all cells are taken, the least recently used glyphs are evicted.
+ * Quads recorded in previous frames may still sample them: once
+ * {@link #endFrame()} has told the caller to draw everything again, evicted
+ * cells are only reused when the frame being drawn, as told by
+ * {@link #setDrawn(long)}, is {@link #REUSE_DELAY} frames past the eviction.
+ * When the WM is drawn by another thread, older scenes may be drawn again
+ * until then
+ * <p>
+ * Glyphs are keyed by code point, so that characters outside of the Basic
+ * Multilingual Plane, written as a surrogate pair, are one glyph
+ *
+ */
+class GlyphCache {
+
+	/**
+	 * drawn frames before the cell of an evicted glyph can be written again
+	 */
+	private static final int REUSE_DELAY = 2;
+
+	/** current frame, used to stamp the glyphs */
+	private static volatile long frame = 1;
+
+	/** latest frame handed to the drawing thread: older are not drawn */
+	private static volatile long drawn = 1;
+
+	/**
+	 * true if a glyph was evicted, or could not be rasterized, since the last
+	 * call to endFrame
+	 */
+	private static volatile boolean evicted = false;
+
+	/** font the glyphs are rasterized with */
+	private TrueTypeFont font;
+
+	private FontMetrics metrics;
+
+	/** size in pixels of a cell */
+	private int cellWidth, cellHeight;
+
+	/** number of cells */
+	private int capacity;
+
+	/**
+	 * code point of each entry of the index of the cached glyphs, -1 if the
+	 * entry is empty; open addressing with linear probing, at most half full
+	 */
+	private int[] keys;
+	/** cell of each entry of the index */
+	private int[] values;
+	/** size of the index minus one, the index size being a power of two */
+	private int mask;
+
+	/** region of the atlas of each cell */
+	private Image[] cells;
+	/** glyph of each cell, null if the cell holds none */
+	private Image[] glyphs;
+	/** code point held by each cell */
+	private int[] codes;
+	/** frame at which each cell was last used, or evicted */
+	private long[] used;
+
+	/** least recently used list of the cells holding a glyph */
+	private int[] prev, next;
+	/** most and least recently used cells, -1 if none */
+	private int head = -1, tail = -1;
+
+	/** cells that can be written */
+	private int[] free;
+	private int freeCount = 0;
+
+	/** evicted cells waiting for REUSE_DELAY drawn frames, oldest first */
+	private int[] evictedCells;
+	private int evictedCount = 0;
+
+	/** cell sized image the glyphs are drawn in before reaching the atlas */
+	private BufferedImage scratch;
+
+	/** true once the cache was reported as too small */
+	private boolean warned = false;
+
+	/**
+	 * Reserves the region of the atlas: must be called from the thread of
+	 * the GL context
+	 *
+	 * @param font font the glyphs are rasterized with
+	 * @param metrics metrics of the font
+	 * @param height height in pixels of the glyphs
+	 * @param capacity number of glyphs kept in the atlas, clamped between 1
+	 *            and the number of cells the atlas can hold
+	 */
+	GlyphCache(TrueTypeFont font, FontMetrics metrics, int height,
+			int capacity) {
+		this.font = font;
+		this.metrics = metrics;
+		this.cellHeight = Math.max(1, height);
+		this.cellWidth = Math.max(this.cellHeight,
+				Math.min(metrics.getMaxAdvance(), 2 * this.cellHeight));
+
+		Atlas atlas = Atlas.getInstance();
+		int columns = Math.max(1, Atlas.PAGE_SIZE / this.cellWidth);
+		int maxRows = Math.max(1, atlas.getMaxSize() / this.cellHeight);
+		this.capacity = Math.max(1, Math.min(capacity, columns * maxRows));
+		int rows = (this.capacity + columns - 1) / columns;
+
+		Image region = atlas.reserve(columns * this.cellWidth, rows
+				* this.cellHeight);
+
+		this.cells = new Image[this.capacity];
+		this.glyphs = new Image[this.capacity];
+		this.codes = new int[this.capacity];
+		this.used = new long[this.capacity];
+		this.prev = new int[this.capacity];
+		this.next = new int[this.capacity];
+		this.free = new int[this.capacity];
+		this.evictedCells = new int[this.capacity];
+		for (int i = 0; i < this.capacity; i++) {
+			this.cells[i] = region.getRegion((i % columns) * this.cellWidth,
+					(i / columns) * this.cellHeight, this.cellWidth,
+					this.cellHeight);
+			// lowest cells first
+			this.free[i] = this.capacity - 1 - i;
+		}
+		this.freeCount = this.capacity;
+
+		int size = 16;
+		while (size < 2 * this.capacity)
+			size *= 2;
+		this.mask = size - 1;
+		this.keys = new int[size];
+		this.values = new int[size];
+		Arrays.fill(this.keys, -1);
+
+		this.scratch = new BufferedImage(this.cellWidth, this.cellHeight,
+				BufferedImage.TYPE_INT_ARGB);
+	}
+
+	/**
+	 * Ends the current frame for the glyphs of all fonts
+	 *
+	 * @return true if glyphs were evicted or missing during the frame:
+	 *         quads recorded since they were drawn must not be drawn again
+	 */
+	static boolean endFrame() {
+		boolean ret = evicted;
+		evicted = false;
+		frame++;
+		return ret;
+	}
+
+	/**
+	 * @return the current frame
+	 */
+	static long getFrame() {
+		return frame;
+	}
+
+	/**
+	 * @param f the frame whose quads are drawn, from the drawing thread:
+	 *            frames before it are never drawn again
+	 */
+	static void setDrawn(long f) {
+		drawn = f;
+	}
+
+	/**
+	 * @param cp a code point
+	 * @return horizontal advance in pixels of the glyph of cp, whether it is
+	 *         in the atlas or not, 0 for a lone surrogate
+	 */
+	int getAdvance(int cp) {
+		if (!isGlyph(cp))
+			return 0;
+		return Math.max(1,
+				Math.min(this.metrics.charWidth(cp), this.cellWidth));
+	}
+
+	/**
+	 * Finds the glyph of a code point, rasterizing it if needed
+	 *
+	 * @param cp a code point
+	 * @return the glyph of cp in the atlas, or null if it is a lone surrogate
+	 *         or could not be rasterized during this frame
+	 */
+	synchronized Image get(int cp) {
+		if (!isGlyph(cp))
+			return null;
+
+		int slot = this.find(cp);
+		if (slot >= 0) {
+			this.used[slot] = frame;
+			if (slot != this.head) {
+				this.unlink(slot);
+				this.link(slot);
+			}
+			return this.glyphs[slot];
+		}
+
+		slot = this.take();
+		if (slot < 0)
+			return null;
+
+		this.draw(slot, cp);
+		this.insert(cp, slot);
+		this.codes[slot] = cp;
+		this.used[slot] = frame;
+		this.link(slot);
+		return this.glyphs[slot];
+	}
+
+	/**
+	 * @return a cell that can be written, or -1 if none is available during
+	 *         this frame
+	 */
+	private int take() {
+		if (this.freeCount == 0) {
+			// cells evicted long enough before the frame being drawn
+			long d = drawn;
+			int n = 0;
+			while (n < this.evictedCount
+					&& this.used[this.evictedCells[n]] + REUSE_DELAY <= d) {
+				this.free[this.freeCount++] = this.evictedCells[n++];
+			}
+			this.evictedCount -= n;
+			System.arraycopy(this.evictedCells, n, this.evictedCells, 0,
+					this.evictedCount);
+		}
+		if (this.freeCount > 0)
+			return this.free[--this.freeCount];
+
+		if (this.evictedCount == 0) {
+			this.evict();
+		} else {
+			// drawn again once the cells can be reused
+			evicted = true;
+		}
+		return -1;
+	}
+
+	/**
+	 * Evicts an eighth of the cells, least recently used first, sparing the
+	 * glyphs used during this frame
+	 */
+	private void evict() {
+		int n = Math.max(1, this.capacity / 8);
+		while (n > 0 && this.tail >= 0 && this.used[this.tail] < frame) {
+			int slot = this.tail;
+			this.unlink(slot);
+			this.remove(this.codes[slot]);
+			this.glyphs[slot] = null;
+			this.used[slot] = frame;
+			this.evictedCells[this.evictedCount++] = slot;
+			n--;
+		}
+
+		if (this.evictedCount > 0) {
+			evicted = true;
+		} else if (!this.warned) {
+			this.warned = true;
+			Logger.warn("Font " + this.font.getFontSize() + "pt uses more "
+					+ "than " + this.capacity + " glyphs in a frame, "
+					+ "increase gfx.font.cache");
+		}
+	}
+
+	/**
+	 * Rasterizes a glyph in a cell of the atlas
+	 */
+	private void draw(int slot, int cp) {
+		BufferedImage img = this.font.getFontImage(cp);
+		int w = Math.min(img.getWidth(), this.cellWidth);
+		int h = Math.min(img.getHeight(), this.cellHeight);
+
+		Graphics2D g = (Graphics2D) this.scratch.getGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.setColor(new Color(255, 255, 255, 1));
+		g.fillRect(0, 0, this.cellWidth, this.cellHeight);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.drawImage(img, 0, 0, null);
+		g.dispose();
+
+		Atlas.getInstance().write(this.cells[slot], this.scratch);
+		this.glyphs[slot] = this.cells[slot].getRegion(0, 0, w, h);
+	}
+
+	/**
+	 * @return true if cp can have a glyph: a valid code point that is not half
+	 *         of a surrogate pair
+	 */
+	private static boolean isGlyph(int cp) {
+		return Character.isValidCodePoint(cp)
+				&& (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE);
+	}
+
+	/**
+	 * @return first entry of the index probed for cp
+	 */
+	private int hash(int cp) {
+		int h = cp * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & this.mask;
+	}
+
+	/**
+	 * @return the cell holding cp, -1 if not cached
+	 */
+	private int find(int cp) {
+		for (int i = this.hash(cp); this.keys[i] >= 0; i = (i + 1) & this.mask) {
+			if (this.keys[i] == cp)
+				return this.values[i];
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds cp to the index, which is never full
+	 */
+	private void insert(int cp, int slot) {
+		int i = this.hash(cp);
+		while (this.keys[i] >= 0)
+			i = (i + 1) & this.mask;
+		this.keys[i] = cp;
+		this.values[i] = slot;
+	}
+
+	/**
+	 * Removes cp from the index, moving back the entries probed after it so
+	 * that no empty entry stops their lookup
+	 */
+	private void remove(int cp) {
+		int i = this.hash(cp);
+		while (this.keys[i] != cp) {
+			if (this.keys[i] < 0)
+				return;
+			i = (i + 1) & this.mask;
+		}
+		int j = i;
+		while (true) {
+			j = (j + 1) & this.mask;
+			if (this.keys[j] < 0)
+				break;
+			// an entry stays if its first probe is cyclically in (i, j]
+			int k = this.hash(this.keys[j]);
+			boolean stays = (i < j) ? (i < k && k <= j) : (i < k || k <= j);
+			if (!stays) {
+				this.keys[i] = this.keys[j];
+				this.values[i] = this.values[j];
+				i = j;
+			}
+		}
+		this.keys[i] = -1;
+	}
+
+	/**
+	 * Inserts a cell at the head of the LRU list
+	 */
+	private void link(int slot) {
+		this.prev[slot] = -1;
+		this.next[slot] = this.head;
+		if (this.head >= 0)
+			this.prev[this.head] = slot;
+		this.head = slot;
+		if (this.tail < 0)
+			this.tail = slot;
+	}
+
+	/**
+	 * Removes a cell from the LRU list
+	 */
+	private void unlink(int slot) {
+		int p = this.prev[slot], n = this.next[slot];
+		if (p >= 0)
+			this.next[p] = n;
+		else
+			this.head = n;
+		if (n >= 0)
+			this.prev[n] = p;
+		else
+			this.tail = p;
+	}
+}
@@ -0,0 +1,237 @@
+package bifstk.gl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Preloaded glyphs of a {@link TrueTypeFont}, drawn in a single image
+ * <p>
+ * Can be written to a file and read at the next start instead of
+ * rasterizing the glyphs again. The file begins with a key describing what
+ * the glyphs were drawn from: a file written for another font, size or set
+ * of characters is ignored
+ *
+ */
+class GlyphSheet {
+
+	/** first bytes of the files: "BFGS" */
+	private static final int MAGIC = 0x42464753;
+
+	/** changes whenever the layout of the files does */
+	private static final int VERSION = 1;
+
+	/** image holding all the glyphs */
+	private BufferedImage image;
+
+	/** height of the tallest glyph */
+	private int fontHeight;
+
+	/** position and size of each glyph in the image */
+	private int[] xs, ys, ws, hs;
+
+	/**
+	 * @param image image holding all the glyphs, TYPE_INT_ARGB
+	 * @param fontHeight height of the tallest glyph
+	 * @param xs abscissa of each glyph in the image
+	 * @param ys ordinate of each glyph in the image
+	 * @param ws width of each glyph
+	 * @param hs height of each glyph
+	 */
+	GlyphSheet(BufferedImage image, int fontHeight, int[] xs, int[] ys,
+			int[] ws, int[] hs) {
+		this.image = image;
+		this.fontHeight = fontHeight;
+		this.xs = xs;
+		this.ys = ys;
+		this.ws = ws;
+		this.hs = hs;
+	}
+
+	/**
+	 * Reads glyphs written by {@link #write(File, String)}
+	 *
+	 * @param file the file to read
+	 * @param key identifies what the glyphs were drawn from
+	 * @return the glyphs, or null if the file was written with another key
+	 *         or is truncated
+	 * @throws IOException the file could not be read
+	 */
+	static GlyphSheet read(File file, String key) throws IOException {
+		byte[] expected = key.getBytes("UTF-8");
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				return null;
+			}
+			// read rather than mapped: a mapping outlives the channel until
+			// collected, and prevents replacing the file on some systems
+			ByteBuffer buf = ByteBuffer.allocate((int) size);
+			while (buf.hasRemaining()) {
+				if (channel.read(buf) < 0) {
+					return null;
+				}
+			}
+			buf.flip();
+
+			if (buf.remaining() < 12 || buf.getInt() != MAGIC
+					|| buf.getInt() != VERSION
+					|| buf.getInt() != expected.length
+					|| buf.remaining() < expected.length + 16) {
+				return null;
+			}
+			byte[] k = new byte[expected.length];
+			buf.get(k);
+			if (!Arrays.equals(k, expected)) {
+				return null;
+			}
+
+			int fontHeight = buf.getInt();
+			int width = buf.getInt();
+			int height = buf.getInt();
+			int count = buf.getInt();
+			if (width <= 0 || height <= 0 || count < 0
+					|| buf.remaining() != 8L * count + 4L * width * height) {
+				return null;
+			}
+
+			int[] xs = new int[count], ys = new int[count];
+			int[] ws = new int[count], hs = new int[count];
+			for (int i = 0; i < count; i++) {
+				xs[i] = buf.getShort();
+				ys[i] = buf.getShort();
+				ws[i] = buf.getShort();
+				hs[i] = buf.getShort();
+			}
+
+			BufferedImage image = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			int[] pixels = ((DataBufferInt) image.getRaster()
+					.getDataBuffer()).getData();
+			buf.asIntBuffer().get(pixels);
+
+			return new GlyphSheet(image, fontHeight, xs, ys, ws, hs);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the glyphs to a file, replacing it once fully written
+	 *
+	 * @param file the file to write, its directory is created if needed
+	 * @param key identifies what the glyphs were drawn from
+	 * @throws IOException the file could not be written
+	 */
+	void write(File file, String key) throws IOException {
+		byte[] k = key.getBytes("UTF-8");
+		int width = this.image.getWidth();
+		int height = this.image.getHeight();
+		int count = this.xs.length;
+
+		ByteBuffer buf = ByteBuffer.allocate(12 + k.length + 16 + 8 * count
+				+ 4 * width * height);
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		buf.putInt(k.length);
+		buf.put(k);
+		buf.putInt(this.fontHeight);
+		buf.putInt(width);
+		buf.putInt(height);
+		buf.putInt(count);
+		for (int i = 0; i < count; i++) {
+			buf.putShort((short) this.xs[i]);
+			buf.putShort((short) this.ys[i]);
+			buf.putShort((short) this.ws[i]);
+			buf.putShort((short) this.hs[i]);
+		}
+		buf.asIntBuffer().put(this.image.getRGB(0, 0, width, height, null, 0,
+				width));
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create directory " + dir);
+		}
+
+		// a reader never sees a partial file
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(buf.array());
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return image holding all the glyphs
+	 */
+	BufferedImage getImage() {
+		return this.image;
+	}
+
+	/**
+	 * @return height of the tallest glyph
+	 */
+	int getFontHeight() {
+		return this.fontHeight;
+	}
+
+	/**
+	 * @return number of glyphs
+	 */
+	int getCount() {
+		return this.xs.length;
+	}
+
+	/**
+	 * @param i index of a glyph
+	 * @return abscissa of the glyph in the image
+	 */
+	int getX(int i) {
+		return this.xs[i];
+	}
+
+	/**
+	 * @param i index of a glyph
+	 * @return ordinate of the glyph in the image
+	 */
+	int getY(int i) {
+		return this.ys[i];
+	}
+
+	/**
+	 * @param i index of a glyph
+	 * @return width of the glyph
+	 */
+	int getWidth(int i) {
+		return this.ws[i];
+	}
+
+	/**
+	 * @param i index of a glyph
+	 * @return height of the glyph
+	 */
+	int getHeight(int i) {
+		return this.hs[i];
+	}
+}
@@ -4,7 +4,7 @@ package bifstk.gl;
  * A raster image loaded as a Texture in the current GL context
  * <p>
  * The actual texture is handled by the Atlas which loads every image in a
- * single texture to avoid context switch
+ * few textures, its pages, to avoid context switch
  * <p>
  * This class actually allows calculating the right coordinates in the Atlas to
  * access the right image fragment
@@ -18,6 +18,9 @@ public class Image {
 	/** width of the raster image */
 	private int width;
 
+	/** index of the page of the Atlas holding the Image */
+	private int page;
+
 	/** abscissa of the Image in the texture */
 	private int texX;
 	/** ordinate of the Image in the texture */
@@ -29,15 +32,14 @@ public class Image {
 	/**
 	 * Creates a new image for an existing texture
 	 * 
+	 * @param page index of the page of the Atlas holding the image
 	 * @param x abscissa of the image in the underlying texture
 	 * @param y ordinate of the image in the underlying texture
 	 * @param w width of the image
 	 * @param h height of the image
-	 * @param tw width of the underlying texture
-	 * @param th height of the underlying texture
-	 * @param id id of the underlying texture
 	 */
-	public Image(int x, int y, int w, int h) {
+	public Image(int page, int x, int y, int w, int h) {
+		this.page = page;
 		this.texX = x;
 		this.texY = y;
 		this.width = w;
@@ -61,20 +63,39 @@ public class Image {
 		return this.height;
 	}
 
+	/**
+	 * @param x abscissa of the region in this image
+	 * @param y ordinate of the region in this image
+	 * @param w width of the region
+	 * @param h height of the region
+	 * @return a new image for a region of this one, ie. a sprite of a sheet
+	 *         loaded with {@link Atlas#load(java.awt.image.BufferedImage, int, int)}
+	 */
+	public Image getRegion(int x, int y, int w, int h) {
+		return new Image(this.page, this.texX + x, this.texY + y, w, h);
+	}
+
 	/**
 	 * @return the width of the actual texture (must be a power of two: may be
 	 *         larger than the original image)
 	 */
 	public int getTexWidth() {
-		return Atlas.getInstance().getWidth();
+		return Atlas.getInstance().getWidth(this.page);
 	}
 
 	/**
-	 * @return the width of the actual texture (must be a power of two: may be
-	 *         larger than the original image)
+	 * @return the height of the actual texture (must be a power of two: may
+	 *         be larger than the original image)
 	 */
 	public int getTexHeight() {
-		return Atlas.getInstance().getHeight();
+		return Atlas.getInstance().getHeight(this.page);
+	}
+
+	/**
+	 * @return index of the page of the Atlas holding the image
+	 */
+	public int getPage() {
+		return this.page;
 	}
 
 	/**
@@ -95,7 +116,7 @@ public class Image {
 	 * @return the texture ID in the current GL context
 	 */
 	public int getTexId() {
-		return Atlas.getInstance().getTexId();
+		return Atlas.getInstance().getTexId(this.page);
 	}
 
 	/**
@@ -1,109 +1,90 @@
 package bifstk.gl;
 
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 
-import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 
 /**
  * Legacy 2D drawing operations for older hardware
  * <p>
  * uses the deprecated fixed opengl pipeline
- * 
+ *
  */
 public class LegacyRasterizer extends Rasterizer {
 
-	private static final int MAX_SIZE = 32768;
+	private static final int MAX_QUADS = 4096;
 
-	private IntBuffer vertexBuffer = null;
-	private FloatBuffer colorBuffer = null;
-	private FloatBuffer coordBuffer = null;
-
-	private int quads = 0;
-	private int quadsAcc = 0;
-
-	/** counts the number of objects cached since last flush */
-	private int indexCount = 0;
+	/** positions view of the interleaved batch */
+	private ShortBuffer vertexView = null;
+	/** colors view of the interleaved batch */
+	private ByteBuffer colorView = null;
+	/** texture coordinates view of the interleaved batch */
+	private ShortBuffer coordView = null;
 
 	public LegacyRasterizer() {
-		super();
-
-		vertexBuffer = BufferUtils.createIntBuffer(MAX_SIZE);
-		colorBuffer = BufferUtils.createFloatBuffer(MAX_SIZE);
-		coordBuffer = BufferUtils.createFloatBuffer(MAX_SIZE);
-	}
-
-	@Override
-	protected void draw2DTexturedQuad(int[] vertices, float[] colors,
-			float[] texCoords) {
-		if (vertices.length != 8)
-			throw new IllegalArgumentException("");
-
-		if (colors.length != 16)
-			throw new IllegalArgumentException("");
-
-		if (texCoords.length != 8)
-			throw new IllegalArgumentException("");
-
-		vertexBuffer.put(vertices);
-		colorBuffer.put(colors);
-		coordBuffer.put(texCoords);
-
-		this.indexCount += 4;
-
-		if ((indexCount + 4) * 8 > MAX_SIZE) {
-			this.flush(false);
-		}
+		super(MAX_QUADS);
 	}
 
 	@Override
-	public void flush() {
-		this.flush(true);
-	}
-
-	private void flush(boolean ext) {
-		this.quadsAcc += indexCount / 4;
-
-		if (ext) {
-			this.quads = quadsAcc;
-			this.quadsAcc = 0;
+	protected void render(QuadBatch batch) {
+		if (this.vertexView == null) {
+			ByteBuffer buf = batch.getBuffer();
+			this.vertexView = view(buf, QuadBatch.POSITION_OFFSET)
+					.asShortBuffer();
+			this.colorView = view(buf, QuadBatch.COLOR_OFFSET);
+			this.coordView = view(buf, QuadBatch.TEXCOORD_OFFSET)
+					.asShortBuffer();
 		}
 
-		if (indexCount == 0)
-			return;
-
-		this.vertexBuffer.flip();
-		this.colorBuffer.flip();
-		this.coordBuffer.flip();
-
 		GL11.glEnable(GL11.GL_TEXTURE_2D);
-		GL11.glBindTexture(GL11.GL_TEXTURE_2D, Atlas.getInstance().getTexId());
+		GL11.glMatrixMode(GL11.GL_TEXTURE);
+		GL11.glPushMatrix();
 
 		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
 		GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
 		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
 
-		GL11.glVertexPointer(2, 0, this.vertexBuffer);
-		GL11.glColorPointer(4, 0, this.colorBuffer);
-		GL11.glTexCoordPointer(2, 0, this.coordBuffer);
+		GL11.glVertexPointer(2, QuadBatch.VERTEX_SIZE, this.vertexView);
+		GL11.glColorPointer(4, true, QuadBatch.VERTEX_SIZE, this.colorView);
+		GL11.glTexCoordPointer(2, QuadBatch.VERTEX_SIZE, this.coordView);
+
+		// one draw call per run of quads on the same page
+		Atlas atlas = Atlas.getInstance();
+		int first = 0;
+		while (first < batch.getQuadCount()) {
+			int end = batch.getRunEnd(first);
+			int page = batch.getPage(first);
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, atlas.getTexId(page));
+
+			// tex coords are texels: scale them to [0, 1]
+			GL11.glLoadIdentity();
+			GL11.glScalef(1.0f / atlas.getWidth(page),
+					1.0f / atlas.getHeight(page), 1.0f);
+
+			GL11.glDrawArrays(GL11.GL_QUADS, first * 4, (end - first) * 4);
+			first = end;
+		}
 
-		GL11.glDrawArrays(GL11.GL_QUADS, 0, this.indexCount);
+		GL11.glPopMatrix();
+		GL11.glMatrixMode(GL11.GL_MODELVIEW);
 
 		GL11.glDisable(GL11.GL_TEXTURE_2D);
 		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
 		GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
 		GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
 		GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
-
-		this.vertexBuffer.clear();
-		this.colorBuffer.clear();
-		this.coordBuffer.clear();
-		this.indexCount = 0;
 	}
 
-	@Override
-	public int getQuadCount() {
-		return this.quads;
+	/**
+	 * @param buf a direct buffer
+	 * @param offset byte offset
+	 * @return a view of <code>buf</code> starting at <code>offset</code>
+	 */
+	private static ByteBuffer view(ByteBuffer buf, int offset) {
+		ByteBuffer dup = buf.duplicate();
+		dup.position(offset);
+		return dup.slice().order(ByteOrder.nativeOrder());
 	}
 }
@@ -0,0 +1,207 @@
+package bifstk.gl;
+
+import java.awt.Point;
+import java.util.Arrays;
+
+/**
+ * Allocates rectangles in a page of the {@link Atlas}
+ * <p>
+ * Uses a skyline: the top of the free space is kept as a list of horizontal
+ * segments from left to right, and each rectangle is placed on the segment
+ * where its bottom edge is the lowest, so that rectangles of any size fill
+ * the page without wasting whole rows. The page can grow on the right and at
+ * the bottom without moving what was already allocated
+ *
+ */
+class Packer {
+
+	/** size in pixels of the page */
+	private int width, height;
+
+	/** left abscissa, ordinate and width of each segment of the skyline */
+	private int[] xs = new int[16], ys = new int[16], ws = new int[16];
+	/** number of segments of the skyline */
+	private int count = 0;
+
+	/** pixels allocated */
+	private long used = 0;
+
+	/**
+	 * @param width width in pixels of the page
+	 * @param height height in pixels of the page
+	 */
+	Packer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.xs[0] = 0;
+		this.ys[0] = 0;
+		this.ws[0] = width;
+		this.count = 1;
+	}
+
+	/**
+	 * Finds room for a rectangle
+	 *
+	 * @param w width of the rectangle
+	 * @param h height of the rectangle
+	 * @return the top left corner of the rectangle in the page, or null if
+	 *         it does not fit
+	 */
+	Point allocate(int w, int h) {
+		int best = -1, bestY = 0, bestBottom = Integer.MAX_VALUE;
+		int bestWidth = Integer.MAX_VALUE;
+		for (int i = 0; i < this.count; i++) {
+			int y = this.fit(i, w, h);
+			if (y < 0)
+				continue;
+			// lowest bottom edge, then the narrowest segment to keep wide
+			// ones for wide rectangles
+			if (y + h < bestBottom
+					|| (y + h == bestBottom && this.ws[i] < bestWidth)) {
+				best = i;
+				bestY = y;
+				bestBottom = y + h;
+				bestWidth = this.ws[i];
+			}
+		}
+		if (best < 0)
+			return null;
+
+		Point p = new Point(this.xs[best], bestY);
+		this.raise(best, p.x, bestY + h, w);
+		this.used += (long) w * h;
+		return p;
+	}
+
+	/**
+	 * @param i index of the segment the rectangle starts on
+	 * @param w width of the rectangle
+	 * @param h height of the rectangle
+	 * @return ordinate of the rectangle if its left edge is on the segment,
+	 *         -1 if it does not fit
+	 */
+	private int fit(int i, int w, int h) {
+		if (this.xs[i] + w > this.width)
+			return -1;
+
+		int y = 0;
+		int rem = w;
+		for (int j = i; rem > 0; j++) {
+			y = Math.max(y, this.ys[j]);
+			if (y + h > this.height)
+				return -1;
+			rem -= this.ws[j];
+		}
+		return y;
+	}
+
+	/**
+	 * Adds a segment to the skyline, covering the ones below it
+	 *
+	 * @param i index the segment is inserted at
+	 * @param x left abscissa of the segment
+	 * @param y ordinate of the segment
+	 * @param w width of the segment
+	 */
+	private void raise(int i, int x, int y, int w) {
+		this.insert(i, x, y, w);
+
+		// cut or remove the segments now under the new one
+		int right = x + w;
+		int j = i + 1;
+		while (j < this.count && this.xs[j] < right) {
+			int cut = right - this.xs[j];
+			if (cut >= this.ws[j]) {
+				this.remove(j);
+			} else {
+				this.xs[j] += cut;
+				this.ws[j] -= cut;
+				break;
+			}
+		}
+
+		// merge neighbours at the same level
+		for (j = 1; j < this.count; j++) {
+			if (this.ys[j] == this.ys[j - 1]) {
+				this.ws[j - 1] += this.ws[j];
+				this.remove(j);
+				j--;
+			}
+		}
+	}
+
+	private void insert(int i, int x, int y, int w) {
+		if (this.count == this.xs.length) {
+			int n = 2 * this.count;
+			this.xs = Arrays.copyOf(this.xs, n);
+			this.ys = Arrays.copyOf(this.ys, n);
+			this.ws = Arrays.copyOf(this.ws, n);
+		}
+		int tail = this.count - i;
+		System.arraycopy(this.xs, i, this.xs, i + 1, tail);
+		System.arraycopy(this.ys, i, this.ys, i + 1, tail);
+		System.arraycopy(this.ws, i, this.ws, i + 1, tail);
+		this.xs[i] = x;
+		this.ys[i] = y;
+		this.ws[i] = w;
+		this.count++;
+	}
+
+	private void remove(int i) {
+		int tail = this.count - i - 1;
+		System.arraycopy(this.xs, i + 1, this.xs, i, tail);
+		System.arraycopy(this.ys, i + 1, this.ys, i, tail);
+		System.arraycopy(this.ws, i + 1, this.ws, i, tail);
+		this.count--;
+	}
+
+	/**
+	 * Enlarges the page: rectangles already allocated do not move
+	 *
+	 * @param w new width, not smaller than the current one
+	 * @param h new height, not smaller than the current one
+	 */
+	void grow(int w, int h) {
+		if (w > this.width) {
+			this.insert(this.count, this.width, 0, w - this.width);
+			if (this.ys[this.count - 2] == 0) {
+				this.ws[this.count - 2] += this.ws[this.count - 1];
+				this.remove(this.count - 1);
+			}
+			this.width = w;
+		}
+		this.height = Math.max(this.height, h);
+	}
+
+	/**
+	 * @return width in pixels of the page
+	 */
+	int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * @return height in pixels of the page
+	 */
+	int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return number of pixels allocated
+	 */
+	long getUsed() {
+		return this.used;
+	}
+
+	/**
+	 * @return lowest ordinate under which nothing is allocated
+	 */
+	int getBottom() {
+		int b = 0;
+		for (int i = 0; i < this.count; i++) {
+			b = Math.max(b, this.ys[i]);
+		}
+		return b;
+	}
+}
@@ -0,0 +1,311 @@
+package bifstk.gl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Buffered textured quads waiting to be drawn by a {@link Rasterizer}
+ * <p>
+ * Vertices are interleaved in a single direct buffer so that they can be sent
+ * as is to the GPU. Each vertex takes {@link #VERTEX_SIZE} bytes:
+ *
+ * <pre>
+ * offset 0: x, y    2 * short  screen position in pixels
+ * offset 4: color   4 * ubyte  r, g, b, a in memory order (packed ABGR int)
+ * offset 8: s, t    2 * short  texel coordinates in the page of the atlas
+ * </pre>
+ *
+ * Vertices are stored clockwise from the top left corner of each quad. The
+ * {@link Atlas} page each quad samples is kept apart, as it is not sent to
+ * the GPU: consecutive quads on the same page form a run, drawn with a
+ * single texture bound
+ *
+ */
+public class QuadBatch {
+
+	/** size in bytes of a single vertex */
+	public static final int VERTEX_SIZE = 12;
+
+	/** size in bytes of a single quad */
+	public static final int QUAD_SIZE = 4 * VERTEX_SIZE;
+
+	/** byte offset of the position in a vertex */
+	public static final int POSITION_OFFSET = 0;
+
+	/** byte offset of the packed color in a vertex */
+	public static final int COLOR_OFFSET = 4;
+
+	/** byte offset of the texture coordinates in a vertex */
+	public static final int TEXCOORD_OFFSET = 8;
+
+	/** true when ints have to be swapped so that colors are RGBA in memory */
+	private static final boolean bigEndian = ByteOrder.nativeOrder().equals(
+			ByteOrder.BIG_ENDIAN);
+
+	/** vertex storage */
+	private ByteBuffer buffer = null;
+
+	/** atlas page of each quad */
+	private byte[] pages = null;
+
+	/** maximum number of quads */
+	private int capacity = 0;
+
+	/** number of quads currently stored */
+	private int quads = 0;
+
+	/** number of runs of consecutive quads on the same page */
+	private int runs = 0;
+
+	/**
+	 * Default constructor
+	 *
+	 * @param capacity maximum number of quads this batch can hold
+	 */
+	public QuadBatch(int capacity) {
+		this.capacity = capacity;
+		this.buffer = ByteBuffer.allocateDirect(capacity * QUAD_SIZE);
+		this.buffer.order(ByteOrder.nativeOrder());
+		this.pages = new byte[capacity];
+	}
+
+	/**
+	 * Appends a quad to the batch
+	 * <p>
+	 * Vertices are written clockwise from the top left corner. Texture
+	 * coordinates of vertex <code>i</code> are
+	 * <code>(s + sw * rot[2i], t + th * rot[2i + 1])</code>
+	 * 
+	 * @param x0 left abscissa
+	 * @param y0 top ordinate
+	 * @param x1 right abscissa
+	 * @param y1 bottom ordinate
+	 * @param top packed ABGR color of the two top vertices, see
+	 *            {@link Color#toABGR(float)}
+	 * @param bot packed ABGR color of the two bottom vertices
+	 * @param page atlas page of the image
+	 * @param s texel abscissa of the image in the page
+	 * @param t texel ordinate of the image in the page
+	 * @param sw texel width of the image
+	 * @param th texel height of the image
+	 * @param rot 4 2D unit coords giving the orientation of the texture
+	 * @throws IllegalStateException the batch is full
+	 */
+	public void put(int x0, int y0, int x1, int y1, int top, int bot,
+			int page, int s, int t, int sw, int th, float[] rot) {
+		if (this.quads == this.capacity) {
+			throw new IllegalStateException("QuadBatch is full");
+		}
+
+		if (this.quads == 0 || this.pages[this.quads - 1] != page) {
+			this.runs++;
+		}
+		this.pages[this.quads] = (byte) page;
+
+		int off = this.quads * QUAD_SIZE;
+		putVertex(off, x0, y0, top, s + (int) (sw * rot[0]),
+				t + (int) (th * rot[1]));
+		off += VERTEX_SIZE;
+		putVertex(off, x1, y0, top, s + (int) (sw * rot[2]),
+				t + (int) (th * rot[3]));
+		off += VERTEX_SIZE;
+		putVertex(off, x1, y1, bot, s + (int) (sw * rot[4]),
+				t + (int) (th * rot[5]));
+		off += VERTEX_SIZE;
+		putVertex(off, x0, y1, bot, s + (int) (sw * rot[6]),
+				t + (int) (th * rot[7]));
+		this.quads++;
+	}
+
+	/**
+	 * Writes a single vertex
+	 *
+	 * @param off byte offset of the vertex in the buffer
+	 * @param x screen abscissa
+	 * @param y screen ordinate
+	 * @param abgr packed color
+	 * @param s texel abscissa
+	 * @param t texel ordinate
+	 */
+	private void putVertex(int off, int x, int y, int abgr, int s, int t) {
+		buffer.putShort(off, clampShort(x));
+		buffer.putShort(off + 2, clampShort(y));
+		buffer.putInt(off + COLOR_OFFSET, bigEndian ? Integer.reverseBytes(abgr)
+				: abgr);
+		buffer.putShort(off + TEXCOORD_OFFSET, (short) s);
+		buffer.putShort(off + TEXCOORD_OFFSET + 2, (short) t);
+	}
+
+	private static short clampShort(int v) {
+		return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+	}
+
+	/**
+	 * Appends quads previously copied with
+	 * {@link #get(int, int, byte[], byte[], int)}
+	 *
+	 * @param src vertex data
+	 * @param srcPages atlas page of each quad of src
+	 * @param srcFirst index of the first quad in src
+	 * @param count number of quads to append
+	 * @throws IllegalStateException the batch cannot hold that many quads
+	 */
+	public void put(byte[] src, byte[] srcPages, int srcFirst, int count) {
+		if (this.quads + count > this.capacity) {
+			throw new IllegalStateException("QuadBatch is full");
+		}
+
+		this.buffer.position(this.quads * QUAD_SIZE);
+		this.buffer.put(src, srcFirst * QUAD_SIZE, count * QUAD_SIZE);
+		this.buffer.clear();
+
+		System.arraycopy(srcPages, srcFirst, this.pages, this.quads, count);
+		for (int i = this.quads; i < this.quads + count; i++) {
+			if (i == 0 || this.pages[i - 1] != this.pages[i]) {
+				this.runs++;
+			}
+		}
+		this.quads += count;
+	}
+
+	/**
+	 * Copies quads out of the batch
+	 *
+	 * @param first index of the first quad to copy
+	 * @param count number of quads to copy
+	 * @param dst destination array
+	 * @param dstPages destination of the atlas page of each quad
+	 * @param dstFirst index of the first quad in dst
+	 */
+	public void get(int first, int count, byte[] dst, byte[] dstPages,
+			int dstFirst) {
+		this.buffer.position(first * QUAD_SIZE);
+		this.buffer.get(dst, dstFirst * QUAD_SIZE, count * QUAD_SIZE);
+		this.buffer.clear();
+		System.arraycopy(this.pages, first, dstPages, dstFirst, count);
+	}
+
+	/**
+	 * @param quad index of the quad in the batch
+	 * @param vertex index of the vertex in the quad, clockwise from top left
+	 * @return the screen abscissa of the vertex
+	 */
+	public int getX(int quad, int vertex) {
+		return buffer.getShort(offset(quad, vertex));
+	}
+
+	/**
+	 * @param quad index of the quad in the batch
+	 * @param vertex index of the vertex in the quad, clockwise from top left
+	 * @return the screen ordinate of the vertex
+	 */
+	public int getY(int quad, int vertex) {
+		return buffer.getShort(offset(quad, vertex) + 2);
+	}
+
+	/**
+	 * @param quad index of the quad in the batch
+	 * @param vertex index of the vertex in the quad, clockwise from top left
+	 * @return the packed ABGR color of the vertex
+	 */
+	public int getColor(int quad, int vertex) {
+		int c = buffer.getInt(offset(quad, vertex) + COLOR_OFFSET);
+		return bigEndian ? Integer.reverseBytes(c) : c;
+	}
+
+	/**
+	 * @param quad index of the quad in the batch
+	 * @param vertex index of the vertex in the quad, clockwise from top left
+	 * @return the texel abscissa of the vertex in its page
+	 */
+	public int getS(int quad, int vertex) {
+		return buffer.getShort(offset(quad, vertex) + TEXCOORD_OFFSET);
+	}
+
+	/**
+	 * @param quad index of the quad in the batch
+	 * @param vertex index of the vertex in the quad, clockwise from top left
+	 * @return the texel ordinate of the vertex in its page
+	 */
+	public int getT(int quad, int vertex) {
+		return buffer.getShort(offset(quad, vertex) + TEXCOORD_OFFSET + 2);
+	}
+
+	/**
+	 * @param quad index of the quad in the batch
+	 * @return the atlas page sampled by the quad
+	 */
+	public int getPage(int quad) {
+		return this.pages[quad];
+	}
+
+	/**
+	 * @param first index of the first quad of a run
+	 * @return index of the first following quad on another page, or
+	 *         {@link #getQuadCount()}
+	 */
+	public int getRunEnd(int first) {
+		byte page = this.pages[first];
+		int end = first + 1;
+		while (end < this.quads && this.pages[end] == page) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * @return the number of runs of consecutive quads on the same page, ie.
+	 *         draw calls needed to draw the batch
+	 */
+	public int getRunCount() {
+		return this.runs;
+	}
+
+	private static int offset(int quad, int vertex) {
+		return quad * QUAD_SIZE + vertex * VERTEX_SIZE;
+	}
+
+	/**
+	 * @return the vertex storage; valid data ranges from 0 to
+	 *         {@link #getByteCount()}
+	 */
+	public ByteBuffer getBuffer() {
+		return this.buffer;
+	}
+
+	/**
+	 * @return the number of quads currently stored
+	 */
+	public int getQuadCount() {
+		return this.quads;
+	}
+
+	/**
+	 * @return the number of bytes currently used by vertices
+	 */
+	public int getByteCount() {
+		return this.quads * QUAD_SIZE;
+	}
+
+	/**
+	 * @return the maximum number of quads this batch can hold
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return true if no more quads can be added
+	 */
+	public boolean isFull() {
+		return this.quads == this.capacity;
+	}
+
+	/**
+	 * Removes all quads
+	 */
+	public void clear() {
+		this.quads = 0;
+		this.runs = 0;
+	}
+}
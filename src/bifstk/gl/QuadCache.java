@@ -0,0 +1,76 @@
+package bifstk.gl;
+
+import java.util.Arrays;
+
+/**
+ * Copy of a sequence of quads taken from a {@link QuadBatch}
+ * <p>
+ * Filled by {@link Rasterizer#beginRecord(QuadCache)} and
+ * {@link Rasterizer#endRecord()}, and sent again as is by
+ * {@link Rasterizer#replay(QuadCache)} so that unchanged geometry does not
+ * have to be rebuilt every frame. The layout of the data is the one of
+ * {@link QuadBatch}, along with the atlas page of each quad
+ *
+ */
+public class QuadCache {
+
+	/** recorded vertices */
+	private byte[] data = new byte[0];
+
+	/** atlas page of each recorded quad */
+	private byte[] pages = new byte[0];
+
+	/** number of quads recorded */
+	private int quads = 0;
+
+	/**
+	 * Appends quads from a batch
+	 *
+	 * @param batch batch containing the quads
+	 * @param first index of the first quad to copy
+	 * @param count number of quads to copy
+	 */
+	void append(QuadBatch batch, int first, int count) {
+		int len = (this.quads + count) * QuadBatch.QUAD_SIZE;
+		if (this.data.length < len) {
+			this.data = Arrays.copyOf(this.data, Math.max(len,
+					this.data.length * 2));
+		}
+		if (this.pages.length < this.quads + count) {
+			this.pages = Arrays.copyOf(this.pages, Math.max(this.quads
+					+ count, this.pages.length * 2));
+		}
+		batch.get(first, count, this.data, this.pages, this.quads);
+		this.quads += count;
+	}
+
+	/**
+	 * @return the recorded vertices, valid up to
+	 *         <code>getQuadCount() * QuadBatch.QUAD_SIZE</code>
+	 */
+	byte[] getData() {
+		return this.data;
+	}
+
+	/**
+	 * @return the atlas page of each recorded quad, valid up to
+	 *         {@link #getQuadCount()}
+	 */
+	byte[] getPages() {
+		return this.pages;
+	}
+
+	/**
+	 * @return the number of quads recorded
+	 */
+	public int getQuadCount() {
+		return this.quads;
+	}
+
+	/**
+	 * Removes all quads, keeping the storage for the next recording
+	 */
+	public void clear() {
+		this.quads = 0;
+	}
+}
@@ -1,11 +1,17 @@
 package bifstk.gl;
 
-import java.awt.Point;
-import java.awt.Rectangle;
-import java.util.LinkedList;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.DisplayMode;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GLContext;
 
 import bifstk.config.Config;
 import bifstk.config.TextureLoader;
+import bifstk.util.BifstkException;
+import bifstk.util.FlushEvent;
+import bifstk.util.Logger;
+import bifstk.util.Tracer;
 
 /**
  * 2D drawing operations
@@ -24,17 +30,71 @@ public abstract class Rasterizer {
 	/** singleton instance */
 	private static Rasterizer instance = null;
 
+	/** rasterizers of the threads that build scenes instead of drawing */
+	private static final ThreadLocal<SceneRasterizer> scenes =
+			new ThreadLocal<SceneRasterizer>();
+	/** true once a thread uses a scene rasterizer */
+	private static volatile boolean sceneThreads = false;
+
+	/** quads waiting to be drawn */
+	private QuadBatch batch = null;
+
+	/** cache being recorded, or null */
+	private QuadCache recording = null;
+	/** index in the batch of the first quad not yet added to the recording */
+	private int recordStart = 0;
+
+	/** texture being drawn into, or null */
+	private RenderTexture target = null;
+
+	/** region of the display quads are cut to, see setClip */
+	private int devX0 = 0, devY0 = 0, devX1 = 0, devY1 = 0;
+	/** true if the display region is set */
+	private boolean devClip = false;
+
+	/** maximum number of display regions, see addClip */
+	public static final int MAX_CLIPS = 8;
+	/** x0, y0, x1, y1 of each display region */
+	private int[] devBoxes = new int[4 * MAX_CLIPS];
+	/** number of display regions */
+	private int devCount = 0;
+
+	/** quads and bytes drawn during the last frame */
+	private int quads = 0, bytes = 0;
+	/** quads and bytes drawn since the beginning of the current frame */
+	private int quadsAcc = 0, bytesAcc = 0;
+	/** draw calls and batches flushed because they were full, last frame */
+	private int draws = 0, overflows = 0;
+	/** draw calls and full batches flushed since the start of the frame */
+	private int drawsAcc = 0, overflowsAcc = 0;
+
+	/** maximum nesting of translations and scissors */
+	private static final int MAX_DEPTH = 128;
+
 	/**
-	 * first element of the queue defines the region of the viewport that can
-	 * actually be drawn
+	 * accumulated translations: x, y for each level; the top of the stack
+	 * defines the translation applied to each vertex coordinate used for 2D
+	 * drawing. Each rasterizer has its own stacks, so that the threads
+	 * building geometry with a {@link SceneRasterizer} do not share them
 	 */
-	private static LinkedList<Rectangle> scissors = new LinkedList<Rectangle>();
+	private int[] translation = new int[2 * MAX_DEPTH];
+	/** number of translations on the stack */
+	private int translationDepth = 0;
+	/** current accumulated translation, cached from the top of the stack */
+	private int transX = 0, transY = 0;
 
 	/**
-	 * first element of the queue defines the translation applied to each vertex
-	 * coordinate used for 2D drawing
+	 * intersected clip boxes in screen coordinates: x0, y0, x1, y1 for each
+	 * level; the top of the stack defines the region of the viewport that can
+	 * actually be drawn
 	 */
-	private static LinkedList<Point> translation = new LinkedList<Point>();
+	private int[] scissors = new int[4 * MAX_DEPTH];
+	/** number of scissors on the stack */
+	private int scissorDepth = 0;
+	/** current clip box, cached from the top of the stack */
+	private int clipX0 = 0, clipY0 = 0, clipX1 = 0, clipY1 = 0;
+	/** true when the current clip box is empty: nothing can be drawn */
+	private boolean clipEmpty = false;
 
 	/**
 	 * Clockwise rotation in degrees
@@ -43,6 +103,21 @@ public abstract class Rasterizer {
 		ROTATE_0, ROTATE_90, ROTATE_180, ROTATE_270;
 	}
 
+	/**
+	 * Available implementations, see
+	 * {@link bifstk.config.Config#getDisplayRasterizer()}
+	 */
+	public static enum Backend {
+		/** VBO if supported by the context, legacy otherwise */
+		AUTO,
+		/** {@link LegacyRasterizer} */
+		LEGACY,
+		/** {@link VboRasterizer} */
+		VBO,
+		/** {@link SoftwareRasterizer} */
+		SOFTWARE;
+	}
+
 	protected static float[] coord_0 = {
 			0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 1.0f
 	};
@@ -56,13 +131,60 @@ public abstract class Rasterizer {
 			1.0f, 0.0f, 1.0f, 1.0f, 0.0f, 1.0f, 0.0f, 0.0f
 	};
 
+	/**
+	 * Default constructor
+	 * 
+	 * @param capacity maximum number of quads buffered before a flush is
+	 *            forced
+	 */
+	protected Rasterizer(int capacity) {
+		this.batch = new QuadBatch(capacity);
+	}
+
 	/**
 	 * Create the singleton instance
+	 * <p>
+	 * Uses the backend defined in the configuration. In auto mode, or if the
+	 * VBO backend cannot be created, a {@link VboRasterizer} is used when the
+	 * current context supports it, and the {@link LegacyRasterizer} otherwise
 	 */
 	private static void init() {
 		if (instance == null) {
-			instance = new LegacyRasterizer();
-			// TODO use VBO Rasterizer when possible
+			Backend backend = Backend.AUTO;
+			if (Config.get() != null) {
+				backend = Config.get().getDisplayRasterizer();
+			}
+
+			switch (backend) {
+			case SOFTWARE:
+				DisplayMode mode = Display.getDisplayMode();
+				instance = new SoftwareRasterizer(mode.getWidth(),
+						mode.getHeight(), Config.get()
+								.getDisplayRasterizerThreads());
+				break;
+			case LEGACY:
+				instance = new LegacyRasterizer();
+				break;
+			case VBO:
+			case AUTO:
+				ContextCapabilities caps = GLContext.getCapabilities();
+				if (caps != null && caps.OpenGL20) {
+					try {
+						instance = new VboRasterizer();
+					} catch (BifstkException e) {
+						Logger.warn("Could not create VBO rasterizer, "
+								+ "using legacy pipeline", e);
+					}
+				} else if (backend == Backend.VBO) {
+					Logger.warn("OpenGL 2.0 is not supported, "
+							+ "using legacy pipeline");
+				}
+				if (instance == null) {
+					instance = new LegacyRasterizer();
+				}
+				break;
+			}
+			Logger.debug("Rasterizer: " + instance.getClass().getSimpleName());
 		} else {
 			throw new IllegalStateException("Rasterizer was already created");
 		}
@@ -72,11 +194,64 @@ public abstract class Rasterizer {
 	 * @return the current rasterizer to use for 2D drawing operations
 	 */
 	public static Rasterizer getInstance() {
+		if (sceneThreads) {
+			SceneRasterizer r = scenes.get();
+			if (r != null)
+				return r;
+		}
 		if (instance == null)
 			init();
 		return instance;
 	}
 
+	/**
+	 * Makes {@link #getInstance()} return a {@link SceneRasterizer} when
+	 * called from the current thread, so that what it draws is captured
+	 * instead of sent to the display
+	 * 
+	 * @param r the rasterizer of the current thread, or null to use the
+	 *            singleton again
+	 */
+	public static void setSceneRasterizer(SceneRasterizer r) {
+		scenes.set(r);
+		if (r != null) {
+			sceneThreads = true;
+		}
+	}
+
+	/**
+	 * @return the rasterizer set for the current thread by
+	 *         {@link #setSceneRasterizer(SceneRasterizer)}, or null
+	 */
+	public static SceneRasterizer getSceneRasterizer() {
+		return scenes.get();
+	}
+
+	/**
+	 * Sets the rasterizer to use instead of the one defined by the
+	 * configuration
+	 * <p>
+	 * Must be called before anything is drawn, ie. to render headless with a
+	 * {@link SoftwareRasterizer}
+	 * 
+	 * @param r the rasterizer to use for 2D drawing operations
+	 * @throws IllegalStateException a Rasterizer was already created
+	 */
+	public static void setInstance(Rasterizer r) {
+		if (instance != null) {
+			throw new IllegalStateException("Rasterizer was already created");
+		}
+		instance = r;
+	}
+
+	/**
+	 * @return true if this rasterizer draws in the current GL context, false
+	 *         if it does not need one
+	 */
+	public boolean isHardware() {
+		return true;
+	}
+
 	/**
 	 * Push a new translation matrix on top of the stack
 	 * <p>
@@ -88,15 +263,17 @@ public abstract class Rasterizer {
 	 * @param y ordinate to add to the current translation
 	 */
 	public static void pushTranslate(int x, int y) {
-		Point p = new Point(x, y);
-
-		if (!translation.isEmpty()) {
-			Point o = translation.getFirst();
-			p.x += o.x;
-			p.y += o.y;
+		Rasterizer r = getInstance();
+		if (r.translationDepth == MAX_DEPTH) {
+			throw new IllegalStateException("Translation stack overflow");
 		}
 
-		translation.push(p);
+		r.transX += x;
+		r.transY += y;
+
+		int i = 2 * r.translationDepth++;
+		r.translation[i] = r.transX;
+		r.translation[i + 1] = r.transY;
 	}
 
 	/**
@@ -106,7 +283,34 @@ public abstract class Rasterizer {
 	 * {@link #pushTranslate(int, int)}
 	 */
 	public static void popTranslate() {
-		translation.pop();
+		Rasterizer r = getInstance();
+		if (r.translationDepth == 0) {
+			throw new IllegalStateException("Translation stack underflow");
+		}
+
+		r.translationDepth--;
+		if (r.translationDepth == 0) {
+			r.transX = 0;
+			r.transY = 0;
+		} else {
+			int i = 2 * (r.translationDepth - 1);
+			r.transX = r.translation[i];
+			r.transY = r.translation[i + 1];
+		}
+	}
+
+	/**
+	 * @return abscissa of the current translation
+	 */
+	public static int getTranslateX() {
+		return getInstance().transX;
+	}
+
+	/**
+	 * @return ordinate of the current translation
+	 */
+	public static int getTranslateY() {
+		return getInstance().transY;
 	}
 
 	/**
@@ -139,20 +343,27 @@ public abstract class Rasterizer {
 	 * @param h new scissor height
 	 */
 	public static void pushScissor(int x, int y, int w, int h) {
-		Rectangle c = new Rectangle(x, y, w, h);
-
-		if (!translation.isEmpty()) {
-			Point p = translation.getFirst();
-			c.x += p.x;
-			c.y += p.y;
+		Rasterizer r = getInstance();
+		if (r.scissorDepth == MAX_DEPTH) {
+			throw new IllegalStateException("Scissor stack overflow");
 		}
 
-		if (!scissors.isEmpty()) {
-			Rectangle p = scissors.getFirst();
-			c = p.intersection(c);
+		int x0 = x + r.transX, y0 = y + r.transY;
+		int x1 = x0 + w, y1 = y0 + h;
+
+		if (r.scissorDepth > 0) {
+			x0 = Math.max(x0, r.clipX0);
+			y0 = Math.max(y0, r.clipY0);
+			x1 = Math.min(x1, r.clipX1);
+			y1 = Math.min(y1, r.clipY1);
 		}
 
-		scissors.push(c);
+		int i = 4 * r.scissorDepth++;
+		r.scissors[i] = x0;
+		r.scissors[i + 1] = y0;
+		r.scissors[i + 2] = x1;
+		r.scissors[i + 3] = y1;
+		r.loadClip();
 	}
 
 	/**
@@ -162,20 +373,81 @@ public abstract class Rasterizer {
 	 * {@link #pushScissor(int, int)}
 	 */
 	public static void popScissor() {
-		Rectangle c = scissors.pop();
-
-		if (Config.get().isWmDebugLayout() && !c.isEmpty()) {
-			int dx = 0, dy = 0;
-			if (!translation.isEmpty()) {
-				Point p = translation.getFirst();
-				dx = p.x;
-				dy = p.y;
-			}
-			instance.drawQuad(c.x - dx, c.y - dy, c.width, c.height, Color.RED,
-					1.0f);
+		Rasterizer r = getInstance();
+		if (r.scissorDepth == 0) {
+			throw new IllegalStateException("Scissor stack underflow");
+		}
+
+		int x0 = r.clipX0, y0 = r.clipY0, x1 = r.clipX1, y1 = r.clipY1;
+		boolean empty = r.clipEmpty;
+
+		r.scissorDepth--;
+		r.loadClip();
+
+		if (Config.get().isWmDebugLayout() && !empty) {
+			r.drawQuad(x0 - r.transX, y0 - r.transY, x1 - x0, y1 - y0,
+					Color.RED, 1.0f);
 		}
 	}
 
+	/**
+	 * Caches the top of the scissor stack
+	 */
+	private void loadClip() {
+		if (this.scissorDepth == 0) {
+			this.clipX0 = this.clipY0 = this.clipX1 = this.clipY1 = 0;
+			this.clipEmpty = false;
+		} else {
+			int i = 4 * (this.scissorDepth - 1);
+			this.clipX0 = this.scissors[i];
+			this.clipY0 = this.scissors[i + 1];
+			this.clipX1 = this.scissors[i + 2];
+			this.clipY1 = this.scissors[i + 3];
+			this.clipEmpty = this.clipX1 <= this.clipX0 || this.clipY1 <= this.clipY0;
+		}
+	}
+
+	/**
+	 * Nothing can be drawn while the current scissor is empty: callers can
+	 * use this to skip rendering whole subtrees
+	 * 
+	 * @return true if the current scissor box is empty
+	 */
+	public static boolean isClipEmpty() {
+		return getInstance().clipEmpty;
+	}
+
+	/**
+	 * @return true if no translation or scissor is on the stack, ie. drawing
+	 *         uses plain screen coordinates
+	 */
+	public static boolean isTopLevel() {
+		Rasterizer r = getInstance();
+		return r.translationDepth == 0 && r.scissorDepth == 0;
+	}
+
+	/**
+	 * Tests a box against the current scissor before drawing it, so that
+	 * callers can skip whole subtrees that would be entirely clipped
+	 * 
+	 * @param x abscissa relative to the current translation
+	 * @param y ordinate relative to the current translation
+	 * @param w box width
+	 * @param h box height
+	 * @return true if at least one pixel of the box can be drawn
+	 */
+	public static boolean isVisible(int x, int y, int w, int h) {
+		Rasterizer r = getInstance();
+		if (w <= 0 || h <= 0 || r.clipEmpty)
+			return false;
+		if (r.scissorDepth == 0)
+			return true;
+
+		int x0 = x + r.transX, y0 = y + r.transY;
+		return x0 < r.clipX1 && y0 < r.clipY1 && x0 + w > r.clipX0
+				&& y0 + h > r.clipY0;
+	}
+
 	/**
 	 * Draw the outline of a 2D Quad
 	 * <p>
@@ -247,11 +519,8 @@ public abstract class Rasterizer {
 	 */
 	public void fillQuad(int x, int y, int w, int h, Color top, Color bot,
 			float alphaTop, float alphaBot) {
-		float[] c = new float[4 * 4];
-		top.fillArray(c, 0, 8, alphaTop);
-		bot.fillArray(c, 8, 16, alphaBot);
-		this.fillQuad(x, y, w, h, TextureLoader.getBlank(), c,
-				Rotation.ROTATE_0);
+		this.fillQuad(x, y, w, h, TextureLoader.getBlank(),
+				top.toABGR(alphaTop), bot.toABGR(alphaBot), Rotation.ROTATE_0);
 	}
 
 	/**
@@ -294,70 +563,63 @@ public abstract class Rasterizer {
 	 */
 	public void fillQuad(int x, int y, int w, int h, Image img, Color col,
 			float alpha, Rotation rotation) {
-		float[] c = col.toArray(4, alpha);
-		fillQuad(x, y, w, h, img, c, rotation);
+		int c = col.toABGR(alpha);
+		fillQuad(x, y, w, h, img, c, c, rotation);
 	}
 
 	/**
 	 * Fill a 2D Quad with a texture
+	 * <p>
+	 * Clipping is done on integers and the result is written directly in the
+	 * batch: this is called for every quad of every frame and must not
+	 * allocate
 	 * 
 	 * @param x top left ascissa coordinate
 	 * @param y top left ordinate coordinate
 	 * @param w quad width
 	 * @param h quad height
 	 * @param img texture image
-	 * @param col texture color: 4 * rgba
+	 * @param top packed ABGR color of the two top vertices
+	 * @param bot packed ABGR color of the two bottom vertices
 	 * @param rotation use one of
 	 */
-	private void fillQuad(int x, int y, int w, int h, Image img, float[] col,
-			Rotation rotation) {
-		Rectangle r = new Rectangle(x, y, w, h);
-
-		if (!translation.isEmpty()) {
-			Point trans = translation.getFirst();
-			r.x += trans.x;
-			r.y += trans.y;
-		}
+	private void fillQuad(int x, int y, int w, int h, Image img, int top,
+			int bot, Rotation rotation) {
+		if (w <= 0 || h <= 0)
+			return;
 
-		if (r.isEmpty())
+		if (this.clipEmpty)
 			return;
 
-		Rectangle imgBounds = new Rectangle(img.getTexX(), img.getTexY(),
-				img.getWidth(), img.getHeight());
+		x += this.transX;
+		y += this.transY;
 
-		if (!scissors.isEmpty()) {
-			Rectangle sci = scissors.getFirst();
+		int x0 = x, y0 = y, x1 = x + w, y1 = y + h;
+		int ix = img.getTexX(), iy = img.getTexY();
+		int iw = img.getWidth(), ih = img.getHeight();
 
-			Rectangle tmp = new Rectangle(r.x, r.y, imgBounds.width,
-					imgBounds.height);
-			Rectangle crop = sci.intersection(tmp);
+		if (this.scissorDepth > 0) {
+			int sx0 = this.clipX0, sy0 = this.clipY0;
+			int sx1 = this.clipX1, sy1 = this.clipY1;
 
 			// this test kind of sucks but this is a truly unique special case
-			if (!img.equals(TextureLoader.getBlank())) {
-				imgBounds.x += (crop.x - r.x);
-				imgBounds.y += (crop.y - r.y);
-				imgBounds.width = crop.width;
-				imgBounds.height = crop.height;
+			if (img != TextureLoader.getBlank()) {
+				// crop the image, not the quad, against the scissor
+				int cx0 = Math.max(x, sx0), cy0 = Math.max(y, sy0);
+				ix += cx0 - x;
+				iy += cy0 - y;
+				iw = Math.min(x + iw, sx1) - cx0;
+				ih = Math.min(y + ih, sy1) - cy0;
 			}
 
-			r = r.intersection(sci);
-			if (r.isEmpty())
+			x0 = Math.max(x0, sx0);
+			y0 = Math.max(y0, sy0);
+			x1 = Math.min(x1, sx1);
+			y1 = Math.min(y1, sy1);
+			if (x1 <= x0 || y1 <= y0)
 				return;
-
 		}
 
-		int[] v = {
-				r.x, r.y, //
-				r.x + r.width, r.y, //
-				r.x + r.width, r.y + r.height, //
-				r.x, r.y + r.height
-		};
-
-		float sx = (float) imgBounds.x / (float) img.getTexWidth();
-		float sy = (float) imgBounds.y / (float) img.getTexHeight();
-		float rx = (float) imgBounds.width / (float) img.getTexWidth();
-		float ry = (float) imgBounds.height / (float) img.getTexHeight();
-
 		float[] cf = null;
 		switch (rotation) {
 		case ROTATE_0:
@@ -374,38 +636,419 @@ public abstract class Rasterizer {
 			break;
 		}
 
-		float[] coords = {
-				sx + rx * cf[0], sy + ry * cf[1], //
-				sx + rx * cf[2], sy + ry * cf[3], //
-				sx + rx * cf[4], sy + ry * cf[5], //
-				sx + rx * cf[6], sy + ry * cf[7]
-		};
+		if (this.batch.isFull()) {
+			this.overflow();
+		}
+		this.batch.put(x0, y0, x1, y1, top, bot, img.getPage(), ix, iy, iw,
+				ih, cf);
+	}
 
-		this.draw2DTexturedQuad(v, col, coords);
+	/**
+	 * This Rasterizer is buffering current drawing operations so that all
+	 * geometry is sent in one batch.
+	 * <p>
+	 * Calling this method causes the actual drawing off all buffered geometry
+	 */
+	public void flush() {
+		this.flush(true);
+	}
 
+	/**
+	 * Starts copying all the quads drawn from now on into a cache, until
+	 * {@link #endRecord()} is called
+	 * 
+	 * @param cache the cache to fill, previous content is discarded
+	 * @throws IllegalStateException a recording is already in progress
+	 */
+	public void beginRecord(QuadCache cache) {
+		if (this.recording != null) {
+			throw new IllegalStateException("Already recording");
+		}
+		cache.clear();
+		this.recording = cache;
+		this.recordStart = this.batch.getQuadCount();
 	}
 
 	/**
-	 * Draw a textured quad
+	 * Stops the recording started by {@link #beginRecord(QuadCache)}
+	 * <p>
+	 * The quads remain in the batch and are drawn normally
 	 * 
-	 * @param vertices 4 2D vertices: 8 values
-	 * @param colors 4 rgba components: 16 values
-	 * @param texCoords 4 2D tex coords
+	 * @throws IllegalStateException no recording is in progress
 	 */
-	protected abstract void draw2DTexturedQuad(int[] vertices, float[] colors,
-			float[] texCoords);
+	public void endRecord() {
+		if (this.recording == null) {
+			throw new IllegalStateException("Not recording");
+		}
+		this.record();
+		this.recording = null;
+	}
 
 	/**
-	 * This Rasterizer might be buffering current drawing operations so that all
-	 * geometry is sent in one batch.
+	 * Copies the quads added to the batch since the last call to the
+	 * current recording
+	 */
+	private void record() {
+		int end = this.batch.getQuadCount();
+		if (end > this.recordStart) {
+			this.recording.append(this.batch, this.recordStart, end
+					- this.recordStart);
+		}
+		this.recordStart = end;
+	}
+
+	/**
+	 * Draws previously recorded quads again
 	 * <p>
-	 * Calling this method causes the actual drawing off all buffered geometry
+	 * Quads are copied in bulk into the batch: they are not affected by the
+	 * current translation and scissor
+	 * 
+	 * @param cache quads recorded with {@link #beginRecord(QuadCache)}
+	 */
+	public void replay(QuadCache cache) {
+		byte[] data = cache.getData();
+		byte[] pages = cache.getPages();
+		int first = 0;
+		int rem = cache.getQuadCount();
+		while (rem > 0) {
+			if (this.batch.isFull()) {
+				this.overflow();
+			}
+			int n = Math.min(rem, this.batch.getCapacity()
+					- this.batch.getQuadCount());
+			this.batch.put(data, pages, first, n);
+			first += n;
+			rem -= n;
+		}
+	}
+
+	/**
+	 * Redirects all drawing to a texture until {@link #endTexture()} is
+	 * called
+	 * <p>
+	 * Quads drawn before are sent to the display first
+	 * 
+	 * @param tex the texture to draw into, cleared to transparent
+	 * @throws IllegalStateException this rasterizer does not draw in a GL
+	 *             context, or is already drawing in a texture
+	 */
+	public void beginTexture(RenderTexture tex) {
+		if (!this.isHardware()) {
+			throw new IllegalStateException(
+					"Render to texture requires a GL context");
+		}
+		if (this.target != null) {
+			throw new IllegalStateException("Already drawing in a texture");
+		}
+		this.flush(false);
+		this.target = tex;
+		tex.bind();
+	}
+
+	/**
+	 * Sends the quads drawn since {@link #beginTexture(RenderTexture)} to the
+	 * texture, and restores drawing to the display
+	 * 
+	 * @throws IllegalStateException not drawing in a texture
 	 */
-	public abstract void flush();
+	public void endTexture() {
+		if (this.target == null) {
+			throw new IllegalStateException("Not drawing in a texture");
+		}
+		this.flush(false);
+		this.target.unbind();
+		this.target = null;
+	}
+
+	/**
+	 * Draws a texture filled with {@link #beginTexture(RenderTexture)} as a
+	 * single quad
+	 * <p>
+	 * Quads drawn before are sent to the display first. The current
+	 * translation applies, the scissor does not
+	 * 
+	 * @param tex the texture to draw
+	 * @param x top left abscissa coordinate
+	 * @param y top left ordinate coordinate
+	 * @param alpha opacity of the whole texture
+	 */
+	public void drawTexture(RenderTexture tex, int x, int y, float alpha) {
+		this.flush(false);
+		this.quadsAcc++;
+		this.drawsAcc++;
+
+		x += this.transX;
+		y += this.transY;
+		int w = tex.getWidth(), h = tex.getHeight();
+
+		GL11.glEnable(GL11.GL_TEXTURE_2D);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, tex.getTexId());
+		// colors of the texture are premultiplied
+		GL11.glBlendFunc(GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		GL11.glColor4f(alpha, alpha, alpha, alpha);
+
+		GL11.glBegin(GL11.GL_QUADS);
+		GL11.glTexCoord2f(0.0f, 0.0f);
+		GL11.glVertex2i(x, y);
+		GL11.glTexCoord2f(1.0f, 0.0f);
+		GL11.glVertex2i(x + w, y);
+		GL11.glTexCoord2f(1.0f, 1.0f);
+		GL11.glVertex2i(x + w, y + h);
+		GL11.glTexCoord2f(0.0f, 1.0f);
+		GL11.glVertex2i(x, y + h);
+		GL11.glEnd();
+
+		GL11.glColor4f(1.0f, 1.0f, 1.0f, 1.0f);
+		GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		GL11.glDisable(GL11.GL_TEXTURE_2D);
+	}
+
+	/**
+	 * Restricts drawing to a region of the display
+	 * <p>
+	 * Unlike {@link #pushScissor(int, int, int, int)}, this does not change
+	 * the quads that are emitted and recorded: they are cut when rasterized.
+	 * Quads drawn before are sent to the display first
+	 * 
+	 * @param x top left abscissa in screen coordinates
+	 * @param y top left ordinate in screen coordinates
+	 * @param w region width
+	 * @param h region height
+	 */
+	public void setClip(int x, int y, int w, int h) {
+		this.flush(false);
+		this.devCount = 0;
+		this.devClip = true;
+		this.addClip(x, y, w, h);
+	}
+
+	/**
+	 * Adds a region of the display to the ones set by
+	 * {@link #setClip(int, int, int, int)}
+	 * <p>
+	 * Each batch is then drawn once per region, cut to it: regions must not
+	 * overlap when quads are blended. Quads drawn before are sent to the
+	 * display first
+	 * 
+	 * @param x top left abscissa in screen coordinates
+	 * @param y top left ordinate in screen coordinates
+	 * @param w region width
+	 * @param h region height
+	 * @throws IllegalStateException no region is set, or there are already
+	 *             {@link #MAX_CLIPS} regions
+	 */
+	public void addClip(int x, int y, int w, int h) {
+		if (!this.devClip || this.devCount == MAX_CLIPS) {
+			throw new IllegalStateException("Cannot add a display region");
+		}
+		this.flush(false);
+		int i = 4 * this.devCount++;
+		this.devBoxes[i] = x;
+		this.devBoxes[i + 1] = y;
+		this.devBoxes[i + 2] = x + w;
+		this.devBoxes[i + 3] = y + h;
+		this.loadDevClip(this.devCount - 1);
+		this.applyClip();
+	}
+
+	/**
+	 * Removes the regions set by {@link #setClip(int, int, int, int)}
+	 * <p>
+	 * Quads drawn before are sent to the display first
+	 */
+	public void clearClip() {
+		this.flush(false);
+		this.devClip = false;
+		this.devCount = 0;
+		this.applyClip();
+	}
+
+	/**
+	 * Makes a display region the current one, returned by
+	 * {@link #getClipX()}...
+	 */
+	private void loadDevClip(int i) {
+		this.devX0 = this.devBoxes[4 * i];
+		this.devY0 = this.devBoxes[4 * i + 1];
+		this.devX1 = this.devBoxes[4 * i + 2];
+		this.devY1 = this.devBoxes[4 * i + 3];
+	}
+
+	/**
+	 * @return true if drawing is restricted to a region of the display
+	 */
+	public boolean isClip() {
+		return this.devClip;
+	}
+
+	/**
+	 * @return top left abscissa of the display region being drawn, if
+	 *         {@link #isClip()}
+	 */
+	public int getClipX() {
+		return this.devX0;
+	}
+
+	/**
+	 * @return top left ordinate of the display region, if {@link #isClip()}
+	 */
+	public int getClipY() {
+		return this.devY0;
+	}
+
+	/**
+	 * @return width of the display region, if {@link #isClip()}
+	 */
+	public int getClipWidth() {
+		return this.devX1 - this.devX0;
+	}
+
+	/**
+	 * @return height of the display region, if {@link #isClip()}
+	 */
+	public int getClipHeight() {
+		return this.devY1 - this.devY0;
+	}
+
+	/**
+	 * Sets up the GL scissor test for the display region; rasterizers that do
+	 * not draw in a GL context cut quads themselves
+	 */
+	protected void applyClip() {
+		if (this.devClip) {
+			// GL window coordinates start at the bottom left corner
+			int h = Display.getDisplayMode().getHeight();
+			GL11.glEnable(GL11.GL_SCISSOR_TEST);
+			GL11.glScissor(this.devX0, h - this.devY1, this.devX1
+					- this.devX0, this.devY1 - this.devY0);
+		} else {
+			GL11.glDisable(GL11.GL_SCISSOR_TEST);
+		}
+	}
+
+	/**
+	 * @param ext true when called at the end of a frame, false when the batch
+	 *            is flushed in the middle of a frame, ie. because it is full
+	 */
+	private void flush(boolean ext) {
+		this.flush(ext, false);
+	}
+
+	/**
+	 * @param ext true when called at the end of a frame
+	 * @param overflow true when flushed because the batch is full
+	 */
+	private void flush(boolean ext, boolean overflow) {
+		// the batch is about to be cleared: save what is being recorded
+		if (this.recording != null) {
+			this.record();
+			this.recordStart = 0;
+		}
+
+		int n = this.batch.getQuadCount();
+		this.quadsAcc += n;
+		this.bytesAcc += this.batch.getByteCount();
+		this.drawsAcc += this.batch.getRunCount();
+
+		if (ext) {
+			this.quads = this.quadsAcc;
+			this.bytes = this.bytesAcc;
+			this.draws = this.drawsAcc;
+			this.overflows = this.overflowsAcc;
+			this.quadsAcc = 0;
+			this.bytesAcc = 0;
+			this.drawsAcc = 0;
+			this.overflowsAcc = 0;
+		}
+
+		if (n == 0)
+			return;
+
+		// not allocated unless recorded: flushed at each frame
+		FlushEvent event = null;
+		if (FlushEvent.isRecorded()) {
+			event = new FlushEvent();
+			event.begin();
+		}
+		long trace = Tracer.begin();
+
+		// glyphs rasterized since the last batch
+		if (this.isHardware())
+			Atlas.getInstance().upload();
+		if (this.devCount > 1) {
+			// every region is drawn with all the quads, each one cut to it
+			for (int i = 0; i < this.devCount; i++) {
+				this.loadDevClip(i);
+				this.applyClip();
+				this.render(this.batch);
+			}
+		} else {
+			this.render(this.batch);
+		}
+
+		Tracer.end("Rasterizer.flush", this.getClass(), trace);
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.rasterizer = this.getClass();
+				event.quads = n;
+				event.bytes = this.batch.getByteCount();
+				event.overflow = overflow;
+				event.endOfFrame = ext;
+				event.commit();
+			}
+		}
+
+		this.batch.clear();
+	}
+
+	/**
+	 * Sends the batch in the middle of a frame because it is full
+	 */
+	private void overflow() {
+		this.overflowsAcc++;
+		this.flush(false, true);
+	}
+
+	/**
+	 * Actually draws buffered geometry
+	 * 
+	 * @param batch the quads to draw, see {@link QuadBatch} for the layout
+	 */
+	protected abstract void render(QuadBatch batch);
 
 	/**
 	 * @return the number of quads rendered between the last two calls of
 	 *         {@link #flush()}
 	 */
-	public abstract int getQuadCount();
+	public int getQuadCount() {
+		return this.quads;
+	}
+
+	/**
+	 * @return the number of vertex bytes submitted between the last two calls
+	 *         of {@link #flush()}
+	 */
+	public int getByteCount() {
+		return this.bytes;
+	}
+
+	/**
+	 * @return the number of draw calls between the last two calls of
+	 *         {@link #flush()}: one per run of quads on the same atlas page
+	 *         in each batch sent
+	 */
+	public int getDrawCount() {
+		return this.draws;
+	}
+
+	/**
+	 * @return the number of times the batch was flushed in the middle of a
+	 *         frame because it was full, between the last two calls of
+	 *         {@link #flush()}
+	 */
+	public int getOverflowCount() {
+		return this.overflows;
+	}
 }
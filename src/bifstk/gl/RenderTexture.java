@@ -0,0 +1,191 @@
+package bifstk.gl;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.EXTFramebufferObject;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GLContext;
+
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+
+/**
+ * Offscreen texture that can be drawn into
+ * <p>
+ * Drawing is done through {@link Rasterizer#beginTexture(RenderTexture)} and
+ * {@link Rasterizer#endTexture()}, the result is drawn on the screen with
+ * {@link Rasterizer#drawTexture(RenderTexture, int, int, float)}.
+ * <p>
+ * Colors are stored with premultiplied alpha so that the texture can be
+ * composited with any opacity and give the same result as drawing its
+ * content directly over the screen
+ * 
+ */
+public class RenderTexture {
+
+	/** null until the context was checked */
+	private static Boolean supported = null;
+
+	/** id of the framebuffer object */
+	private int fbo = 0;
+	/** id of the color attachment */
+	private int texId = 0;
+	/** framebuffer bound before this one, ie. a {@link DisplayBuffer} */
+	private int previous = 0;
+
+	/** dimensions in pixels */
+	private int width = 0, height = 0;
+
+	/**
+	 * @return true if the current context can render to textures
+	 */
+	public static boolean isSupported() {
+		if (supported == null) {
+			ContextCapabilities caps = GLContext.getCapabilities();
+			supported = caps != null && caps.OpenGL14
+					&& caps.GL_EXT_framebuffer_object;
+			if (!supported) {
+				Logger.debug("Render to texture is not supported");
+			}
+		}
+		return supported;
+	}
+
+	/**
+	 * Default constructor
+	 * <p>
+	 * Requires a current GL context, see {@link #isSupported()}
+	 * 
+	 * @param w width in pixels
+	 * @param h height in pixels
+	 * @throws BifstkException the framebuffer could not be created
+	 */
+	public RenderTexture(int w, int h) throws BifstkException {
+		this.texId = GL11.glGenTextures();
+		this.fbo = EXTFramebufferObject.glGenFramebuffersEXT();
+		this.resize(w, h);
+	}
+
+	/**
+	 * Changes the dimensions of the texture, discarding its content
+	 * 
+	 * @param w width in pixels
+	 * @param h height in pixels
+	 * @throws BifstkException the framebuffer could not be created
+	 */
+	public void resize(int w, int h) throws BifstkException {
+		w = Math.max(1, w);
+		h = Math.max(1, h);
+		if (w == this.width && h == this.height)
+			return;
+
+		this.width = w;
+		this.height = h;
+
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, this.texId);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER,
+				GL11.GL_NEAREST);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER,
+				GL11.GL_NEAREST);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, w, h, 0,
+				GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, this.fbo);
+		EXTFramebufferObject.glFramebufferTexture2DEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT,
+				EXTFramebufferObject.GL_COLOR_ATTACHMENT0_EXT,
+				GL11.GL_TEXTURE_2D, this.texId, 0);
+		int status = EXTFramebufferObject
+				.glCheckFramebufferStatusEXT(EXTFramebufferObject.GL_FRAMEBUFFER_EXT);
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, 0);
+
+		if (status != EXTFramebufferObject.GL_FRAMEBUFFER_COMPLETE_EXT) {
+			throw new BifstkException("Incomplete framebuffer: 0x"
+					+ Integer.toHexString(status));
+		}
+	}
+
+	/**
+	 * Redirects drawing to this texture and clears it
+	 * <p>
+	 * The projection maps the top left corner of the texture to 0,0
+	 */
+	void bind() {
+		this.previous = GL11
+				.glGetInteger(EXTFramebufferObject.GL_FRAMEBUFFER_BINDING_EXT);
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, this.fbo);
+		GL11.glPushAttrib(GL11.GL_VIEWPORT_BIT | GL11.GL_COLOR_BUFFER_BIT
+				| GL11.GL_SCISSOR_BIT);
+		GL11.glViewport(0, 0, this.width, this.height);
+		// the texture is always drawn whole, whatever region of the display
+		GL11.glDisable(GL11.GL_SCISSOR_TEST);
+
+		GL11.glMatrixMode(GL11.GL_PROJECTION);
+		GL11.glPushMatrix();
+		GL11.glLoadIdentity();
+		// first row of the texture is the top of the drawing: no flip needed
+		// when compositing
+		GL11.glOrtho(0.0d, this.width, 0.0d, this.height, -1.0d, 1.0d);
+		GL11.glMatrixMode(GL11.GL_MODELVIEW);
+
+		GL11.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
+
+		// accumulate premultiplied colors, alpha as coverage
+		GL14.glBlendFuncSeparate(GL11.GL_SRC_ALPHA,
+				GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE,
+				GL11.GL_ONE_MINUS_SRC_ALPHA);
+	}
+
+	/**
+	 * Restores drawing to the display, or to the framebuffer bound before
+	 */
+	void unbind() {
+		GL11.glMatrixMode(GL11.GL_PROJECTION);
+		GL11.glPopMatrix();
+		GL11.glMatrixMode(GL11.GL_MODELVIEW);
+		GL11.glPopAttrib();
+
+		EXTFramebufferObject.glBindFramebufferEXT(
+				EXTFramebufferObject.GL_FRAMEBUFFER_EXT, this.previous);
+	}
+
+	/**
+	 * Frees the GL resources; this texture cannot be used anymore
+	 */
+	public void destroy() {
+		if (this.fbo != 0) {
+			EXTFramebufferObject.glDeleteFramebuffersEXT(this.fbo);
+			GL11.glDeleteTextures(this.texId);
+			this.fbo = 0;
+			this.texId = 0;
+		}
+	}
+
+	/**
+	 * @return the GL id of the texture
+	 */
+	public int getTexId() {
+		return this.texId;
+	}
+
+	/**
+	 * @return width in pixels
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * @return height in pixels
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+}
@@ -0,0 +1,34 @@
+package bifstk.gl;
+
+import java.util.Arrays;
+
+/**
+ * Portable span blending, one pixel at a time
+ *
+ */
+public class ScalarSpanBlender extends SpanBlender {
+
+	@Override
+	public void blend(int[] dst, int dstOff, int[] src, int srcOff, int len,
+			int abgr) {
+		for (int i = 0; i < len; i++) {
+			dst[dstOff + i] = blend(dst[dstOff + i], src[srcOff + i], abgr);
+		}
+	}
+
+	@Override
+	public void fill(int[] dst, int dstOff, int len, int texel, int abgr) {
+		int sa = div255((texel >>> 24) * (abgr >>> 24));
+		if (sa == 0)
+			return;
+
+		if (sa == 255) {
+			Arrays.fill(dst, dstOff, dstOff + len, blend(0, texel, abgr));
+			return;
+		}
+
+		for (int i = dstOff; i < dstOff + len; i++) {
+			dst[i] = blend(dst[i], texel, abgr);
+		}
+	}
+}
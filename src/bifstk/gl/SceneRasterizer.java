@@ -0,0 +1,68 @@
+package bifstk.gl;
+
+/**
+ * Rasterizer that draws nothing: quads are captured into a {@link QuadCache}
+ * so that another thread can send them to the display with
+ * {@link Rasterizer#replay(QuadCache)}
+ * <p>
+ * Used by the logic thread when {@link bifstk.config.Config#isDisplayThreaded()},
+ * see {@link Rasterizer#setSceneRasterizer(SceneRasterizer)}. It needs no GL
+ * context, so render to texture is not available
+ *
+ */
+public class SceneRasterizer extends Rasterizer {
+
+	private static final int MAX_QUADS = 4096;
+
+	/** cache filled with the quads drawn, or null */
+	private QuadCache target = null;
+
+	public SceneRasterizer() {
+		super(MAX_QUADS);
+	}
+
+	/**
+	 * Starts capturing all the quads drawn from now on
+	 *
+	 * @param cache the cache to fill, previous content is discarded
+	 * @throws IllegalStateException a capture is already in progress
+	 */
+	public void begin(QuadCache cache) {
+		if (this.target != null) {
+			throw new IllegalStateException("Already capturing");
+		}
+		cache.clear();
+		this.target = cache;
+	}
+
+	/**
+	 * Stops the capture started by {@link #begin(QuadCache)}: the cache
+	 * holds all the quads drawn in between
+	 *
+	 * @throws IllegalStateException no capture is in progress
+	 */
+	public void end() {
+		if (this.target == null) {
+			throw new IllegalStateException("Not capturing");
+		}
+		this.flush();
+		this.target = null;
+	}
+
+	@Override
+	public boolean isHardware() {
+		return false;
+	}
+
+	@Override
+	protected void applyClip() {
+		// quads are cut by the rasterizer that draws them
+	}
+
+	@Override
+	protected void render(QuadBatch batch) {
+		if (this.target != null) {
+			this.target.append(batch, 0, batch.getQuadCount());
+		}
+	}
+}
@@ -0,0 +1,468 @@
+package bifstk.gl;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import bifstk.config.TextureLoader;
+
+/**
+ * 2D drawing operations performed on the CPU
+ * <p>
+ * Quads are rasterized in an ARGB <code>int[]</code> framebuffer instead of
+ * being sent to OpenGL, sampling the {@link Atlas} with nearest filtering and
+ * blending with <code>SRC_ALPHA, ONE_MINUS_SRC_ALPHA</code> like the
+ * hardware rasterizers do. It does not require a GL context, and can be used
+ * headless through {@link Rasterizer#setInstance(Rasterizer)}
+ * <p>
+ * When using more than one thread, each run of quads on the same atlas page
+ * is binned in square screen tiles which are rasterized in parallel on a
+ * ForkJoinPool. Quads keep their submission order within a tile, so the
+ * result is identical to the single threaded one
+ *
+ */
+public class SoftwareRasterizer extends Rasterizer {
+
+	private static final int MAX_QUADS = 16384;
+
+	/** width and height in pixels of a tile */
+	private static final int TILE_SIZE = 64;
+
+	/** number of tiles processed sequentially by a single task */
+	private static final int TILES_PER_TASK = 4;
+
+	/** width in pixels of the framebuffer */
+	private int width;
+	/** height in pixels of the framebuffer */
+	private int height;
+
+	/** ARGB pixels, row major from the top left corner */
+	private int[] pixels;
+
+	/** number of threads used for rasterization */
+	private int parallelism = 1;
+	/** workers, null when single threaded */
+	private ForkJoinPool pool = null;
+
+	/** number of tiles on each axis */
+	private int tilesX, tilesY;
+	/** for each tile, indices in the batch of the quads overlapping it */
+	private int[][] bins;
+	/** for each tile, number of quads in the bin */
+	private int[] binSizes;
+
+	/** modulates and blends spans of pixels */
+	private SpanBlender blender = SpanBlender.create();
+
+	/** per thread buffer for texels that are not contiguous in the atlas */
+	private ThreadLocal<int[]> scratch = new ThreadLocal<int[]>();
+
+	/** atlas region of the blank image, which is sampled as a solid color */
+	private int blankPage, blankX0, blankY0, blankX1, blankY1;
+	/** texel of the blank image, valid if blankUniform is true */
+	private int blankTexel;
+	/** true if all the texels of the blank image have the same value */
+	private boolean blankUniform = false;
+	/** true if the current run is on the page of the blank image */
+	private boolean onBlankPage = false;
+
+	/** batch being rendered, read concurrently by the workers */
+	private QuadBatch batch = null;
+	/** region of the framebuffer drawn by the current batch */
+	private int drawX0, drawY0, drawX1, drawY1;
+	/** pixels of the atlas page of the current run */
+	private int[] tex = null;
+	/** size of the atlas page of the current run */
+	private int texWidth, texHeight;
+
+	/**
+	 * Default constructor: uses one thread per available processor
+	 *
+	 * @param width width in pixels of the framebuffer
+	 * @param height height in pixels of the framebuffer
+	 */
+	public SoftwareRasterizer(int width, int height) {
+		this(width, height, 0);
+	}
+
+	/**
+	 * @param width width in pixels of the framebuffer
+	 * @param height height in pixels of the framebuffer
+	 * @param threads number of rasterization threads, 0 for one per
+	 *            available processor
+	 */
+	public SoftwareRasterizer(int width, int height, int threads) {
+		super(MAX_QUADS);
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[width * height];
+		this.clear(0xFF000000);
+
+		this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+		this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+		this.bins = new int[tilesX * tilesY][16];
+		this.binSizes = new int[tilesX * tilesY];
+
+		this.setParallelism(threads);
+	}
+
+	/**
+	 * @param threads number of rasterization threads, 0 for one per
+	 *            available processor
+	 */
+	public void setParallelism(int threads) {
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		if (this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+		}
+		if (threads > 1) {
+			this.pool = new ForkJoinPool(threads);
+		}
+		this.parallelism = threads;
+	}
+
+	/**
+	 * @return number of rasterization threads
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	@Override
+	public boolean isHardware() {
+		return false;
+	}
+
+	/**
+	 * @return width in pixels of the framebuffer
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * @return height in pixels of the framebuffer
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return the ARGB pixels of the framebuffer, row major from the top left
+	 *         corner; only complete after {@link #flush()}
+	 */
+	public int[] getPixels() {
+		return this.pixels;
+	}
+
+	/**
+	 * @param argb color to fill the whole framebuffer with
+	 */
+	public void clear(int argb) {
+		Arrays.fill(this.pixels, argb);
+	}
+
+	/**
+	 * @return a copy of the framebuffer, ie. a screenshot of the last frame;
+	 *         destination alpha is dropped as it is on the display
+	 */
+	public BufferedImage toImage() {
+		BufferedImage img = new BufferedImage(this.width, this.height,
+				BufferedImage.TYPE_INT_RGB);
+		img.setRGB(0, 0, this.width, this.height, this.pixels, 0, this.width);
+		return img;
+	}
+
+	@Override
+	protected void applyClip() {
+		// quads are cut to the clip region in render
+	}
+
+	@Override
+	protected void render(QuadBatch batch) {
+		Atlas atlas = Atlas.getInstance();
+		// glyphs rasterized since the last batch
+		atlas.upload();
+		this.batch = batch;
+		this.loadBlank(atlas);
+
+		this.drawX0 = 0;
+		this.drawY0 = 0;
+		this.drawX1 = this.width;
+		this.drawY1 = this.height;
+		if (this.isClip()) {
+			this.drawX0 = Math.max(this.drawX0, this.getClipX());
+			this.drawY0 = Math.max(this.drawY0, this.getClipY());
+			this.drawX1 = Math.min(this.drawX1, this.getClipX()
+					+ this.getClipWidth());
+			this.drawY1 = Math.min(this.drawY1, this.getClipY()
+					+ this.getClipHeight());
+			if (this.drawX1 <= this.drawX0 || this.drawY1 <= this.drawY0) {
+				this.batch = null;
+				return;
+			}
+		}
+
+		int first = 0;
+		while (first < batch.getQuadCount()) {
+			int end = batch.getRunEnd(first);
+			int page = batch.getPage(first);
+			this.tex = atlas.getPixels(page);
+			this.texWidth = atlas.getWidth(page);
+			this.texHeight = atlas.getHeight(page);
+			this.onBlankPage = this.blankUniform && page == this.blankPage;
+
+			if (this.pool == null) {
+				for (int q = first; q < end; q++) {
+					rasterize(q, drawX0, drawY0, drawX1, drawY1);
+				}
+			} else {
+				bin(first, end);
+				this.pool.invoke(new TileTask(0, this.binSizes.length));
+			}
+			first = end;
+		}
+
+		this.batch = null;
+	}
+
+	/**
+	 * Sorts quads of the current batch in the tiles they overlap,
+	 * preserving submission order
+	 *
+	 * @param first index of the first quad
+	 * @param end index of the last quad, exclusive
+	 */
+	private void bin(int first, int end) {
+		Arrays.fill(this.binSizes, 0);
+
+		for (int q = first; q < end; q++) {
+			int x0 = Math.max(batch.getX(q, 0), this.drawX0);
+			int y0 = Math.max(batch.getY(q, 0), this.drawY0);
+			int x1 = Math.min(batch.getX(q, 2), this.drawX1);
+			int y1 = Math.min(batch.getY(q, 2), this.drawY1);
+			if (x1 <= x0 || y1 <= y0)
+				continue;
+
+			int tx1 = (x1 - 1) / TILE_SIZE, ty1 = (y1 - 1) / TILE_SIZE;
+			for (int ty = y0 / TILE_SIZE; ty <= ty1; ty++) {
+				for (int tx = x0 / TILE_SIZE; tx <= tx1; tx++) {
+					int t = ty * this.tilesX + tx;
+					int n = this.binSizes[t];
+					if (n == this.bins[t].length) {
+						this.bins[t] = Arrays.copyOf(this.bins[t], 2 * n);
+					}
+					this.bins[t][n] = q;
+					this.binSizes[t] = n + 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rasterizes a range of tiles, splitting it between workers
+	 */
+	private class TileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int begin, end;
+
+		/**
+		 * @param begin index of the first tile
+		 * @param end index of the last tile, exclusive
+		 */
+		TileTask(int begin, int end) {
+			this.begin = begin;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - begin <= TILES_PER_TASK) {
+				for (int t = begin; t < end; t++) {
+					rasterizeTile(t);
+				}
+			} else {
+				int mid = (begin + end) >>> 1;
+				invokeAll(new TileTask(begin, mid), new TileTask(mid, end));
+			}
+		}
+	}
+
+	/**
+	 * @param t index of the tile
+	 */
+	private void rasterizeTile(int t) {
+		if (this.binSizes[t] == 0)
+			return;
+
+		int x0 = (t % this.tilesX) * TILE_SIZE;
+		int y0 = (t / this.tilesX) * TILE_SIZE;
+		int x1 = Math.min(x0 + TILE_SIZE, this.drawX1);
+		int y1 = Math.min(y0 + TILE_SIZE, this.drawY1);
+		x0 = Math.max(x0, this.drawX0);
+		y0 = Math.max(y0, this.drawY0);
+
+		int[] bin = this.bins[t];
+		for (int i = 0; i < this.binSizes[t]; i++) {
+			rasterize(bin[i], x0, y0, x1, y1);
+		}
+	}
+
+	/**
+	 * Finds the texel of the blank image, so that solid quads can be blended
+	 * without sampling the atlas
+	 *
+	 * @param atlas the atlas holding the blank image
+	 */
+	private void loadBlank(Atlas atlas) {
+		Image blank = TextureLoader.getBlank();
+		this.blankUniform = false;
+		if (blank == null)
+			return;
+
+		this.blankPage = blank.getPage();
+		int[] tex = atlas.getPixels(this.blankPage);
+		int tw = atlas.getWidth(this.blankPage);
+		this.blankX0 = blank.getTexX();
+		this.blankY0 = blank.getTexY();
+		this.blankX1 = this.blankX0 + blank.getWidth();
+		this.blankY1 = this.blankY0 + blank.getHeight();
+		this.blankTexel = tex[blankY0 * tw + blankX0];
+
+		for (int y = blankY0; y < blankY1; y++) {
+			for (int x = blankX0; x < blankX1; x++) {
+				if (tex[y * tw + x] != this.blankTexel)
+					return;
+			}
+		}
+		this.blankUniform = true;
+	}
+
+	/**
+	 * @return true if the texel is inside the blank image
+	 */
+	private boolean isBlank(int tx, int ty) {
+		return tx >= blankX0 && tx < blankX1 && ty >= blankY0 && ty < blankY1;
+	}
+
+	/**
+	 * Rasterizes a quad of the current batch within a clip box
+	 *
+	 * @param q index of the quad in the batch
+	 * @param cx0 left of the clip box
+	 * @param cy0 top of the clip box
+	 * @param cx1 right of the clip box, exclusive
+	 * @param cy1 bottom of the clip box, exclusive
+	 */
+	private void rasterize(int q, int cx0, int cy0, int cx1, int cy1) {
+		QuadBatch batch = this.batch;
+		int tw = this.texWidth, th = this.texHeight;
+
+		int x0 = batch.getX(q, 0), y0 = batch.getY(q, 0);
+		int x1 = batch.getX(q, 2), y1 = batch.getY(q, 2);
+		int w = x1 - x0, h = y1 - y0;
+		if (w <= 0 || h <= 0)
+			return;
+
+		int px0 = Math.max(x0, cx0), px1 = Math.min(x1, cx1);
+		int py0 = Math.max(y0, cy0), py1 = Math.min(y1, cy1);
+		int len = px1 - px0;
+		if (len <= 0 || py1 <= py0)
+			return;
+
+		// vertices are axis aligned: texcoords are an affine function of
+		// the position, colors only vary vertically
+		float s0 = batch.getS(q, 0), t0 = batch.getT(q, 0);
+		float dsdx = (batch.getS(q, 1) - s0) / w;
+		float dtdx = (batch.getT(q, 1) - t0) / w;
+		float dsdy = (batch.getS(q, 3) - s0) / h;
+		float dtdy = (batch.getT(q, 3) - t0) / h;
+
+		int top = batch.getColor(q, 0);
+		int bot = batch.getColor(q, 3);
+
+		// samples are affine: if the four corners of the quad sample the
+		// blank image, every pixel does
+		float fx0 = 0.5f, fx1 = w - 0.5f, fy0 = 0.5f, fy1 = h - 0.5f;
+		boolean solid = this.onBlankPage
+				&& isBlank((int) (s0 + dsdx * fx0 + dsdy * fy0),
+						(int) (t0 + dtdx * fx0 + dtdy * fy0))
+				&& isBlank((int) (s0 + dsdx * fx1 + dsdy * fy0),
+						(int) (t0 + dtdx * fx1 + dtdy * fy0))
+				&& isBlank((int) (s0 + dsdx * fx0 + dsdy * fy1),
+						(int) (t0 + dtdx * fx0 + dtdy * fy1))
+				&& isBlank((int) (s0 + dsdx * fx1 + dsdy * fy1),
+						(int) (t0 + dtdx * fx1 + dtdy * fy1));
+
+		int[] buf = null;
+		if (!solid) {
+			buf = this.scratch.get();
+			if (buf == null || buf.length < len) {
+				buf = new int[this.width];
+				this.scratch.set(buf);
+			}
+		}
+
+		float fxa = px0 + 0.5f - x0, fxb = px1 - 0.5f - x0;
+
+		for (int py = py0; py < py1; py++) {
+			// sample at pixel centers, as GL does; computed per pixel rather
+			// than accumulated so that tiling does not change the result
+			float fy = py + 0.5f - y0;
+			int col = (top == bot) ? top : lerp(top, bot, fy / h);
+			int row = py * this.width;
+
+			if (solid) {
+				this.blender.fill(this.pixels, row + px0, len, this.blankTexel,
+						col);
+				continue;
+			}
+
+			float rs = s0 + dsdy * fy;
+			float rt = t0 + dtdy * fy;
+
+			// sampling is affine: when the ends of the span are len - 1
+			// texels apart on the same texture row, all texels in between
+			// are contiguous and can be read directly from the atlas
+			float sa = rs + dsdx * fxa, sb = rs + dsdx * fxb;
+			float ta = rt + dtdx * fxa, tb = rt + dtdx * fxb;
+			int txa = (int) sa, txb = (int) sb, tya = (int) ta, tyb = (int) tb;
+			if (txb - txa == len - 1 && tya == tyb && sa >= 0.0f
+					&& txb < tw && ta >= 0.0f && tb >= 0.0f && tya < th) {
+				this.blender.blend(this.pixels, row + px0, this.tex, tya * tw
+						+ txa, len, col);
+				continue;
+			}
+
+			for (int px = px0; px < px1; px++) {
+				float fx = px + 0.5f - x0;
+				int tx = Util.clampi((int) (rs + dsdx * fx), 0, tw - 1);
+				int ty = Util.clampi((int) (rt + dtdx * fx), 0, th - 1);
+				buf[px - px0] = this.tex[ty * tw + tx];
+			}
+			this.blender.blend(this.pixels, row + px0, buf, 0, len, col);
+		}
+	}
+
+	/**
+	 * @param c1 packed color
+	 * @param c2 packed color
+	 * @param f interpolation factor in [0.0, 1.0]
+	 * @return the packed color interpolated between c1 and c2
+	 */
+	private static int lerp(int c1, int c2, float f) {
+		int res = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			int a = (c1 >>> shift) & 0xFF;
+			int b = (c2 >>> shift) & 0xFF;
+			res |= ((int) (a + (b - a) * f + 0.5f)) << shift;
+		}
+		return res;
+	}
+}
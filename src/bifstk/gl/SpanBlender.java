@@ -0,0 +1,107 @@
+package bifstk.gl;
+
+import bifstk.config.Config;
+import bifstk.util.Logger;
+
+/**
+ * Inner loop of the {@link SoftwareRasterizer}: modulates horizontal spans of
+ * texels by a vertex color, and blends them over the framebuffer with
+ * <code>SRC_ALPHA, ONE_MINUS_SRC_ALPHA</code>
+ * <p>
+ * All implementations produce exactly the same pixels
+ *
+ */
+public abstract class SpanBlender {
+
+	/** name of the SIMD implementation, only compiled on recent JDKs */
+	private static final String vectorClass = "bifstk.gl.VectorSpanBlender";
+
+	/**
+	 * The scalar implementation is the default: unless the JIT compiles the
+	 * Vector API to SIMD instructions, the vector one is slower and
+	 * allocates its vectors on the heap, ie. when the module is loaded but
+	 * not intrinsified
+	 * 
+	 * @return the SIMD implementation when
+	 *         {@link Config#isDisplayRasterizerSimd()} and the
+	 *         <code>jdk.incubator.vector</code> module is available, the
+	 *         scalar one otherwise
+	 */
+	public static SpanBlender create() {
+		if (Config.get() == null || !Config.get().isDisplayRasterizerSimd()) {
+			return new ScalarSpanBlender();
+		}
+		try {
+			return (SpanBlender) Class.forName(vectorClass)
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			Logger.debug("Vector API unavailable, using scalar span blending");
+		} catch (LinkageError e) {
+			// the module is missing at runtime
+			Logger.debug("Vector API unavailable, using scalar span blending");
+		}
+		return new ScalarSpanBlender();
+	}
+
+	/**
+	 * Blends a span of texels
+	 *
+	 * @param dst ARGB framebuffer
+	 * @param dstOff index of the first pixel of the span in dst
+	 * @param src ARGB texels
+	 * @param srcOff index of the first texel in src
+	 * @param len number of pixels in the span
+	 * @param abgr packed vertex color
+	 */
+	public abstract void blend(int[] dst, int dstOff, int[] src, int srcOff,
+			int len, int abgr);
+
+	/**
+	 * Blends a span of a single texel, ie. a solid color
+	 *
+	 * @param dst ARGB framebuffer
+	 * @param dstOff index of the first pixel of the span in dst
+	 * @param len number of pixels in the span
+	 * @param texel ARGB texel
+	 * @param abgr packed vertex color
+	 */
+	public abstract void fill(int[] dst, int dstOff, int len, int texel,
+			int abgr);
+
+	/**
+	 * @return round(x / 255) for x in [0, 255 * 255]
+	 */
+	static int div255(int x) {
+		x += 128;
+		return (x + (x >>> 8)) >>> 8;
+	}
+
+	/**
+	 * Modulates a texel by a vertex color, and blends the result over a pixel
+	 *
+	 * @param dst ARGB destination pixel
+	 * @param texel ARGB texel
+	 * @param abgr packed vertex color
+	 * @return the new ARGB destination pixel
+	 */
+	static int blend(int dst, int texel, int abgr) {
+		int sa = div255((texel >>> 24) * (abgr >>> 24));
+		if (sa == 0)
+			return dst;
+
+		int sr = div255(((texel >> 16) & 0xFF) * (abgr & 0xFF));
+		int sg = div255(((texel >> 8) & 0xFF) * ((abgr >> 8) & 0xFF));
+		int sb = div255((texel & 0xFF) * ((abgr >> 16) & 0xFF));
+
+		if (sa == 255)
+			return 0xFF000000 | (sr << 16) | (sg << 8) | sb;
+
+		int ia = 255 - sa;
+		int da = div255(sa * sa + (dst >>> 24) * ia);
+		int dr = div255(sr * sa + ((dst >> 16) & 0xFF) * ia);
+		int dg = div255(sg * sa + ((dst >> 8) & 0xFF) * ia);
+		int db = div255(sb * sa + (dst & 0xFF) * ia);
+
+		return (da << 24) | (dr << 16) | (dg << 8) | db;
+	}
+}
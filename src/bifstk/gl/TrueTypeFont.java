@@ -5,8 +5,14 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+import bifstk.util.Logger;
 
 /**
  * A TrueType font implementation
@@ -27,8 +33,14 @@ public class TrueTypeFont {
 	/** Array that holds necessary information about the font characters */
 	private Image[] charArray = new Image[256];
 
-	/** Map of user defined font characters (Character <-> IntObject) */
-	private Map<Character, Image> customChars = new HashMap<Character, Image>();
+	/** user defined font characters, sorted for binary search */
+	private char[] customChars = new char[0];
+
+	/** images of the user defined characters, same order as customChars */
+	private Image[] customImages = new Image[0];
+
+	/** glyphs of the other characters, rasterized on first use */
+	private GlyphCache glyphCache = null;
 
 	/** Boolean flag on whether AntiAliasing is enabled or not */
 	private boolean antiAlias;
@@ -45,6 +57,87 @@ public class TrueTypeFont {
 	/** The font metrics for our Java AWT font */
 	private FontMetrics fontMetrics;
 
+	/** default number of glyphs kept in the atlas outside of Latin-1 */
+	public static final int DEFAULT_CACHE = 256;
+
+	/**
+	 * Glyphs of a font rasterized by {@link TrueTypeFont#prepare}, not yet
+	 * loaded in the atlas
+	 */
+	public static class Glyphs {
+
+		private java.awt.Font font;
+
+		private boolean antiAlias;
+
+		/** sorted additional characters */
+		private char[] customChars;
+
+		private FontMetrics metrics;
+
+		/** the 256 first characters followed by the additional ones */
+		private GlyphSheet sheet;
+
+		private Glyphs() {
+		}
+
+		/**
+		 * @return the font the glyphs were drawn with
+		 */
+		public java.awt.Font getFont() {
+			return this.font;
+		}
+	}
+
+	/**
+	 * Rasterizes the glyphs of a font in a task forked for each group of
+	 * characters
+	 * <p>
+	 * Each glyph is drawn in its own image with its own Graphics2D, only the
+	 * Font and its metrics are shared
+	 */
+	private static class GlyphTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** glyphs rasterized by a single task */
+		private static final int GLYPHS_PER_TASK = 32;
+
+		private Glyphs glyphs;
+		private BufferedImage[] images;
+		private int begin, end;
+
+		/**
+		 * @param glyphs font the glyphs are drawn with
+		 * @param images filled with the glyph of each character
+		 * @param begin index of the first character
+		 * @param end index of the last character, exclusive
+		 */
+		GlyphTask(Glyphs glyphs, BufferedImage[] images, int begin, int end) {
+			this.glyphs = glyphs;
+			this.images = images;
+			this.begin = begin;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - begin <= GLYPHS_PER_TASK) {
+				for (int i = begin; i < end; i++) {
+					// get 0-255 characters and then custom characters
+					char ch = (i < 256) ? (char) i
+							: glyphs.customChars[i - 256];
+					images[i] = getFontImage(glyphs.font, glyphs.metrics,
+							glyphs.antiAlias, ch);
+				}
+			} else {
+				int mid = (begin + end) >>> 1;
+				invokeAll(new GlyphTask(glyphs, images, begin, mid),
+						new GlyphTask(glyphs, images, mid, end));
+			}
+		}
+	}
+
 	/**
 	 * Constructor for the TrueTypeFont class Pass in the preloaded standard
 	 * Java TrueType font, and whether you want it to be cached with
@@ -54,15 +147,51 @@ public class TrueTypeFont {
 	 * @param antiAlias Whether or not to apply AntiAliasing to the cached font
 	 * @param additionalChars Characters of font that will be used in addition
 	 *            of first 256 (by unicode).
+	 * @param cacheSize number of glyphs of other characters kept in the atlas
+	 *            once rasterized, clamped between 1 and the number of cells
+	 *            the atlas can hold
+	 * @param sheets directory where the preloaded glyphs are stored to be
+	 *            read instead of rasterized at the next start, or null
+	 * @param source identifies the content of the font file, ie. a hash:
+	 *            stored glyphs are only read for the same source
 	 */
 	public TrueTypeFont(java.awt.Font font, boolean antiAlias,
-			char[] additionalChars) {
+			char[] additionalChars, int cacheSize, File sheets, String source) {
+		this(prepare(font, antiAlias, additionalChars, sheets, source),
+				cacheSize);
+	}
 
-		this.font = font;
-		this.fontSize = font.getSize();
-		this.antiAlias = antiAlias;
+	/**
+	 * Constructor for the TrueTypeFont class Pass in the preloaded standard
+	 * Java TrueType font, and whether you want it to be cached with
+	 * AntiAliasing applied.
+	 * 
+	 * @param font Standard Java AWT font
+	 * @param antiAlias Whether or not to apply AntiAliasing to the cached font
+	 * @param additionalChars Characters of font that will be used in addition
+	 *            of first 256 (by unicode).
+	 * @param cacheSize number of glyphs of other characters kept in the atlas
+	 *            once rasterized, clamped between 1 and the number of cells
+	 *            the atlas can hold
+	 */
+	public TrueTypeFont(java.awt.Font font, boolean antiAlias,
+			char[] additionalChars, int cacheSize) {
+		this(font, antiAlias, additionalChars, cacheSize, null, null);
+	}
 
-		createSet(additionalChars);
+	/**
+	 * Constructor for the TrueTypeFont class Pass in the preloaded standard
+	 * Java TrueType font, and whether you want it to be cached with
+	 * AntiAliasing applied.
+	 * 
+	 * @param font Standard Java AWT font
+	 * @param antiAlias Whether or not to apply AntiAliasing to the cached font
+	 * @param additionalChars Characters of font that will be used in addition
+	 *            of first 256 (by unicode).
+	 */
+	public TrueTypeFont(java.awt.Font font, boolean antiAlias,
+			char[] additionalChars) {
+		this(font, antiAlias, additionalChars, DEFAULT_CACHE);
 	}
 
 	/**
@@ -77,32 +206,63 @@ public class TrueTypeFont {
 		this(font, antiAlias, null);
 	}
 
+	/**
+	 * Loads glyphs in the atlas: must be called from the thread of the GL
+	 * context
+	 * 
+	 * @param glyphs glyphs returned by {@link #prepare}
+	 * @param cacheSize number of glyphs of other characters kept in the atlas
+	 *            once rasterized, clamped between 1 and the number of cells
+	 *            the atlas can hold
+	 */
+	public TrueTypeFont(Glyphs glyphs, int cacheSize) {
+		this.font = glyphs.font;
+		this.fontSize = font.getSize();
+		this.antiAlias = glyphs.antiAlias;
+		this.fontMetrics = glyphs.metrics;
+		if (glyphs.customChars.length > 0) {
+			this.customChars = glyphs.customChars;
+			this.customImages = new Image[glyphs.customChars.length];
+		}
+
+		createSet(glyphs.sheet);
+		this.glyphCache = new GlyphCache(this, this.fontMetrics,
+				this.fontHeight, cacheSize);
+	}
+
 	/**
 	 * Create a standard Java2D BufferedImage of the given character
 	 * 
-	 * @param ch The character to create a BufferedImage for
+	 * @param cp The code point of the character to create a BufferedImage for
 	 * 
 	 * @return A BufferedImage containing the character
 	 */
-	private BufferedImage getFontImage(char ch) {
-		// Create a temporary image to extract the character's size
-		BufferedImage tempfontImage = new BufferedImage(1, 1,
-				BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g = (Graphics2D) tempfontImage.getGraphics();
-		if (antiAlias == true) {
-			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-					RenderingHints.VALUE_ANTIALIAS_ON);
-		}
-		g.setFont(font);
-		fontMetrics = g.getFontMetrics();
-		int charwidth = fontMetrics.charWidth(ch);
+	BufferedImage getFontImage(int cp) {
+		return getFontImage(font, fontMetrics, antiAlias, cp);
+	}
+
+	/**
+	 * Create a standard Java2D BufferedImage of the given character
+	 * <p>
+	 * Can be called from any thread
+	 * 
+	 * @param font font to draw with
+	 * @param fontMetrics metrics of the font
+	 * @param antiAlias Whether or not to apply AntiAliasing
+	 * @param cp The code point of the character to create a BufferedImage for
+	 * 
+	 * @return A BufferedImage containing the character
+	 */
+	private static BufferedImage getFontImage(java.awt.Font font,
+			FontMetrics fontMetrics, boolean antiAlias, int cp) {
+		int charwidth = fontMetrics.charWidth(cp);
 
 		if (charwidth <= 0) {
 			charwidth = 1;
 		}
 		int charheight = fontMetrics.getHeight();
 		if (charheight <= 0) {
-			charheight = fontSize;
+			charheight = font.getSize();
 		}
 
 		// Create another image holding the character we are creating
@@ -119,44 +279,140 @@ public class TrueTypeFont {
 		gt.setColor(Color.WHITE);
 		int charx = 0;
 		int chary = 0;
-		gt.drawString(String.valueOf(ch), (charx),
+		gt.drawString(new String(Character.toChars(cp)), (charx),
 				(chary) + fontMetrics.getAscent());
+		gt.dispose();
 
 		return fontImage;
 
 	}
 
+	/**
+	 * Rasterizes the preloaded glyphs of a font without touching the GL
+	 * context, so that it can be done from any thread before creating the
+	 * TrueTypeFont
+	 * <p>
+	 * The glyphs are read from the directory of stored sheets when it holds
+	 * some drawn from the same font, and written there otherwise
+	 * 
+	 * @param font Standard Java AWT font
+	 * @param antiAlias Whether or not to apply AntiAliasing to the cached font
+	 * @param additionalChars Characters of font that will be used in addition
+	 *            of first 256 (by unicode), or null
+	 * @param sheets directory of the stored sheets, or null
+	 * @param source identifies the content of the font file, or null
+	 * @return the glyphs to give to {@link #TrueTypeFont(Glyphs, int)}
+	 */
+	public static Glyphs prepare(java.awt.Font font, boolean antiAlias,
+			char[] additionalChars, File sheets, String source) {
+		Glyphs glyphs = new Glyphs();
+		glyphs.font = font;
+		glyphs.antiAlias = antiAlias;
+
+		// sorted so that lookups do not have to box the character
+		glyphs.customChars = (additionalChars != null) ? additionalChars
+				.clone() : new char[0];
+		Arrays.sort(glyphs.customChars);
+
+		BufferedImage tmp = new BufferedImage(1, 1,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = (Graphics2D) tmp.getGraphics();
+		if (antiAlias == true) {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					RenderingHints.VALUE_ANTIALIAS_ON);
+		}
+		g.setFont(font);
+		glyphs.metrics = g.getFontMetrics();
+		g.dispose();
+
+		int count = 256 + glyphs.customChars.length;
+		File file = null;
+		String key = null;
+		if (sheets != null && source != null) {
+			key = getSheetKey(glyphs, source);
+			file = new File(sheets, getSheetName(glyphs, key));
+			if (file.isFile()) {
+				try {
+					glyphs.sheet = GlyphSheet.read(file, key);
+				} catch (IOException e) {
+					Logger.warn("Could not read glyphs from " + file, e);
+				}
+			}
+			if (glyphs.sheet != null && glyphs.sheet.getCount() != count) {
+				glyphs.sheet = null;
+			}
+		}
+
+		if (glyphs.sheet == null) {
+			glyphs.sheet = rasterize(glyphs, count);
+			if (file != null) {
+				try {
+					glyphs.sheet.write(file, key);
+				} catch (IOException e) {
+					Logger.warn("Could not write glyphs to " + file, e);
+				}
+			}
+		} else {
+			Logger.debug("Glyphs of " + font.getFontName() + " "
+					+ font.getSize() + " read from " + file);
+		}
+		return glyphs;
+	}
+
 	/**
 	 * Create and store the font
+	 * <p>
+	 * The sheet holding the preloaded glyphs is loaded in the {@link Atlas}
+	 * as a single region
 	 * 
-	 * @param customCharsArray Characters that should be also added to the
-	 *            cache.
+	 * @param sheet the 256 first glyphs followed by the additional ones
 	 */
-	private void createSet(char[] customCharsArray) {
-		int textureWidth = Atlas.getInstance().getWidth();
-		int textureHeight = Atlas.getInstance().getHeight();
-		int offset = Atlas.getInstance().getOffset();
+	private void createSet(GlyphSheet sheet) {
+		fontHeight = sheet.getFontHeight();
+		BufferedImage imgTemp = sheet.getImage();
+		Image region = Atlas.getInstance().load(imgTemp, imgTemp.getWidth(),
+				imgTemp.getHeight());
 
-		BufferedImage imgTemp = new BufferedImage(textureWidth, textureHeight,
-				BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g = (Graphics2D) imgTemp.getGraphics();
+		for (int i = 0; i < sheet.getCount(); i++) {
+			Image newIntObject = region.getRegion(sheet.getX(i),
+					sheet.getY(i), sheet.getWidth(i), sheet.getHeight(i));
 
-		g.setColor(new Color(255, 255, 255, 1));
-		g.fillRect(0, 0, textureWidth, textureHeight);
+			if (i < 256) { // standard characters
+				charArray[i] = newIntObject;
+			} else { // custom characters
+				customImages[i - 256] = newIntObject;
+			}
+		}
+	}
 
-		int rowHeight = 0;
-		int positionX = 0;
-		int positionY = 0;
+	/**
+	 * Draws all the preloaded glyphs in a sheet
+	 * <p>
+	 * Glyphs are rasterized in parallel, then laid out by rows in a sheet as
+	 * wide as a page of the {@link Atlas}
+	 * 
+	 * @param glyphs the font to draw
+	 * @param count number of glyphs
+	 * @return the sheet holding the glyphs
+	 */
+	private static GlyphSheet rasterize(Glyphs glyphs, int count) {
+		int textureWidth = Atlas.PAGE_SIZE;
 
-		int customCharsLength = (customCharsArray != null) ? customCharsArray.length
-				: 0;
+		BufferedImage[] fontImages = new BufferedImage[count];
+		new GlyphTask(glyphs, fontImages, 0, count).invoke();
 
-		for (int i = 0; i < 256 + customCharsLength; i++) {
+		int[] posX = new int[count];
+		int[] posY = new int[count];
+		int[] widths = new int[count];
+		int[] heights = new int[count];
 
-			// get 0-255 characters and then custom characters
-			char ch = (i < 256) ? (char) i : customCharsArray[i - 256];
+		int rowHeight = 0;
+		int positionX = 0;
+		int positionY = 0;
+		int height = 0;
 
-			BufferedImage fontImage = getFontImage(ch);
+		for (int i = 0; i < count; i++) {
+			BufferedImage fontImage = fontImages[i];
 
 			int nw = fontImage.getWidth();
 			int nh = fontImage.getHeight();
@@ -167,37 +423,71 @@ public class TrueTypeFont {
 				rowHeight = 0;
 			}
 
-			if (nh > fontHeight) {
-				fontHeight = nh;
+			if (nh > height) {
+				height = nh;
 			}
 
 			if (nh > rowHeight) {
 				rowHeight = nh;
 			}
 
-			Image newIntObject = new Image(positionX, positionY + offset, nw,
-					nh);
+			posX[i] = positionX;
+			posY[i] = positionY;
+			widths[i] = nw;
+			heights[i] = nh;
 
-			// Draw it here
-			g.drawImage(fontImage, positionX, positionY, null);
+			positionX += nw;
+		}
 
-			positionX += newIntObject.getWidth();
+		int sheetHeight = positionY + rowHeight;
+		BufferedImage imgTemp = new BufferedImage(textureWidth, sheetHeight,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = (Graphics2D) imgTemp.getGraphics();
 
-			if (i < 256) { // standard characters
-				charArray[i] = newIntObject;
-			} else { // custom characters
-				customChars.put(new Character(ch), newIntObject);
-			}
+		g.setColor(new Color(255, 255, 255, 1));
+		g.fillRect(0, 0, textureWidth, sheetHeight);
 
-			fontImage = null;
+		for (int i = 0; i < count; i++) {
+			// Draw it here
+			g.drawImage(fontImages[i], posX[i], posY[i], null);
 		}
+		g.dispose();
 
-		Atlas.getInstance().load(imgTemp, positionY + rowHeight);
+		return new GlyphSheet(imgTemp, height, posX, posY, widths, heights);
+	}
 
+	/**
+	 * Fonts only differing by their file, style or characters have their
+	 * own sheet
+	 * 
+	 * @param key the key of the sheet, see {@link #getSheetKey}
+	 * @return name of the file of the stored sheet of a font
+	 */
+	private static String getSheetName(Glyphs glyphs, String key) {
+		java.awt.Font font = glyphs.font;
+		String name = font.getFontName().replaceAll("[^A-Za-z0-9]+", "_");
+		CRC32 crc = new CRC32();
+		crc.update(key.getBytes(StandardCharsets.UTF_8));
+		return name + "-" + font.getSize() + "-"
+				+ Long.toHexString(crc.getValue()) + ".glyphs";
+	}
+
+	/**
+	 * @param source identifies the content of the font file
+	 * @return describes all that changes the glyphs of the sheet
+	 */
+	private static String getSheetKey(Glyphs glyphs, String source) {
+		java.awt.Font font = glyphs.font;
+		return source + ";" + font.getFontName() + ";" + font.getStyle()
+				+ ";" + font.getSize() + ";" + glyphs.antiAlias + ";"
+				+ new String(glyphs.customChars) + ";" + Atlas.PAGE_SIZE
+				+ ";" + System.getProperty("java.version");
 	}
 
 	/**
 	 * Get the width of a given String
+	 * <p>
+	 * Iterates by code point: a surrogate pair is one character
 	 * 
 	 * @param whatchars The characters to get the width of
 	 * 
@@ -207,20 +497,101 @@ public class TrueTypeFont {
 		int totalwidth = 0;
 		Image intObject = null;
 		int currentChar = 0;
-		for (int i = 0; i < whatchars.length(); i++) {
-			currentChar = whatchars.charAt(i);
+		for (int i = 0; i < whatchars.length(); i += Character
+				.charCount(currentChar)) {
+			currentChar = whatchars.codePointAt(i);
 			if (currentChar < 256) {
 				intObject = charArray[currentChar];
+				if (intObject != null)
+					totalwidth += intObject.getWidth();
 			} else {
-				intObject = customChars.get(new Character((char) currentChar));
+				totalwidth += getCustomWidth(currentChar);
 			}
-
-			if (intObject != null)
-				totalwidth += intObject.getWidth();
 		}
 		return totalwidth;
 	}
 
+	/**
+	 * @param ch a character
+	 * @return the image of this character in the atlas, or null if it is not
+	 *         part of this font
+	 */
+	public Image getGlyph(char ch) {
+		if (ch < 256) {
+			return charArray[ch];
+		}
+		return getCustomChar(ch);
+	}
+
+	/**
+	 * Measures a character without rasterizing it: texts are measured when
+	 * laid out, not only when drawn
+	 * 
+	 * @param cp a code point outside of the 0-255 range
+	 * @return the width of this user defined character, or the advance of
+	 *         its glyph, which is the width of the glyph once rasterized
+	 */
+	private int getCustomWidth(int cp) {
+		int i = getCustomIndex(cp);
+		return (i < 0) ? this.glyphCache.getAdvance(cp) : this.customImages[i]
+				.getWidth();
+	}
+
+	/**
+	 * @param cp a code point outside of the 0-255 range
+	 * @return the image for this user defined character, or its glyph
+	 *         rasterized on demand, null if not rasterized yet
+	 */
+	private Image getCustomChar(int cp) {
+		int i = getCustomIndex(cp);
+		return (i < 0) ? this.glyphCache.get(cp) : this.customImages[i];
+	}
+
+	/**
+	 * @param cp a code point
+	 * @return index of cp in the user defined characters, negative if it is
+	 *         not one of them
+	 */
+	private int getCustomIndex(int cp) {
+		if (cp > Character.MAX_VALUE)
+			return -1;
+		return Arrays.binarySearch(this.customChars, (char) cp);
+	}
+
+	/**
+	 * Ends the frame for the glyphs rasterized on demand by all fonts
+	 * <p>
+	 * Must be called once all text of a frame was drawn
+	 * 
+	 * @return true if glyphs were evicted from the atlas, or could not be
+	 *         rasterized yet: cached quads may sample them and must be drawn
+	 *         again
+	 */
+	public static boolean endFrame() {
+		return GlyphCache.endFrame();
+	}
+
+	/**
+	 * @return the current frame of the glyphs rasterized on demand, to be
+	 *         given to {@link #setDrawnFrame(long)} when it is drawn
+	 */
+	public static long getFrame() {
+		return GlyphCache.getFrame();
+	}
+
+	/**
+	 * Tells which frame is being drawn, from the drawing thread
+	 * <p>
+	 * Glyphs evicted from the atlas are only replaced once no frame that
+	 * may sample them can be drawn again
+	 * 
+	 * @param frame a value returned by {@link #getFrame()} while the frame
+	 *            being drawn was built; older frames must not be drawn again
+	 */
+	public static void setDrawnFrame(long frame) {
+		GlyphCache.setDrawn(frame);
+	}
+
 	/**
 	 * Get the font's height
 	 * 
@@ -250,6 +621,8 @@ public class TrueTypeFont {
 
 	/**
 	 * Draw a string
+	 * <p>
+	 * Iterates by code point: a surrogate pair is one character
 	 * 
 	 * @param x The x position to draw the string
 	 * @param y The y position to draw the string
@@ -263,18 +636,22 @@ public class TrueTypeFont {
 		int charCurrent;
 
 		int acc = 0;
-		for (int i = 0; i < whatchars.length(); i++) {
-			charCurrent = whatchars.charAt(i);
+		for (int i = 0; i < whatchars.length(); i += Character
+				.charCount(charCurrent)) {
+			charCurrent = whatchars.codePointAt(i);
 			if (charCurrent < 256) {
 				intObject = charArray[charCurrent];
 			} else {
-				intObject = customChars.get(new Character((char) charCurrent));
+				intObject = getCustomChar(charCurrent);
 			}
 
 			if (intObject != null) {
 				Util.raster().fillQuad(x + acc, y, intObject, color, alpha);
 
 				acc += intObject.getWidth();
+			} else if (charCurrent >= 256) {
+				// drawn next frame, keep the same layout
+				acc += glyphCache.getAdvance(charCurrent);
 			}
 		}
 	}
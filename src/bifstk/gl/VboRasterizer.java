@@ -0,0 +1,206 @@
+package bifstk.gl;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+
+import bifstk.util.BifstkException;
+
+/**
+ * 2D drawing operations using streamed Vertex Buffer Objects and a minimal
+ * shader program
+ * <p>
+ * The interleaved {@link QuadBatch} is sent to the GPU in a single orphaned
+ * VBO per flush, and drawn as indexed triangles from a static index buffer,
+ * with one draw call per run of quads on the same page of the {@link Atlas}
+ *
+ */
+public class VboRasterizer extends Rasterizer {
+
+	/** maximum number of quads buffered before a flush is forced */
+	private static final int MAX_QUADS = 4096;
+
+	/**
+	 * vertex shader: uses the projection set up by the Renderer, scales the
+	 * texel coordinates to the size of the page
+	 */
+	private static final String vertexShader = "#version 110\n"
+			+ "uniform vec2 texScale;\n" //
+			+ "attribute vec2 position;\n" //
+			+ "attribute vec4 color;\n" //
+			+ "attribute vec2 texCoord;\n" //
+			+ "varying vec4 vColor;\n" //
+			+ "varying vec2 vTexCoord;\n" //
+			+ "void main() {\n" //
+			+ "  vColor = color;\n" //
+			+ "  vTexCoord = texCoord * texScale;\n"
+			+ "  gl_Position = gl_ModelViewProjectionMatrix"
+			+ " * vec4(position, 0.0, 1.0);\n" //
+			+ "}\n";
+
+	/** fragment shader: modulates the atlas texel by the vertex color */
+	private static final String fragmentShader = "#version 110\n"
+			+ "uniform sampler2D atlas;\n" //
+			+ "varying vec4 vColor;\n" //
+			+ "varying vec2 vTexCoord;\n" //
+			+ "void main() {\n"
+			+ "  gl_FragColor = texture2D(atlas, vTexCoord) * vColor;\n" //
+			+ "}\n";
+
+	/** attribute locations, bound before linking */
+	private static final int ATTR_POSITION = 0, ATTR_COLOR = 1,
+			ATTR_TEXCOORD = 2;
+
+	/** id of the streamed vertex buffer */
+	private int vbo = 0;
+	/** id of the static index buffer */
+	private int ibo = 0;
+	/** id of the shader program */
+	private int program = 0;
+	/** location of the texture scale uniform of the program */
+	private int texScale = -1;
+
+	/**
+	 * Default constructor
+	 * <p>
+	 * Requires a current GL context supporting OpenGL 2.0
+	 *
+	 * @throws BifstkException the shader program could not be built
+	 */
+	public VboRasterizer() throws BifstkException {
+		super(MAX_QUADS);
+
+		this.program = createProgram();
+		this.texScale = GL20.glGetUniformLocation(this.program, "texScale");
+
+		// two triangles per quad, indices never change
+		ShortBuffer indices = BufferUtils.createShortBuffer(MAX_QUADS * 6);
+		for (int i = 0; i < MAX_QUADS; i++) {
+			short v = (short) (i * 4);
+			indices.put(v).put((short) (v + 1)).put((short) (v + 2));
+			indices.put((short) (v + 2)).put((short) (v + 3)).put(v);
+		}
+		indices.flip();
+
+		this.ibo = GL15.glGenBuffers();
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, this.ibo);
+		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices,
+				GL15.GL_STATIC_DRAW);
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		this.vbo = GL15.glGenBuffers();
+	}
+
+	/**
+	 * Compiles and links the shader program
+	 *
+	 * @return the id of the program in the GL context
+	 * @throws BifstkException compilation or linking failed
+	 */
+	private static int createProgram() throws BifstkException {
+		int vs = compileShader(GL20.GL_VERTEX_SHADER, vertexShader);
+		int fs = compileShader(GL20.GL_FRAGMENT_SHADER, fragmentShader);
+
+		int prog = GL20.glCreateProgram();
+		GL20.glAttachShader(prog, vs);
+		GL20.glAttachShader(prog, fs);
+		GL20.glBindAttribLocation(prog, ATTR_POSITION, "position");
+		GL20.glBindAttribLocation(prog, ATTR_COLOR, "color");
+		GL20.glBindAttribLocation(prog, ATTR_TEXCOORD, "texCoord");
+		GL20.glLinkProgram(prog);
+
+		// shaders are not needed anymore once the program is linked
+		GL20.glDetachShader(prog, vs);
+		GL20.glDetachShader(prog, fs);
+		GL20.glDeleteShader(vs);
+		GL20.glDeleteShader(fs);
+
+		if (GL20.glGetProgram(prog, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+			String log = GL20.glGetProgramInfoLog(prog, 1024);
+			GL20.glDeleteProgram(prog);
+			throw new BifstkException("Could not link shader program: " + log);
+		}
+
+		GL20.glUseProgram(prog);
+		GL20.glUniform1i(GL20.glGetUniformLocation(prog, "atlas"), 0);
+		GL20.glUseProgram(0);
+
+		return prog;
+	}
+
+	/**
+	 * @param type vertex or fragment
+	 * @param source GLSL source of the shader
+	 * @return the id of the compiled shader
+	 * @throws BifstkException compilation failed
+	 */
+	private static int compileShader(int type, String source)
+			throws BifstkException {
+		int shader = GL20.glCreateShader(type);
+		GL20.glShaderSource(shader, source);
+		GL20.glCompileShader(shader);
+
+		if (GL20.glGetShader(shader, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
+			String log = GL20.glGetShaderInfoLog(shader, 1024);
+			GL20.glDeleteShader(shader);
+			throw new BifstkException("Could not compile shader: " + log);
+		}
+		return shader;
+	}
+
+	@Override
+	protected void render(QuadBatch batch) {
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo);
+		// orphan the previous storage so the driver does not have to wait for
+		// the last draw call to complete before we can write again
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, MAX_QUADS * QuadBatch.QUAD_SIZE,
+				GL15.GL_STREAM_DRAW);
+		ByteBuffer buf = batch.getBuffer();
+		buf.limit(batch.getByteCount());
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, buf);
+		buf.clear();
+
+		GL20.glUseProgram(this.program);
+
+		GL20.glEnableVertexAttribArray(ATTR_POSITION);
+		GL20.glEnableVertexAttribArray(ATTR_COLOR);
+		GL20.glEnableVertexAttribArray(ATTR_TEXCOORD);
+
+		GL20.glVertexAttribPointer(ATTR_POSITION, 2, GL11.GL_SHORT, false,
+				QuadBatch.VERTEX_SIZE, QuadBatch.POSITION_OFFSET);
+		GL20.glVertexAttribPointer(ATTR_COLOR, 4, GL11.GL_UNSIGNED_BYTE, true,
+				QuadBatch.VERTEX_SIZE, QuadBatch.COLOR_OFFSET);
+		GL20.glVertexAttribPointer(ATTR_TEXCOORD, 2, GL11.GL_SHORT, false,
+				QuadBatch.VERTEX_SIZE, QuadBatch.TEXCOORD_OFFSET);
+
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, this.ibo);
+
+		// one draw call per run of quads on the same page
+		Atlas atlas = Atlas.getInstance();
+		int first = 0;
+		while (first < batch.getQuadCount()) {
+			int end = batch.getRunEnd(first);
+			int page = batch.getPage(first);
+			GL11.glBindTexture(GL11.GL_TEXTURE_2D, atlas.getTexId(page));
+			GL20.glUniform2f(this.texScale, 1.0f / atlas.getWidth(page),
+					1.0f / atlas.getHeight(page));
+			// 6 indices of 2 bytes per quad
+			GL11.glDrawElements(GL11.GL_TRIANGLES, (end - first) * 6,
+					GL11.GL_UNSIGNED_SHORT, first * 12);
+			first = end;
+		}
+
+		GL20.glDisableVertexAttribArray(ATTR_POSITION);
+		GL20.glDisableVertexAttribArray(ATTR_COLOR);
+		GL20.glDisableVertexAttribArray(ATTR_TEXCOORD);
+
+		GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		GL20.glUseProgram(0);
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+	}
+}
@@ -0,0 +1,126 @@
+package bifstk.gl;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD span blending using the incubating Vector API
+ * <p>
+ * Processes as many pixels per iteration as the preferred vector shape holds
+ * (8 with AVX2, 16 with AVX-512); the end of spans, and spans shorter than
+ * a vector like most glyph rows, are blended one pixel at a time.
+ * Requires <code>--add-modules jdk.incubator.vector</code> both to compile
+ * and to run, {@link SpanBlender#create()} falls back to scalar code
+ * otherwise
+ *
+ */
+public class VectorSpanBlender extends SpanBlender {
+
+	private static final VectorSpecies<Integer> species = IntVector.SPECIES_PREFERRED;
+
+	/**
+	 * @return round(x / 255) on each lane, for lanes in [0, 255 * 255]
+	 */
+	private static IntVector div255(IntVector x) {
+		x = x.add(128);
+		return x.add(x.lanewise(VectorOperators.LSHR, 8)).lanewise(
+				VectorOperators.LSHR, 8);
+	}
+
+	/**
+	 * @return channel of each lane, shifted down to [0, 255]
+	 */
+	private static IntVector channel(IntVector v, int shift) {
+		return v.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+	}
+
+	@Override
+	public void blend(int[] dst, int dstOff, int[] src, int srcOff, int len,
+			int abgr) {
+		int ca = abgr >>> 24;
+		int cb = (abgr >> 16) & 0xFF;
+		int cg = (abgr >> 8) & 0xFF;
+		int cr = abgr & 0xFF;
+
+		int i = 0;
+		int bound = species.loopBound(len);
+		for (; i < bound; i += species.length()) {
+			IntVector t = IntVector.fromArray(species, src, srcOff + i);
+			IntVector d = IntVector.fromArray(species, dst, dstOff + i);
+			blend(d, t, ca, cr, cg, cb).intoArray(dst, dstOff + i);
+		}
+
+		for (; i < len; i++) {
+			dst[dstOff + i] = blend(dst[dstOff + i], src[srcOff + i], abgr);
+		}
+	}
+
+	/**
+	 * @param d ARGB destination pixels
+	 * @param t ARGB texels
+	 * @return the new ARGB destination pixels
+	 */
+	private static IntVector blend(IntVector d, IntVector t, int ca, int cr,
+			int cg, int cb) {
+		IntVector sa = div255(channel(t, 24).mul(ca));
+		IntVector sr = div255(channel(t, 16).mul(cr));
+		IntVector sg = div255(channel(t, 8).mul(cg));
+		IntVector sb = div255(t.and(0xFF).mul(cb));
+		IntVector ia = sa.neg().add(255);
+
+		// exact for sa == 0 and sa == 255 too: no need for masking
+		IntVector da = div255(sa.mul(sa).add(channel(d, 24).mul(ia)));
+		IntVector dr = div255(sr.mul(sa).add(channel(d, 16).mul(ia)));
+		IntVector dg = div255(sg.mul(sa).add(channel(d, 8).mul(ia)));
+		IntVector db = div255(sb.mul(sa).add(d.and(0xFF).mul(ia)));
+
+		return da.lanewise(VectorOperators.LSHL, 24)
+				.or(dr.lanewise(VectorOperators.LSHL, 16))
+				.or(dg.lanewise(VectorOperators.LSHL, 8)).or(db);
+	}
+
+	@Override
+	public void fill(int[] dst, int dstOff, int len, int texel, int abgr) {
+		int sa = div255((texel >>> 24) * (abgr >>> 24));
+		if (sa == 0)
+			return;
+
+		int sr = div255(((texel >> 16) & 0xFF) * (abgr & 0xFF));
+		int sg = div255(((texel >> 8) & 0xFF) * ((abgr >> 8) & 0xFF));
+		int sb = div255((texel & 0xFF) * ((abgr >> 16) & 0xFF));
+		int ia = 255 - sa;
+
+		int i = 0;
+		if (sa == 255) {
+			IntVector v = IntVector.broadcast(species, 0xFF000000 | (sr << 16)
+					| (sg << 8) | sb);
+			int bound = species.loopBound(len);
+			for (; i < bound; i += species.length()) {
+				v.intoArray(dst, dstOff + i);
+			}
+		} else {
+			// source terms are the same for the whole span
+			int pa = sa * sa, pr = sr * sa, pg = sg * sa, pb = sb * sa;
+
+			int bound = species.loopBound(len);
+			for (; i < bound; i += species.length()) {
+				IntVector d = IntVector.fromArray(species, dst, dstOff + i);
+
+				IntVector da = div255(channel(d, 24).mul(ia).add(pa));
+				IntVector dr = div255(channel(d, 16).mul(ia).add(pr));
+				IntVector dg = div255(channel(d, 8).mul(ia).add(pg));
+				IntVector db = div255(d.and(0xFF).mul(ia).add(pb));
+
+				da.lanewise(VectorOperators.LSHL, 24)
+						.or(dr.lanewise(VectorOperators.LSHL, 16))
+						.or(dg.lanewise(VectorOperators.LSHL, 8)).or(db)
+						.intoArray(dst, dstOff + i);
+			}
+		}
+
+		for (; i < len; i++) {
+			dst[dstOff + i] = blend(dst[dstOff + i], texel, abgr);
+		}
+	}
+}
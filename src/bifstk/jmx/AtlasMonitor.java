@@ -0,0 +1,42 @@
+package bifstk.jmx;
+
+import bifstk.gl.Atlas;
+
+/**
+ * Implementation of {@link AtlasMonitorMBean}
+ * <p>
+ * The atlas must be created before: creating it needs the GL context
+ * 
+ */
+public class AtlasMonitor implements AtlasMonitorMBean {
+
+	@Override
+	public int getPages() {
+		return Atlas.getInstance().getPageCount();
+	}
+
+	@Override
+	public int getWidth() {
+		return Atlas.getInstance().getWidth(0);
+	}
+
+	@Override
+	public int getHeight() {
+		return Atlas.getInstance().getHeight(0);
+	}
+
+	@Override
+	public int getMaxSize() {
+		return Atlas.getInstance().getMaxSize();
+	}
+
+	@Override
+	public long getUsedPixels() {
+		return Atlas.getInstance().getUsed();
+	}
+
+	@Override
+	public double getUsage() {
+		return Atlas.getInstance().getFill() * 100.0;
+	}
+}
@@ -0,0 +1,39 @@
+package bifstk.jmx;
+
+/**
+ * Monitoring of the texture atlas, registered as
+ * <code>bifstk:type=Atlas</code>
+ * 
+ */
+public interface AtlasMonitorMBean {
+
+	/**
+	 * @return number of textures of the atlas
+	 */
+	public int getPages();
+
+	/**
+	 * @return pixel width of the first page of the atlas
+	 */
+	public int getWidth();
+
+	/**
+	 * @return pixel height of the first page of the atlas
+	 */
+	public int getHeight();
+
+	/**
+	 * @return size in pixels the pages cannot grow beyond
+	 */
+	public int getMaxSize();
+
+	/**
+	 * @return pixels of the atlas holding textures
+	 */
+	public long getUsedPixels();
+
+	/**
+	 * @return percentage of the atlas holding textures
+	 */
+	public double getUsage();
+}
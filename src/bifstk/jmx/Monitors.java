@@ -0,0 +1,99 @@
+package bifstk.jmx;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import bifstk.util.Logger;
+import bifstk.wm.State;
+
+/**
+ * Registers the MBeans monitoring Bifstk in the platform MBean server
+ * <p>
+ * <ul>
+ * <li><code>bifstk:type=Renderer</code>: {@link RendererMonitorMBean}
+ * <li><code>bifstk:type=WM</code>: {@link WmMonitorMBean}
+ * <li><code>bifstk:type=Atlas</code>: {@link AtlasMonitorMBean}
+ * </ul>
+ * Attributes are read from the JMX threads without locking the WM, they may
+ * lag a frame behind; operations are run in the logic thread
+ * 
+ * @see bifstk.config.Config#isDisplayJmx()
+ */
+public class Monitors {
+
+	/** type of each MBean in its name */
+	private static final String[] TYPES = {
+			"Renderer", "WM", "Atlas"
+	};
+
+	/** true once {@link #register(State)} was called */
+	private static boolean registered = false;
+
+	private Monitors() {
+	}
+
+	/**
+	 * Registers all the MBeans, once the display and the texture atlas are
+	 * initialized
+	 * <p>
+	 * Failing to register is logged and does not prevent Bifstk from running
+	 * 
+	 * @param state state of the WM to monitor
+	 */
+	public static synchronized void register(State state) {
+		if (registered) {
+			return;
+		}
+		registered = true;
+
+		Object[] beans = {
+				new RendererMonitor(), new WmMonitor(state), new AtlasMonitor()
+		};
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (int i = 0; i < TYPES.length; i++) {
+				server.registerMBean(beans[i], getName(TYPES[i]));
+			}
+			Logger.info("JMX monitoring registered");
+		} catch (JMException e) {
+			Logger.warn("Could not register JMX monitoring", e);
+			unregister();
+		}
+	}
+
+	/**
+	 * Unregisters the MBeans registered by {@link #register(State)}, if any
+	 */
+	public static synchronized void unregister() {
+		if (!registered) {
+			return;
+		}
+		registered = false;
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (String type : TYPES) {
+			try {
+				ObjectName name = getName(type);
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+			} catch (JMException e) {
+				Logger.warn("Could not unregister JMX monitoring", e);
+			}
+		}
+	}
+
+	/**
+	 * @param type type of a Bifstk MBean
+	 * @return the name of the MBean
+	 * @throws MalformedObjectNameException
+	 */
+	private static ObjectName getName(String type)
+			throws MalformedObjectNameException {
+		return new ObjectName("bifstk:type=" + type);
+	}
+}
@@ -0,0 +1,96 @@
+package bifstk.jmx;
+
+import bifstk.Bifstk;
+import bifstk.config.Config;
+import bifstk.gl.Rasterizer;
+import bifstk.util.FrameStats;
+import bifstk.util.FrameStats.Phase;
+import bifstk.util.Tracer;
+
+/**
+ * Implementation of {@link RendererMonitorMBean}
+ * 
+ */
+public class RendererMonitor implements RendererMonitorMBean {
+
+	/** time and number of frames at the registration */
+	private final long startTime, startFrames;
+
+	public RendererMonitor() {
+		this.startTime = System.nanoTime();
+		this.startFrames = FrameStats.getCount(Phase.FRAME);
+	}
+
+	@Override
+	public double getFps() {
+		return FrameStats.getRate(Phase.FRAME);
+	}
+
+	@Override
+	public double getAverageFps() {
+		long frames = FrameStats.getCount(Phase.FRAME) - this.startFrames;
+		long time = System.nanoTime() - this.startTime;
+		return Math.max(0, frames) * 1e9 / Math.max(1, time);
+	}
+
+	@Override
+	public double getFrameTimeP50() {
+		return FrameStats.getSummary(Phase.FRAME).getP50() / 1e6;
+	}
+
+	@Override
+	public double getFrameTimeP95() {
+		return FrameStats.getSummary(Phase.FRAME).getP95() / 1e6;
+	}
+
+	@Override
+	public double getFrameTimeP99() {
+		return FrameStats.getSummary(Phase.FRAME).getP99() / 1e6;
+	}
+
+	@Override
+	public double getFrameTimeMax() {
+		return FrameStats.getSummary(Phase.FRAME).getMax() / 1e6;
+	}
+
+	@Override
+	public int getQuadsPerFrame() {
+		return Rasterizer.getInstance().getQuadCount();
+	}
+
+	@Override
+	public int getBytesPerFrame() {
+		return Rasterizer.getInstance().getByteCount();
+	}
+
+	@Override
+	public int getDrawCallsPerFrame() {
+		return Rasterizer.getInstance().getDrawCount();
+	}
+
+	@Override
+	public int getOverflowsPerFrame() {
+		return Rasterizer.getInstance().getOverflowCount();
+	}
+
+	@Override
+	public boolean isFpsCap() {
+		return Config.get().isDisplayFpsCap();
+	}
+
+	@Override
+	public void toggleFpsCap() {
+		Bifstk.runLater(new Runnable() {
+			@Override
+			public void run() {
+				Config c = Config.get();
+				c.setDisplayFpsCap(!c.isDisplayFpsCap());
+			}
+		});
+	}
+
+	@Override
+	public boolean dumpTrace() {
+		return Tracer.dump();
+	}
+}
@@ -0,0 +1,82 @@
+package bifstk.jmx;
+
+/**
+ * Monitoring of the frames drawn, registered as
+ * <code>bifstk:type=Renderer</code>
+ * <p>
+ * Frame rates and durations are only measured when
+ * {@link bifstk.config.Config#isDisplayStats()}
+ * 
+ */
+public interface RendererMonitorMBean {
+
+	/**
+	 * @return frames drawn during the last second
+	 */
+	public double getFps();
+
+	/**
+	 * @return frames drawn per second since the registration of the MBean
+	 */
+	public double getAverageFps();
+
+	/**
+	 * @return median duration of the recent frames in milliseconds
+	 */
+	public double getFrameTimeP50();
+
+	/**
+	 * @return 95th percentile of the duration of the recent frames in
+	 *         milliseconds
+	 */
+	public double getFrameTimeP95();
+
+	/**
+	 * @return 99th percentile of the duration of the recent frames in
+	 *         milliseconds
+	 */
+	public double getFrameTimeP99();
+
+	/**
+	 * @return longest duration of the recent frames in milliseconds
+	 */
+	public double getFrameTimeMax();
+
+	/**
+	 * @return quads rasterized during the last frame
+	 */
+	public int getQuadsPerFrame();
+
+	/**
+	 * @return vertex bytes submitted during the last frame
+	 */
+	public int getBytesPerFrame();
+
+	/**
+	 * @return batches of quads sent to be drawn during the last frame
+	 */
+	public int getDrawCallsPerFrame();
+
+	/**
+	 * @return batches flushed during the last frame because they were full
+	 */
+	public int getOverflowsPerFrame();
+
+	/**
+	 * @return true if the framerate is capped
+	 */
+	public boolean isFpsCap();
+
+	/**
+	 * Caps or uncaps the framerate
+	 */
+	public void toggleFpsCap();
+
+	/**
+	 * Writes the spans recorded by the tracer to a file, when
+	 * {@link bifstk.config.Config#isDisplayTrace()}
+	 * 
+	 * @return false if nothing was recorded
+	 */
+	public boolean dumpTrace();
+}
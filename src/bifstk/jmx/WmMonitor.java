@@ -0,0 +1,94 @@
+package bifstk.jmx;
+
+import bifstk.Bifstk;
+import bifstk.config.Config;
+import bifstk.util.Logger;
+import bifstk.wm.Frame;
+import bifstk.wm.State;
+
+/**
+ * Implementation of {@link WmMonitorMBean}
+ * 
+ */
+public class WmMonitor implements WmMonitorMBean {
+
+	private final State state;
+
+	/** time and number of log messages at the registration */
+	private final long startTime, startMessages;
+
+	/**
+	 * @param state state of the WM to monitor
+	 */
+	public WmMonitor(State state) {
+		this.state = state;
+		this.startTime = System.nanoTime();
+		this.startMessages = Logger.getMessageCount();
+	}
+
+	@Override
+	public int getWindowCount() {
+		return this.state.getWindows().size();
+	}
+
+	@Override
+	public int getAreaCount() {
+		return this.state.getAreas().size();
+	}
+
+	@Override
+	public int getLeftDockCount() {
+		return this.state.getLeftDock().size();
+	}
+
+	@Override
+	public int getRightDockCount() {
+		return this.state.getRightDock().size();
+	}
+
+	@Override
+	public long getLogMessageCount() {
+		return Logger.getMessageCount();
+	}
+
+	@Override
+	public double getLogRate() {
+		long n = Logger.getMessageCount() - this.startMessages;
+		long time = System.nanoTime() - this.startTime;
+		return n * 1e9 / Math.max(1, time);
+	}
+
+	@Override
+	public boolean isDebugLayout() {
+		return Config.get().isWmDebugLayout();
+	}
+
+	@Override
+	public boolean isAnimations() {
+		return Config.get().isWmAnimations();
+	}
+
+	@Override
+	public void toggleDebugLayout() {
+		Bifstk.runLater(new Runnable() {
+			@Override
+			public void run() {
+				Config c = Config.get();
+				c.setWmDebugLayout(!c.isWmDebugLayout());
+				// drawn differently: retained quads are stale
+				Frame.invalidateAll();
+			}
+		});
+	}
+
+	@Override
+	public void toggleAnimations() {
+		Bifstk.runLater(new Runnable() {
+			@Override
+			public void run() {
+				Config c = Config.get();
+				c.setWmAnimations(!c.isWmAnimations());
+			}
+		});
+	}
+}
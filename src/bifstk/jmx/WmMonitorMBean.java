@@ -0,0 +1,59 @@
+package bifstk.jmx;
+
+/**
+ * Monitoring of the Window Manager, registered as <code>bifstk:type=WM</code>
+ * 
+ */
+public interface WmMonitorMBean {
+
+	/**
+	 * @return number of floating Windows
+	 */
+	public int getWindowCount();
+
+	/**
+	 * @return number of Areas
+	 */
+	public int getAreaCount();
+
+	/**
+	 * @return number of Windows in the left dock
+	 */
+	public int getLeftDockCount();
+
+	/**
+	 * @return number of Windows in the right dock
+	 */
+	public int getRightDockCount();
+
+	/**
+	 * @return number of log messages printed since the start
+	 */
+	public long getLogMessageCount();
+
+	/**
+	 * @return log messages printed per second since the registration of the
+	 *         MBean
+	 */
+	public double getLogRate();
+
+	/**
+	 * @return true if the layout of the Widgets is shown
+	 */
+	public boolean isDebugLayout();
+
+	/**
+	 * @return true if the Frames are animated
+	 */
+	public boolean isAnimations();
+
+	/**
+	 * Shows or hides the layout of the Widgets
+	 */
+	public void toggleDebugLayout();
+
+	/**
+	 * Enables or disables the animations of the Frames
+	 */
+	public void toggleAnimations();
+}
@@ -0,0 +1,36 @@
+package bifstk.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the loading of textures in the atlas
+ *
+ * @see bifstk.gl.Atlas#load(java.awt.image.BufferedImage, int, int)
+ */
+@Name("bifstk.AtlasLoad")
+@Label("Atlas Load")
+@Category({ "Bifstk", "Display" })
+@Description("Textures loaded in the atlas and uploaded to the GL context")
+public class AtlasEvent extends jdk.jfr.Event {
+
+	@Label("Page")
+	@Description("Index of the atlas page the textures were loaded in")
+	public int page;
+
+	@Label("Width")
+	@Description("Pixel width of the region taken by the new textures")
+	public int width;
+
+	@Label("Height")
+	@Description("Pixel height of the region taken by the new textures")
+	public int height;
+
+	@Label("Uploaded")
+	@Description("Bytes sent to the GL context, 0 without one")
+	@DataAmount(DataAmount.BYTES)
+	public int bytes;
+}
@@ -0,0 +1,50 @@
+package bifstk.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the rasterization of a batch of quads
+ *
+ * @see bifstk.gl.Rasterizer#flush()
+ */
+@Name("bifstk.Flush")
+@Label("Flush")
+@Category({ "Bifstk", "Display" })
+@Description("A batch of quads sent to be drawn")
+public class FlushEvent extends jdk.jfr.Event {
+
+	/** registered type, tells if the event is recorded */
+	private static final EventType type = EventType
+			.getEventType(FlushEvent.class);
+
+	@Label("Rasterizer")
+	public Class<?> rasterizer;
+
+	@Label("Quads")
+	public int quads;
+
+	@Label("Bytes")
+	@DataAmount(DataAmount.BYTES)
+	public int bytes;
+
+	@Label("Overflow")
+	@Description("Forced in the middle of a frame because the batch was full")
+	public boolean overflow;
+
+	@Label("End of Frame")
+	@Description("Last batch of the frame")
+	public boolean endOfFrame;
+
+	/**
+	 * @return true if a running recording enables this event: it need not
+	 *         be created otherwise
+	 */
+	public static boolean isRecorded() {
+		return type.isEnabled();
+	}
+}
@@ -0,0 +1,29 @@
+package bifstk.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning a whole frame, from input polling to buffer
+ * swap
+ * <p>
+ * Like all Bifstk events, it costs nothing but a few checks when no
+ * recording is running
+ *
+ */
+@Name("bifstk.Frame")
+@Label("Frame")
+@Category({ "Bifstk", "Display" })
+@Description("A frame, from input polling to buffer swap")
+public class FrameEvent extends jdk.jfr.Event {
+
+	@Label("Quads")
+	@Description("Quads rasterized during the frame")
+	public int quads;
+
+	@Label("Draw Calls")
+	@Description("Batches of quads sent to be drawn during the frame")
+	public int drawCalls;
+}
@@ -0,0 +1,264 @@
+package bifstk.util;
+
+import java.util.Arrays;
+
+import bifstk.config.Config;
+
+/**
+ * Timing of each phase of the frames
+ * <p>
+ * The runner thread measures each phase with {@link #start()} and
+ * {@link #end(Phase, long)}; the last {@link #SAMPLES} durations of each
+ * phase are kept, so that percentiles over the recent frames can be queried
+ * from any thread with {@link #getSummary(Phase)}. Measuring costs two calls
+ * to {@link System#nanoTime()}, and nothing when
+ * {@link Config#isDisplayStats()} is false
+ *
+ */
+public class FrameStats {
+
+	/**
+	 * Measured parts of a frame
+	 */
+	public static enum Phase {
+		/** input events pumped from the system by the display */
+		INPUT,
+		/** the whole update of the WM logic */
+		LOGIC,
+		/** mouse events and their handlers, part of LOGIC */
+		MOUSE,
+		/** keyboard events and their handlers, part of LOGIC */
+		KEYBOARD,
+		/** update of the WM state, part of LOGIC */
+		STATE,
+		/** animations stepped by the scheduler */
+		ANIMATIONS,
+		/** drawing of the client Root */
+		ROOT,
+		/** drawing of the Areas */
+		AREAS,
+		/** drawing of the docks and the Windows they hold */
+		DOCKS,
+		/** drawing of the stack of Windows */
+		WINDOWS,
+		/** rasterization of the batched quads and presentation */
+		FLUSH,
+		/** buffer swap, including waiting for VSync */
+		SWAP,
+		/** a whole frame, from input polling to buffer swap */
+		FRAME;
+	}
+
+	/**
+	 * Percentiles of the recent durations of a phase, in nanoseconds
+	 */
+	public static class Summary {
+
+		private Phase phase;
+		private int count;
+		private long p50, p95, p99, max;
+
+		private Summary(Phase phase, long[] sorted, int count) {
+			this.phase = phase;
+			this.count = count;
+			if (count > 0) {
+				this.p50 = sorted[percentile(count, 50)];
+				this.p95 = sorted[percentile(count, 95)];
+				this.p99 = sorted[percentile(count, 99)];
+				this.max = sorted[count - 1];
+			}
+		}
+
+		/**
+		 * @return index of the nearest rank percentile in n sorted values
+		 */
+		private static int percentile(int n, int p) {
+			return Math.max(0, (n * p + 99) / 100 - 1);
+		}
+
+		/**
+		 * @return the measured phase
+		 */
+		public Phase getPhase() {
+			return this.phase;
+		}
+
+		/**
+		 * @return number of durations the percentiles are computed from
+		 */
+		public int getCount() {
+			return this.count;
+		}
+
+		/**
+		 * @return median duration in nanoseconds
+		 */
+		public long getP50() {
+			return this.p50;
+		}
+
+		/**
+		 * @return 95th percentile of the durations in nanoseconds
+		 */
+		public long getP95() {
+			return this.p95;
+		}
+
+		/**
+		 * @return 99th percentile of the durations in nanoseconds
+		 */
+		public long getP99() {
+			return this.p99;
+		}
+
+		/**
+		 * @return longest duration in nanoseconds
+		 */
+		public long getMax() {
+			return this.max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-10s p50 %7.3f p95 %7.3f p99 %7.3f "
+					+ "max %7.3f ms", this.phase, this.p50 / 1e6,
+					this.p95 / 1e6, this.p99 / 1e6, this.max / 1e6);
+		}
+	}
+
+	/** number of durations kept for each phase */
+	public static final int SAMPLES = 256;
+
+	/** durations of each phase, ring buffers indexed by phase */
+	private static final long[][] samples =
+			new long[Phase.values().length][SAMPLES];
+	/** end times of the durations, same layout as samples */
+	private static final long[][] times =
+			new long[Phase.values().length][SAMPLES];
+	/** number of durations recorded for each phase */
+	private static final long[] counts = new long[Phase.values().length];
+
+	private FrameStats() {
+	}
+
+	/**
+	 * @return true if phases are measured
+	 */
+	public static boolean isEnabled() {
+		return Config.get() != null && Config.get().isDisplayStats();
+	}
+
+	/**
+	 * Starts measuring a phase
+	 *
+	 * @return the current time to give to {@link #end(Phase, long)}, 0 if
+	 *         measuring is disabled
+	 */
+	public static long start() {
+		if (!isEnabled())
+			return 0;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the duration of a phase
+	 *
+	 * @param phase the measured phase
+	 * @param start value returned by {@link #start()} at the beginning of
+	 *            the phase
+	 */
+	public static void end(Phase phase, long start) {
+		if (start == 0)
+			return;
+		long now = System.nanoTime();
+		int p = phase.ordinal();
+		synchronized (samples) {
+			int i = (int) (counts[p] % SAMPLES);
+			samples[p][i] = now - start;
+			times[p][i] = now;
+			counts[p]++;
+		}
+	}
+
+	/**
+	 * @param phase a phase of the frames
+	 * @return percentiles of the last {@link #SAMPLES} durations of the
+	 *         phase
+	 */
+	public static Summary getSummary(Phase phase) {
+		int p = phase.ordinal();
+		long[] sorted;
+		int n;
+		synchronized (samples) {
+			n = (int) Math.min(counts[p], SAMPLES);
+			sorted = Arrays.copyOf(samples[p], n);
+		}
+		Arrays.sort(sorted);
+		return new Summary(phase, sorted, n);
+	}
+
+	/**
+	 * Copies the last durations of a phase
+	 *
+	 * @param phase a phase of the frames
+	 * @param dst filled with the most recent durations in nanoseconds, oldest
+	 *            first
+	 * @return number of durations copied, at most the length of dst
+	 */
+	public static int getSamples(Phase phase, long[] dst) {
+		int p = phase.ordinal();
+		synchronized (samples) {
+			int n = (int) Math.min(Math.min(counts[p], SAMPLES), dst.length);
+			for (int i = 0; i < n; i++) {
+				dst[i] = samples[p][(int) ((counts[p] - n + i) % SAMPLES)];
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * @param phase a phase of the frames
+	 * @return number of times the phase was measured during the last second,
+	 *         extrapolated from the recorded measures if they all happened
+	 *         during that second
+	 */
+	public static double getRate(Phase phase) {
+		int p = phase.ordinal();
+		long now = System.nanoTime();
+		synchronized (samples) {
+			long c = counts[p];
+			int n = (int) Math.min(c, SAMPLES);
+			int k = 0;
+			while (k < n
+					&& now - times[p][(int) ((c - 1 - k) % SAMPLES)] <= 1000000000L) {
+				k++;
+			}
+			if (k < n || k < 2) {
+				return k;
+			}
+			long first = times[p][(int) ((c - k) % SAMPLES)];
+			long last = times[p][(int) ((c - 1) % SAMPLES)];
+			return (k - 1) * 1e9 / Math.max(1, last - first);
+		}
+	}
+
+	/**
+	 * @param phase a phase of the frames
+	 * @return number of times the phase was measured since the last
+	 *         {@link #reset()}
+	 */
+	public static long getCount(Phase phase) {
+		synchronized (samples) {
+			return counts[phase.ordinal()];
+		}
+	}
+
+	/**
+	 * Forgets all recorded durations
+	 */
+	public static void reset() {
+		synchronized (samples) {
+			Arrays.fill(counts, 0);
+		}
+	}
+}
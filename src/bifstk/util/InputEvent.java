@@ -0,0 +1,24 @@
+package bifstk.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the dispatch of mouse and keyboard input by
+ * the WM logic, including the handlers of the Widgets and the client
+ *
+ */
+@Name("bifstk.Input")
+@Label("Input Dispatch")
+@Category({ "Bifstk", "WM" })
+@Description("Mouse and keyboard events dispatched")
+public class InputEvent extends jdk.jfr.Event {
+
+	@Label("Mouse Events")
+	public int mouseEvents;
+
+	@Label("Key Events")
+	public int keyEvents;
+}
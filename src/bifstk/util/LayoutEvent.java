@@ -0,0 +1,31 @@
+package bifstk.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the layout of the children of a container
+ * <p>
+ * Layouts of nested containers are nested events
+ *
+ */
+@Name("bifstk.Layout")
+@Label("Layout")
+@Category({ "Bifstk", "WM" })
+@Description("Children of a container resized")
+public class LayoutEvent extends jdk.jfr.Event {
+
+	@Label("Container")
+	public Class<?> container;
+
+	@Label("Children")
+	public int children;
+
+	@Label("Width")
+	public int width;
+
+	@Label("Height")
+	public int height;
+}
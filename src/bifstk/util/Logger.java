@@ -3,6 +3,7 @@ package bifstk.util;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
 
 import bifstk.config.Config;
 
@@ -79,6 +80,9 @@ public class Logger {
 	/** Singleton instance */
 	private static Logger instance = null;
 
+	/** number of messages printed since the start */
+	private static final AtomicLong messages = new AtomicLong();
+
 	/**
 	 * Private constructor, access should be static only
 	 * 
@@ -234,6 +238,14 @@ public class Logger {
 		instance.message("    " + message, Level.INFO);
 	}
 
+	/**
+	 * @return the number of messages printed since the start, in the log
+	 *         file or on stdout
+	 */
+	public static long getMessageCount() {
+		return messages.get();
+	}
+
 	/**
 	 * Throws a RuntimeException if the logger is not ready to be used
 	 */
@@ -296,6 +308,7 @@ public class Logger {
 			// debug is disabled
 			return;
 		}
+		messages.incrementAndGet();
 		if (vis.isStdout()) {
 			System.out.println(getFormattedString(message, t, false,
 					this.trace, this.traceLen));
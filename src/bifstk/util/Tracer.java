@@ -0,0 +1,266 @@
+package bifstk.util;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import bifstk.config.Config;
+
+/**
+ * Records spans of time to be viewed in the Chrome trace viewer or Perfetto
+ * <p>
+ * Spans are measured with {@link #begin()} and {@link #end(String, long)}
+ * from any thread, and kept in a ring buffer of the last {@link #CAPACITY}
+ * spans allocated once. Recording costs two calls to
+ * {@link System#nanoTime()} and a short lock, and nothing when
+ * {@link Config#isDisplayTrace()} is false.
+ * <p>
+ * The buffer is written to a <code>trace_event</code> JSON file in the
+ * background by {@link #dump()}, or automatically when a frame lasts longer
+ * than {@link Config#getDisplayTraceThreshold()}, so that the frames
+ * preceding a stutter can be examined
+ *
+ */
+public class Tracer {
+
+	/** number of spans kept */
+	public static final int CAPACITY = 65536;
+
+	/** minimum nanoseconds between two automatic dumps */
+	private static final long DUMP_INTERVAL = 10000000000L;
+
+	/** name of the span recorded for each frame */
+	public static final String FRAME = "frame";
+
+	private static final Object lock = new Object();
+
+	/** ring buffers of the spans, allocated on first use */
+	private static long[] starts = null, ends = null, threads = null;
+	private static String[] names = null;
+	private static Object[] args = null;
+	/** number of spans recorded */
+	private static long count = 0;
+
+	/** time of the last automatic dump */
+	private static long lastDump = 0;
+
+	private Tracer() {
+	}
+
+	/**
+	 * @return true if spans are recorded
+	 */
+	public static boolean isEnabled() {
+		return Config.get() != null && Config.get().isDisplayTrace();
+	}
+
+	/**
+	 * Starts measuring a span
+	 *
+	 * @return the current time to give to {@link #end(String, long)}, 0 if
+	 *         recording is disabled
+	 */
+	public static long begin() {
+		if (!isEnabled())
+			return 0;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a span
+	 *
+	 * @param name name of the span, should be a constant
+	 * @param start value returned by {@link #begin()} at the beginning of the
+	 *            span
+	 */
+	public static void end(String name, long start) {
+		end(name, null, start);
+	}
+
+	/**
+	 * Records a span
+	 *
+	 * @param name name of the span, should be a constant
+	 * @param arg shown along the span, converted to a String only when
+	 *            dumped, or null
+	 * @param start value returned by {@link #begin()} at the beginning of the
+	 *            span
+	 */
+	public static void end(String name, Object arg, long start) {
+		if (start == 0)
+			return;
+		long now = System.nanoTime();
+		long tid = Thread.currentThread().getId();
+		synchronized (lock) {
+			if (starts == null) {
+				starts = new long[CAPACITY];
+				ends = new long[CAPACITY];
+				threads = new long[CAPACITY];
+				names = new String[CAPACITY];
+				args = new Object[CAPACITY];
+			}
+			int i = (int) (count % CAPACITY);
+			starts[i] = start;
+			ends[i] = now;
+			threads[i] = tid;
+			names[i] = name;
+			args[i] = arg;
+			count++;
+		}
+	}
+
+	/**
+	 * Records the span of a whole frame, and dumps the buffer if it lasted
+	 * longer than {@link Config#getDisplayTraceThreshold()}
+	 *
+	 * @param start value returned by {@link #begin()} when the frame began
+	 */
+	public static void endFrame(long start) {
+		if (start == 0)
+			return;
+		end(FRAME, start);
+
+		int threshold = Config.get().getDisplayTraceThreshold();
+		long now = System.nanoTime();
+		if (threshold > 0 && now - start > threshold * 1000000L) {
+			synchronized (lock) {
+				if (lastDump != 0 && now - lastDump < DUMP_INTERVAL)
+					return;
+				lastDump = now;
+			}
+			Logger.warn("Frame lasted " + (now - start) / 1000000
+					+ " ms, dumping trace");
+			dump();
+		}
+	}
+
+	/**
+	 * Writes all the spans recorded to a new file named after
+	 * {@link Config#getDisplayTracePath()}, in a background thread
+	 *
+	 * @return false if there was nothing to write
+	 */
+	public static boolean dump() {
+		final long[] s, e, t;
+		final String[] n;
+		final Object[] a;
+		int len;
+		synchronized (lock) {
+			len = (int) Math.min(count, CAPACITY);
+			if (len == 0) {
+				return false;
+			}
+			// oldest first
+			int first = (int) ((count - len) % CAPACITY);
+			s = new long[len];
+			e = new long[len];
+			t = new long[len];
+			n = new String[len];
+			a = new Object[len];
+			for (int i = 0; i < len; i++) {
+				int j = (first + i) % CAPACITY;
+				s[i] = starts[j];
+				e[i] = ends[j];
+				t[i] = threads[j];
+				n[i] = names[j];
+				a[i] = args[j];
+			}
+		}
+
+		final String path = Config.get().getDisplayTracePath() + "-"
+				+ System.currentTimeMillis() + ".json";
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					write(path, s, e, t, n, a);
+					Logger.info("Trace written to " + path);
+				} catch (IOException ex) {
+					Logger.error("Could not write trace to " + path, ex);
+				}
+			}
+		});
+		writer.setName("bifstk-trace");
+		writer.setDaemon(true);
+		writer.start();
+		return true;
+	}
+
+	/**
+	 * Writes spans in the Chrome trace_event JSON format
+	 */
+	private static void write(String path, long[] s, long[] e, long[] t,
+			String[] n, Object[] a) throws IOException {
+		// name the threads that are still alive
+		Map<Long, String> threadNames = new HashMap<Long, String>();
+		for (Thread th : Thread.getAllStackTraces().keySet()) {
+			threadNames.put(th.getId(), th.getName());
+		}
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(path), "UTF-8"));
+		try {
+			out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+			long origin = s[0];
+			for (int i = 0; i < s.length; i++) {
+				origin = Math.min(origin, s[i]);
+			}
+
+			Map<Long, Boolean> named = new HashMap<Long, Boolean>();
+			for (int i = 0; i < s.length; i++) {
+				if (!named.containsKey(t[i])) {
+					named.put(t[i], true);
+					String tn = threadNames.get(t[i]);
+					if (tn == null) {
+						tn = "thread " + t[i];
+					}
+					out.write("{\"name\":\"thread_name\",\"ph\":\"M\","
+							+ "\"pid\":1,\"tid\":" + t[i]
+							+ ",\"args\":{\"name\":\"" + escape(tn)
+							+ "\"}},\n");
+				}
+			}
+
+			for (int i = 0; i < s.length; i++) {
+				StringBuilder b = new StringBuilder();
+				b.append("{\"name\":\"").append(escape(n[i]));
+				b.append("\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(t[i]);
+				b.append(",\"ts\":").append((s[i] - origin) / 1000.0);
+				b.append(",\"dur\":").append((e[i] - s[i]) / 1000.0);
+				if (a[i] != null) {
+					String arg = (a[i] instanceof Class<?>) ? ((Class<?>) a[i])
+							.getSimpleName() : String.valueOf(a[i]);
+					b.append(",\"args\":{\"arg\":\"").append(escape(arg));
+					b.append("\"}");
+				}
+				b.append(i + 1 < s.length ? "},\n" : "}\n");
+				out.write(b.toString());
+			}
+			out.write("]}\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return str as the content of a JSON string
+	 */
+	private static String escape(String str) {
+		StringBuilder b = new StringBuilder(str.length());
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == '"' || c == '\\') {
+				b.append('\\').append(c);
+			} else if (c < 0x20) {
+				b.append(String.format("\\u%04x", (int) c));
+			} else {
+				b.append(c);
+			}
+		}
+		return b.toString();
+	}
+}
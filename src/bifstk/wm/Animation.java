@@ -0,0 +1,179 @@
+package bifstk.wm;
+
+import org.lwjgl.Sys;
+
+import bifstk.config.Config;
+import bifstk.gl.Util;
+
+/**
+ * A value transitioning over time towards a target
+ * <p>
+ * Animations are advanced once per frame by the {@link AnimationScheduler}:
+ * reading the value while drawing does not depend on the clock, and the
+ * Frame that displays it is invalidated each time it changes
+ * 
+ */
+public class Animation {
+
+	/**
+	 * Progression of the value between the start and the end of the
+	 * transition
+	 */
+	public static enum Easing {
+		/** constant speed */
+		LINEAR,
+		/** starts slowly */
+		EASE_IN,
+		/** ends slowly */
+		EASE_OUT,
+		/** starts and ends slowly */
+		EASE_IN_OUT;
+
+		/**
+		 * @param t elapsed fraction of the transition in [0, 1]
+		 * @return fraction of the distance covered in [0, 1]
+		 */
+		public float apply(float t) {
+			switch (this) {
+			case EASE_IN:
+				return t * t;
+			case EASE_OUT:
+				return t * (2.0f - t);
+			case EASE_IN_OUT:
+				return t * t * (3.0f - 2.0f * t);
+			default:
+				return t;
+			}
+		}
+	}
+
+	/** Frame invalidated when the value changes, can be null */
+	private Frame target = null;
+
+	private Easing easing = Easing.LINEAR;
+
+	/** current value */
+	private float value;
+	/** values at the beginning and at the end of the transition */
+	private float from, to;
+	/** beginning of the transition, see {@link Sys#getTime()} */
+	private long start = 0;
+	/** length of the transition in ms */
+	private long duration = 0;
+
+	/** true while the transition is in progress */
+	private boolean running = false;
+	/** true while held by the scheduler */
+	boolean scheduled = false;
+
+	/**
+	 * Default constructor
+	 * 
+	 * @param value initial value
+	 * @param easing progression of the transitions
+	 * @param target Frame to invalidate when the value changes, can be null
+	 */
+	public Animation(float value, Easing easing, Frame target) {
+		this.value = this.from = this.to = value;
+		this.easing = easing;
+		this.target = target;
+	}
+
+	/**
+	 * @return the value for the current frame
+	 */
+	public float getValue() {
+		return this.value;
+	}
+
+	/**
+	 * @return the value at the end of the transition
+	 */
+	public float getTarget() {
+		return this.to;
+	}
+
+	/**
+	 * @return true while the transition is in progress
+	 */
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Starts a transition from the current value, lasting
+	 * {@link Config#getWmAnimationsLength()} ms
+	 * 
+	 * @param to value at the end of the transition
+	 */
+	public void animateTo(float to) {
+		this.animateTo(to, Config.get().getWmAnimationsLength());
+	}
+
+	/**
+	 * Starts a transition from the current value
+	 * <p>
+	 * The value is set immediately if animations are disabled
+	 * 
+	 * @param to value at the end of the transition
+	 * @param duration length of the transition in ms
+	 */
+	public void animateTo(float to, long duration) {
+		if (to == this.to) {
+			return;
+		}
+		if (!Config.get().isWmAnimations() || duration <= 0) {
+			this.set(to);
+			return;
+		}
+
+		this.from = this.value;
+		this.to = to;
+		this.start = Sys.getTime();
+		this.duration = duration;
+		this.running = true;
+		AnimationScheduler.get().add(this);
+	}
+
+	/**
+	 * Sets the value immediately, interrupting the transition in progress
+	 * 
+	 * @param value the new value
+	 */
+	public void set(float value) {
+		this.running = false;
+		this.from = this.to = value;
+		this.setValue(value);
+	}
+
+	/**
+	 * Computes the value at a given time
+	 * 
+	 * @param time current time, see {@link Sys#getTime()}
+	 * @return false once the transition is over
+	 */
+	boolean update(long time) {
+		if (!this.running) {
+			return false;
+		}
+		float t = Util.clampf((float) (time - this.start)
+				/ (float) this.duration, 0.0f, 1.0f);
+		if (t >= 1.0f) {
+			this.running = false;
+			this.setValue(this.to);
+			return false;
+		}
+		this.setValue(this.from + (this.to - this.from)
+				* this.easing.apply(t));
+		return true;
+	}
+
+	private void setValue(float value) {
+		if (value != this.value) {
+			this.value = value;
+			if (this.target != null) {
+				this.target.invalidate();
+			}
+		}
+	}
+}
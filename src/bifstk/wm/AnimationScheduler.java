@@ -0,0 +1,98 @@
+package bifstk.wm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lwjgl.Sys;
+
+import bifstk.config.Config;
+
+/**
+ * Advances all running {@link Animation}s once per frame
+ * <p>
+ * Called by the main loop before rendering: animated values are computed
+ * once and read by the renderers, and the Frames displaying them are
+ * invalidated so that geometry caches and damage tracking know they changed
+ * 
+ */
+public class AnimationScheduler {
+
+	/** singleton instance */
+	private static AnimationScheduler instance = null;
+
+	/** animations in progress */
+	private List<Animation> animations = new ArrayList<Animation>();
+
+	/** time of the current frame */
+	private long time = 0;
+
+	private AnimationScheduler() {
+	}
+
+	/**
+	 * @return the scheduler instance
+	 */
+	public static AnimationScheduler get() {
+		if (instance == null) {
+			instance = new AnimationScheduler();
+		}
+		return instance;
+	}
+
+	/**
+	 * @param a an animation that started a transition
+	 */
+	void add(Animation a) {
+		if (!a.scheduled) {
+			a.scheduled = true;
+			this.animations.add(a);
+		}
+	}
+
+	/**
+	 * Computes the values of all running animations for a new frame, and
+	 * forgets about the finished ones
+	 */
+	public void update() {
+		this.time = Sys.getTime();
+		boolean enabled = Config.get().isWmAnimations();
+
+		int j = 0;
+		for (int i = 0; i < this.animations.size(); i++) {
+			Animation a = this.animations.get(i);
+			if (!enabled) {
+				a.set(a.getTarget());
+			}
+			if (a.update(this.time)) {
+				this.animations.set(j++, a);
+			} else {
+				a.scheduled = false;
+			}
+		}
+		while (this.animations.size() > j) {
+			this.animations.remove(this.animations.size() - 1);
+		}
+	}
+
+	/**
+	 * @return true if an animation is in progress: the next frame will differ
+	 *         from the current one
+	 */
+	public boolean isAnimating() {
+		return !this.animations.isEmpty();
+	}
+
+	/**
+	 * @return number of animations in progress
+	 */
+	public int getAnimationCount() {
+		return this.animations.size();
+	}
+
+	/**
+	 * @return time of the current frame, see {@link Sys#getTime()}
+	 */
+	public long getTime() {
+		return this.time;
+	}
+}
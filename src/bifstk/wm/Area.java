@@ -80,7 +80,7 @@ public class Area extends Frame {
 
 	@Override
 	protected Color getFrameUnfocusedColor() {
-		return Theme.get().areaColor.add(Theme.get().areaUnfocusedMask);
+		return Theme.get().areaUnfocusedColor;
 	}
 
 	@Override
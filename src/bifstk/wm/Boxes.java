@@ -0,0 +1,266 @@
+package bifstk.wm;
+
+/**
+ * A few boxes of the display, in screen coordinates, or the whole display
+ * <p>
+ * Holds at most {@link #MAX} boxes that do not overlap: a box overlapping
+ * another one is merged in their bounding box, and when there are too many,
+ * the two boxes whose bounding box adds the least area are merged. Changes
+ * far apart on the display, ie. a caret and a button, are drawn without the
+ * space between them
+ *
+ */
+public class Boxes {
+
+	/** maximum number of boxes */
+	public static final int MAX = 4;
+
+	/** x0, y0, x1, y1 of each box; one more for the box being added */
+	private final int[] boxes = new int[4 * (MAX + 1)];
+	/** number of boxes */
+	private int count = 0;
+
+	/** true when the whole display is included */
+	private boolean full = false;
+
+	/**
+	 * Adds a box
+	 *
+	 * @param x top left abscissa in screen coordinates
+	 * @param y top left ordinate in screen coordinates
+	 * @param w box width
+	 * @param h box height
+	 */
+	public void add(int x, int y, int w, int h) {
+		if (w <= 0 || h <= 0)
+			return;
+
+		int i = 4 * this.count++;
+		this.boxes[i] = x;
+		this.boxes[i + 1] = y;
+		this.boxes[i + 2] = x + w;
+		this.boxes[i + 3] = y + h;
+		this.merge();
+	}
+
+	/**
+	 * Adds all the boxes of another list
+	 *
+	 * @param other boxes to add
+	 */
+	public void add(Boxes other) {
+		if (other.full) {
+			this.full = true;
+		}
+		for (int i = 0; i < other.count; i++) {
+			int j = 4 * i;
+			this.add(other.boxes[j], other.boxes[j + 1], other.boxes[j + 2]
+					- other.boxes[j], other.boxes[j + 3] - other.boxes[j + 1]);
+		}
+	}
+
+	/**
+	 * Includes the whole display
+	 */
+	public void addFull() {
+		this.full = true;
+	}
+
+	/**
+	 * Removes all the boxes
+	 */
+	public void clear() {
+		this.count = 0;
+		this.full = false;
+	}
+
+	/**
+	 * Replaces the boxes by their bounding box
+	 */
+	public void bound() {
+		if (this.count > 1) {
+			for (int i = 1; i < this.count; i++) {
+				this.union(0, i);
+			}
+			this.count = 1;
+		}
+	}
+
+	/**
+	 * Cuts the boxes to the display, dropping the ones outside
+	 *
+	 * @param width display width
+	 * @param height display height
+	 */
+	public void clip(int width, int height) {
+		int i = 0;
+		while (i < this.count) {
+			int j = 4 * i;
+			this.boxes[j] = Math.max(this.boxes[j], 0);
+			this.boxes[j + 1] = Math.max(this.boxes[j + 1], 0);
+			this.boxes[j + 2] = Math.min(this.boxes[j + 2], width);
+			this.boxes[j + 3] = Math.min(this.boxes[j + 3], height);
+			if (this.boxes[j + 2] <= this.boxes[j]
+					|| this.boxes[j + 3] <= this.boxes[j + 1]) {
+				this.remove(i);
+			} else {
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the whole display is included
+	 */
+	public boolean isFull() {
+		return this.full;
+	}
+
+	/**
+	 * @return true if there is no box and the display is not included
+	 */
+	public boolean isEmpty() {
+		return !this.full && this.count == 0;
+	}
+
+	/**
+	 * @return number of boxes, which do not include the display when
+	 *         {@link #isFull()}
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return sum of the areas of the boxes
+	 */
+	public long getArea() {
+		long area = 0;
+		for (int i = 0; i < this.count; i++) {
+			area += this.area(4 * i);
+		}
+		return area;
+	}
+
+	/**
+	 * @param i index of the box
+	 * @return top left abscissa of the box
+	 */
+	public int getX(int i) {
+		return this.boxes[4 * i];
+	}
+
+	/**
+	 * @param i index of the box
+	 * @return top left ordinate of the box
+	 */
+	public int getY(int i) {
+		return this.boxes[4 * i + 1];
+	}
+
+	/**
+	 * @param i index of the box
+	 * @return width of the box
+	 */
+	public int getWidth(int i) {
+		return this.boxes[4 * i + 2] - this.boxes[4 * i];
+	}
+
+	/**
+	 * @param i index of the box
+	 * @return height of the box
+	 */
+	public int getHeight(int i) {
+		return this.boxes[4 * i + 3] - this.boxes[4 * i + 1];
+	}
+
+	/**
+	 * Merges the boxes that overlap, then the closest ones until there are
+	 * at most {@link #MAX}
+	 */
+	private void merge() {
+		while (true) {
+			if (this.mergeOverlap())
+				continue;
+			if (this.count <= MAX)
+				return;
+
+			int a = 0, b = 1;
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < this.count; i++) {
+				for (int j = i + 1; j < this.count; j++) {
+					long waste = this.unionArea(4 * i, 4 * j)
+							- this.area(4 * i) - this.area(4 * j);
+					if (waste < best) {
+						best = waste;
+						a = i;
+						b = j;
+					}
+				}
+			}
+			this.union(a, b);
+			this.remove(b);
+		}
+	}
+
+	/**
+	 * Merges the first two boxes found overlapping
+	 *
+	 * @return true if two boxes were merged
+	 */
+	private boolean mergeOverlap() {
+		int[] bx = this.boxes;
+		for (int i = 0; i < this.count; i++) {
+			for (int j = i + 1; j < this.count; j++) {
+				int p = 4 * i, q = 4 * j;
+				if (bx[p] < bx[q + 2] && bx[q] < bx[p + 2]
+						&& bx[p + 1] < bx[q + 3] && bx[q + 1] < bx[p + 3]) {
+					this.union(i, j);
+					this.remove(j);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Grows box <code>a</code> to the bounding box of <code>a</code> and
+	 * <code>b</code>
+	 */
+	private void union(int a, int b) {
+		int p = 4 * a, q = 4 * b;
+		this.boxes[p] = Math.min(this.boxes[p], this.boxes[q]);
+		this.boxes[p + 1] = Math.min(this.boxes[p + 1], this.boxes[q + 1]);
+		this.boxes[p + 2] = Math.max(this.boxes[p + 2], this.boxes[q + 2]);
+		this.boxes[p + 3] = Math.max(this.boxes[p + 3], this.boxes[q + 3]);
+	}
+
+	/**
+	 * Removes a box, replaced by the last one
+	 */
+	private void remove(int i) {
+		int last = 4 * --this.count;
+		System.arraycopy(this.boxes, last, this.boxes, 4 * i, 4);
+	}
+
+	/**
+	 * @return area of the box starting at offset <code>p</code>
+	 */
+	private long area(int p) {
+		return (long) (this.boxes[p + 2] - this.boxes[p])
+				* (this.boxes[p + 3] - this.boxes[p + 1]);
+	}
+
+	/**
+	 * @return area of the bounding box of the boxes at offsets
+	 *         <code>p</code> and <code>q</code>
+	 */
+	private long unionArea(int p, int q) {
+		int[] bx = this.boxes;
+		return (long) (Math.max(bx[p + 2], bx[q + 2]) - Math.min(bx[p],
+				bx[q]))
+				* (Math.max(bx[p + 3], bx[q + 3]) - Math.min(bx[p + 1],
+						bx[q + 1]));
+	}
+}
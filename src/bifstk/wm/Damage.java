@@ -0,0 +1,70 @@
+package bifstk.wm;
+
+/**
+ * Region of the display that changed since the last frame
+ * <p>
+ * Frames and Widgets report the boxes they need drawn again, accumulated in
+ * a few {@link Boxes}; the {@link Renderer} only draws those boxes on the
+ * next frame, each clipped with a scissor, and clears them
+ *
+ */
+public class Damage {
+
+	/** boxes of the damage, in screen coordinates */
+	private static final Boxes boxes = new Boxes();
+
+	static {
+		boxes.addFull();
+	}
+
+	private Damage() {
+	}
+
+	/**
+	 * Adds a box to the damaged region
+	 *
+	 * @param x top left abscissa in screen coordinates
+	 * @param y top left ordinate in screen coordinates
+	 * @param w box width
+	 * @param h box height
+	 */
+	public static void add(int x, int y, int w, int h) {
+		boxes.add(x, y, w, h);
+	}
+
+	/**
+	 * Damages the whole display, ie. when something not tracked by a Frame
+	 * changed
+	 */
+	public static void addFull() {
+		boxes.addFull();
+	}
+
+	/**
+	 * Forgets about the current damage, once drawn
+	 */
+	public static void clear() {
+		boxes.clear();
+	}
+
+	/**
+	 * @return true if the whole display is damaged
+	 */
+	public static boolean isFull() {
+		return boxes.isFull();
+	}
+
+	/**
+	 * @return true if nothing is damaged
+	 */
+	public static boolean isEmpty() {
+		return boxes.isEmpty();
+	}
+
+	/**
+	 * @return the damaged boxes, only valid until the next change
+	 */
+	static Boxes getBoxes() {
+		return boxes;
+	}
+}
@@ -10,8 +10,13 @@ import bifstk.config.Fonts;
 import bifstk.config.TextureLoader;
 import bifstk.config.Theme;
 import bifstk.gl.Color;
+import bifstk.gl.QuadCache;
 import bifstk.gl.Rasterizer;
+import bifstk.gl.RenderTexture;
 import bifstk.gl.Util;
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+import bifstk.util.Tracer;
 import bifstk.wm.geom.Point;
 import bifstk.wm.geom.Rectangle;
 import bifstk.wm.geom.Region;
@@ -87,15 +92,11 @@ public abstract class Frame implements Drawable, Clickable {
 	private boolean controlCloseHover = false;
 	/** true if the Close Control button is clicked by the mouse */
 	private boolean controlCloseDown = false;
-	/** time when close control hover state changed */
-	private long controlCloseHoverTime = 0;
 
 	/** true if the Maximize Control button is hovered by the mouse */
 	private boolean controlMaximizeHover = false;
 	/** true if the Maximize Control button is clicked by the mouse */
 	private boolean controlMaximizeDown = false;
-	/** time when maximize control hover state changed */
-	private long controlMaximizeHoverTime = 0;
 
 	/** content of the frame */
 	private Widget content = null;
@@ -123,9 +124,75 @@ public abstract class Frame implements Drawable, Clickable {
 	/** false if this Frame is not part of the WM */
 	private boolean active = false;
 
+	/** last UI and shadow colors, see {@link #getUiColor()} */
+	private BlendedColor uiColor = new BlendedColor(),
+			shadowColor = new BlendedColor();
+
+	/** 1.0 when focused, 0.0 when not, in between during transitions */
+	private Animation focusAnim = new Animation(0.0f, Animation.Easing.LINEAR,
+			this);
+	/** 1.0 when dragged, 0.0 when not */
+	private Animation dragAnim = new Animation(0.0f, Animation.Easing.LINEAR,
+			this);
+	/** 1.0 when resized, 0.0 when not */
+	private Animation resizeAnim = new Animation(0.0f,
+			Animation.Easing.LINEAR, this);
+	/** 1.0 when part of the WM, 0.0 when not */
+	private Animation appearAnim = new Animation(0.0f,
+			Animation.Easing.LINEAR, this);
+	/** 1.0 when the close control is hovered, 0.0 when not */
+	private Animation closeHoverAnim = new Animation(0.0f,
+			Animation.Easing.LINEAR, this);
+	/** 1.0 when the maximize control is hovered, 0.0 when not */
+	private Animation maximizeHoverAnim = new Animation(0.0f,
+			Animation.Easing.LINEAR, this);
+
 	/** Widget that currently has keyboard focus */
 	private Focusable keyboardFocus = null;
 
+	/** incremented each time the appearance of this Frame changes */
+	private int generation = 0;
+	/** incremented each time the appearance of all Frames changes */
+	private static int globalGeneration = 0;
+
+	/** quads drawn by the last call to render, replayed when unchanged */
+	private QuadCache cache = new QuadCache();
+	/** generations the cache was recorded with, -1 if it was not */
+	private int cacheGeneration = -1, cacheGlobalGeneration = -1;
+	/** render parameters the cache was recorded with */
+	private float cacheAlpha = 0.0f, cacheUiAlpha = 0.0f;
+	/** packed color parameter the cache was recorded with */
+	private int cacheUiColor = 0;
+	/** position the cache was recorded at */
+	private int cacheX = 0, cacheY = 0;
+
+	/** true to draw this Frame in a texture and composite it */
+	private boolean textureCache = false;
+	/** content of this Frame if textureCache is true, or null */
+	private RenderTexture texture = null;
+	/** generations the texture was drawn with, -1 if it was not */
+	private int textureGeneration = -1, textureGlobalGeneration = -1;
+	/** render parameters the texture was drawn with */
+	private float textureUiAlpha = 0.0f;
+	/** packed color parameter the texture was drawn with */
+	private int textureUiColor = 0;
+
+	/** generations the damage was last computed for, -1 if it was not */
+	private int damageGeneration = -1, damageGlobalGeneration = -1;
+	/** render parameters the damage was last computed for */
+	private float damageAlpha = 0.0f, damageUiAlpha = 0.0f;
+	/** packed color parameter the damage was last computed for */
+	private int damageUiColor = 0;
+	/** box covered on screen when the damage was last computed */
+	private int damageX = 0, damageY = 0, damageW = 0, damageH = 0;
+
+	/** time of the pending invalidation, 0 if there is none */
+	private long pendingTime = 0;
+	/** screen box damaged by the pending invalidation */
+	private int pendingX0 = 0, pendingY0 = 0, pendingX1 = 0, pendingY1 = 0;
+	/** screen position of the origin of the current drawing */
+	private int drawX = 0, drawY = 0;
+
 	/**
 	 * Default constructor
 	 * 
@@ -157,6 +224,8 @@ public abstract class Frame implements Drawable, Clickable {
 	public void init() {
 		this.apparitionTime = Sys.getTime();
 		this.active = true;
+		this.appearAnim.animateTo(1.0f);
+		this.invalidate();
 	}
 
 	/**
@@ -165,6 +234,205 @@ public abstract class Frame implements Drawable, Clickable {
 	public void teardown() {
 		this.removalTime = Sys.getTime();
 		this.active = false;
+		this.appearAnim.animateTo(0.0f);
+		this.invalidate();
+	}
+
+	/**
+	 * Marks this Frame as changed: it will be drawn again on the next render
+	 * instead of replaying the quads it emitted the last time
+	 * <p>
+	 * Called by the setters of the Frame, and by Widgets when their
+	 * appearance changes
+	 */
+	public void invalidate() {
+		this.generation++;
+	}
+
+	/**
+	 * Marks a part of this Frame as changed: it will be drawn again on the
+	 * next render, but only the given box of the display is damaged instead
+	 * of the whole Frame
+	 * 
+	 * @param x top left abscissa in screen coordinates
+	 * @param y top left ordinate in screen coordinates
+	 * @param w box width
+	 * @param h box height
+	 * @see Damage
+	 */
+	public void invalidate(int x, int y, int w, int h) {
+		// keep the damage up to date if it was, so that the whole Frame is
+		// not damaged on the next render
+		boolean clean = this.damageGeneration == this.generation;
+		this.generation++;
+		if (clean) {
+			this.damageGeneration = this.generation;
+		}
+		Damage.add(x, y, w, h);
+	}
+
+	/**
+	 * Invalidates a part of this Frame once a given time is reached, ie. for
+	 * a blinking caret
+	 * <p>
+	 * Must be called while drawing: the box is relative to the current
+	 * translation. Pending invalidations are merged
+	 * 
+	 * @param time value of {@link Sys#getTime()} at which the box changes
+	 * @param x top left abscissa relative to the current translation
+	 * @param y top left ordinate relative to the current translation
+	 * @param w box width
+	 * @param h box height
+	 * @see #invalidate(int, int, int, int)
+	 */
+	public void invalidateLater(long time, int x, int y, int w, int h) {
+		x += Rasterizer.getTranslateX() + this.drawX;
+		y += Rasterizer.getTranslateY() + this.drawY;
+
+		if (this.pendingTime == 0) {
+			this.pendingTime = time;
+			this.pendingX0 = x;
+			this.pendingY0 = y;
+			this.pendingX1 = x + w;
+			this.pendingY1 = y + h;
+		} else {
+			this.pendingTime = Math.min(this.pendingTime, time);
+			this.pendingX0 = Math.min(this.pendingX0, x);
+			this.pendingY0 = Math.min(this.pendingY0, y);
+			this.pendingX1 = Math.max(this.pendingX1, x + w);
+			this.pendingY1 = Math.max(this.pendingY1, y + h);
+		}
+	}
+
+	/**
+	 * Must be called while drawing this Frame
+	 * 
+	 * @return abscissa of the current translation, relative to the left of
+	 *         this Frame
+	 * @see bifstk.wm.ui.Widget#invalidateBox()
+	 */
+	public int getDrawnX() {
+		return Rasterizer.getTranslateX() + this.drawX - this.getX();
+	}
+
+	/**
+	 * Must be called while drawing this Frame
+	 * 
+	 * @return ordinate of the current translation, relative to the top of
+	 *         this Frame
+	 * @see bifstk.wm.ui.Widget#invalidateBox()
+	 */
+	public int getDrawnY() {
+		return Rasterizer.getTranslateY() + this.drawY - this.getY();
+	}
+
+	/**
+	 * @return time of the next pending invalidation, 0 if there is none
+	 * @see #invalidateLater(long, int, int, int, int)
+	 */
+	long getPendingTime() {
+		return this.pendingTime;
+	}
+
+	/**
+	 * Invalidates all Frames at once, ie. when the configuration changed
+	 */
+	public static void invalidateAll() {
+		globalGeneration++;
+		Damage.addFull();
+	}
+
+	/**
+	 * Reports the region of the display this Frame changed since the last
+	 * call, called by the renderer before each frame with the parameters of
+	 * {@link #render(float, Color, float)}
+	 * 
+	 * @param alpha overall opacity
+	 * @param uiColor base UI background color
+	 * @param uiAlpha base UI background opacity
+	 * @param margin pixels drawn around the Frame, ie. by its shadow
+	 */
+	void damage(float alpha, Color uiColor, float uiAlpha, int margin) {
+		if (this.pendingTime != 0
+				&& AnimationScheduler.get().getTime() >= this.pendingTime) {
+			this.pendingTime = 0;
+			this.invalidate(this.pendingX0, this.pendingY0, this.pendingX1
+					- this.pendingX0, this.pendingY1 - this.pendingY0);
+		}
+
+		int col = uiColor.toABGR(1.0f);
+		int x = this.getX() - margin, y = this.getY() - margin;
+		int w = this.getWidth() + 2 * margin;
+		int h = this.getHeight() + 2 * margin;
+
+		if (this.damageGeneration == this.generation
+				&& this.damageGlobalGeneration == globalGeneration
+				&& this.damageAlpha == alpha && this.damageUiAlpha == uiAlpha
+				&& this.damageUiColor == col && this.damageX == x
+				&& this.damageY == y && this.damageW == w
+				&& this.damageH == h) {
+			return;
+		}
+
+		// where it was, and where it is now
+		Damage.add(this.damageX, this.damageY, this.damageW, this.damageH);
+		Damage.add(x, y, w, h);
+
+		this.damageGeneration = this.generation;
+		this.damageGlobalGeneration = globalGeneration;
+		this.damageAlpha = alpha;
+		this.damageUiAlpha = uiAlpha;
+		this.damageUiColor = col;
+		this.damageX = x;
+		this.damageY = y;
+		this.damageW = w;
+		this.damageH = h;
+	}
+
+	/**
+	 * Frees the resources held for rendering, called by the state when this
+	 * Frame is not displayed anymore
+	 */
+	void dispose() {
+		if (this.texture != null) {
+			this.texture.destroy();
+			this.texture = null;
+		}
+		this.textureGeneration = -1;
+		this.cacheGeneration = -1;
+
+		// not displayed anymore: where it was last drawn must be redrawn
+		Damage.add(this.damageX, this.damageY, this.damageW, this.damageH);
+		this.damageGeneration = -1;
+		this.damageW = this.damageH = 0;
+		this.pendingTime = 0;
+	}
+
+	/**
+	 * Caches the whole Frame in an offscreen texture, composited as a single
+	 * quad until the Frame is invalidated
+	 * <p>
+	 * Moving the Frame or changing its opacity does not require drawing it
+	 * again. Best suited for Frames whose content rarely changes; only
+	 * available with hardware rasterizers supporting render to texture, and
+	 * when {@link Config#isWmTextureCache()}: the recorded quads are replayed
+	 * otherwise
+	 * 
+	 * @param c true to enable the texture cache
+	 */
+	public void setTextureCache(boolean c) {
+		this.textureCache = c;
+		if (!c) {
+			this.dispose();
+		}
+	}
+
+	/**
+	 * @return true if the texture cache is enabled
+	 * @see #setTextureCache(boolean)
+	 */
+	public boolean isTextureCache() {
+		return this.textureCache;
 	}
 
 	/**
@@ -178,19 +446,145 @@ public abstract class Frame implements Drawable, Clickable {
 	 * @return true if this Frame is not active and not visible
 	 */
 	public boolean isRemovable() {
-		return !this.active
-				&& (Sys.getTime() - this.removalTime) > Config.get()
-						.getWmAnimationsLength();
+		return !this.active && !this.appearAnim.isRunning();
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * Renders this Frame
+	 * <p>
+	 * When nothing changed since the last call, the quads recorded then are
+	 * copied to the rasterizer instead of walking the whole widget tree again
+	 * 
+	 * @see #invalidate()
+	 */
 	@Override
 	public void render(float alpha, Color uiColor, float uiAlpha) {
+		long t = Tracer.begin();
+		this.renderCached(alpha, uiColor, uiAlpha);
+		Tracer.end("Frame.render", this.title.isEmpty() ? this.getClass()
+				: this.title, t);
+	}
+
+	/**
+	 * Draws this Frame or replays the quads it recorded
+	 */
+	private void renderCached(float alpha, Color uiColor, float uiAlpha) {
+		// recorded quads are in screen coordinates and already clipped
+		if (!Config.get().isWmRetained() || !Rasterizer.isTopLevel()) {
+			this.draw(alpha, uiColor, uiAlpha);
+			return;
+		}
+
+		Rasterizer raster = Util.raster();
+		if (this.textureCache && Config.get().isWmTextureCache()
+				&& raster.isHardware() && RenderTexture.isSupported()) {
+			this.renderTexture(alpha, uiColor, uiAlpha);
+			return;
+		}
+
+		int col = uiColor.toABGR(1.0f);
+
+		if (this.cacheGeneration == this.generation
+				&& this.cacheGlobalGeneration == globalGeneration
+				&& this.cacheAlpha == alpha && this.cacheUiAlpha == uiAlpha
+				&& this.cacheUiColor == col && this.cacheX == this.getX()
+				&& this.cacheY == this.getY()) {
+			raster.replay(this.cache);
+			return;
+		}
+
+		// invalidated while drawing, ie. by an animation: record again on the
+		// next render
+		int gen = this.generation;
+		this.cacheGeneration = -1;
+		raster.beginRecord(this.cache);
+		try {
+			this.draw(alpha, uiColor, uiAlpha);
+		} finally {
+			raster.endRecord();
+		}
+
+		this.cacheGeneration = gen;
+		this.cacheGlobalGeneration = globalGeneration;
+		this.cacheAlpha = alpha;
+		this.cacheUiAlpha = uiAlpha;
+		this.cacheUiColor = col;
+		this.cacheX = this.getX();
+		this.cacheY = this.getY();
+	}
+
+	/**
+	 * Composites the texture cache, drawing it again first if needed
+	 * 
+	 * @param alpha overall opacity, applied when compositing
+	 * @param uiColor base UI background color
+	 * @param uiAlpha base UI background opacity
+	 */
+	private void renderTexture(float alpha, Color uiColor, float uiAlpha) {
+		Rasterizer raster = Util.raster();
+		int x = this.getX(), y = this.getY();
+		int w = this.getWidth(), h = this.getHeight();
+		int col = uiColor.toABGR(1.0f);
+
+		try {
+			if (this.texture == null) {
+				this.texture = new RenderTexture(w, h);
+				this.textureGeneration = -1;
+			} else if (this.texture.getWidth() != w
+					|| this.texture.getHeight() != h) {
+				this.texture.resize(w, h);
+				this.textureGeneration = -1;
+			}
+		} catch (BifstkException e) {
+			Logger.warn("Could not create render texture, disabling cache", e);
+			this.setTextureCache(false);
+			this.draw(alpha, uiColor, uiAlpha);
+			return;
+		}
+
+		if (this.textureGeneration != this.generation
+				|| this.textureGlobalGeneration != globalGeneration
+				|| this.textureUiAlpha != uiAlpha
+				|| this.textureUiColor != col) {
+			// same as for the quad cache: invalidated while drawing means
+			// the next render differs
+			int gen = this.generation;
+			this.textureGeneration = -1;
+
+			// opacity is applied when compositing, position when drawing
+			raster.beginTexture(this.texture);
+			Rasterizer.pushTranslate(-x, -y);
+			this.drawX = x;
+			this.drawY = y;
+			try {
+				this.draw(1.0f, uiColor, uiAlpha);
+			} finally {
+				this.drawX = this.drawY = 0;
+				Rasterizer.popTranslate();
+				raster.endTexture();
+			}
+
+			this.textureGeneration = gen;
+			this.textureGlobalGeneration = globalGeneration;
+			this.textureUiAlpha = uiAlpha;
+			this.textureUiColor = col;
+		}
+
+		raster.drawTexture(this.texture, x, y, alpha);
+	}
+
+	/**
+	 * Actually draws this Frame and its content
+	 * 
+	 * @param alpha overall opacity
+	 * @param uiColor base UI background color
+	 * @param uiAlpha base UI background opacity
+	 */
+	private void draw(float alpha, Color uiColor, float uiAlpha) {
 		int x, y, w, h;
 		float alpha2 = alpha * uiAlpha;
 		int borderWidth = getBorderWidth();
 		int titlebarHeight = getTitleBarHeight();
-		long t = Sys.getTime();
 
 		x = this.getX();
 		y = this.getY();
@@ -273,7 +667,6 @@ public abstract class Frame implements Drawable, Clickable {
 					int yClickDec = 0;
 					boolean hover = false;
 					float hoverAnim = 0.0f;
-					long hoverAnimLen = Config.get().getWmAnimationsLength();
 
 					switch (c) {
 					case CLOSE:
@@ -284,18 +677,13 @@ public abstract class Frame implements Drawable, Clickable {
 						} else if (this.controlCloseHover) {
 							col = Theme.get().frameControlsCloseHoverColor;
 							hover = true;
-							hoverAnim = Util.clampf(
-									(float) (t - this.controlCloseHoverTime)
-											/ (float) hoverAnimLen, 0.0f, 1.0f);
+							hoverAnim = this.closeHoverAnim.getValue();
 						} else {
 							col = Theme.get().frameControlsCloseColor
 									.blend(Theme.get().frameControlsCloseUnfocusedColor,
 											focusAnim);
 							if (!this.controlCloseDown) {
-								hoverAnim = 1.0f - Util
-										.clampf((float) (t - this.controlCloseHoverTime)
-												/ (float) hoverAnimLen, 0.0f,
-												1.0f);
+								hoverAnim = this.closeHoverAnim.getValue();
 							}
 						}
 						break;
@@ -309,19 +697,14 @@ public abstract class Frame implements Drawable, Clickable {
 							} else if (this.controlMaximizeHover) {
 								col = Theme.get().frameControlsMaximizeHoverColor;
 								hover = true;
-								hoverAnim = Util
-										.clampf((float) (t - this.controlMaximizeHoverTime)
-												/ (float) hoverAnimLen, 0.0f,
-												1.0f);
+								hoverAnim = this.maximizeHoverAnim.getValue();
 							} else {
 								col = Theme.get().frameControlsMaximizeColor
 										.blend(Theme.get().frameControlsMaximizeUnfocusedColor,
 												focusAnim);
 								if (!this.controlMaximizeDown) {
-									hoverAnim = 1.0f - Util
-											.clampf((float) (t - this.controlMaximizeHoverTime)
-													/ (float) hoverAnimLen,
-													0.0f, 1.0f);
+									hoverAnim = this.maximizeHoverAnim
+											.getValue();
 								}
 							}
 						}
@@ -372,7 +755,9 @@ public abstract class Frame implements Drawable, Clickable {
 			Rasterizer.pushScissor(w - 2 * borderWidth, h - 2 * borderWidth
 					- titlebarHeight);
 
-			this.content.render(alpha, uiColor, uiAlpha);
+			if (!Rasterizer.isClipEmpty()) {
+				this.content.render(alpha, uiColor, uiAlpha);
+			}
 
 			Rasterizer.popScissor();
 			Rasterizer.popTranslate();
@@ -460,6 +845,7 @@ public abstract class Frame implements Drawable, Clickable {
 		if (this.content != null) {
 			this.content.setWidth(w - 2 * getBorderWidth());
 		}
+		this.invalidate();
 	}
 
 	/** @param h the new height of this frame */
@@ -474,6 +860,7 @@ public abstract class Frame implements Drawable, Clickable {
 			this.content.setHeight(h - 2 * getBorderWidth()
 					- this.getTitleBarHeight());
 		}
+		this.invalidate();
 	}
 
 	/**
@@ -493,6 +880,7 @@ public abstract class Frame implements Drawable, Clickable {
 			this.content.setBounds(w - 2 * getBorderWidth(), h - 2
 					* getBorderWidth() - this.getTitleBarHeight());
 		}
+		this.invalidate();
 	}
 
 	/** @return the minimum width of this frame */
@@ -508,6 +896,7 @@ public abstract class Frame implements Drawable, Clickable {
 	/** @param title the new title of the frame as displayed in the titlebar */
 	public void setTitle(String title) {
 		this.title = title;
+		this.invalidate();
 	}
 
 	/** @return the title of the frame as displayed in the titlebar */
@@ -524,6 +913,8 @@ public abstract class Frame implements Drawable, Clickable {
 	public void setFocused(boolean focus) {
 		if (focus != this.focused) {
 			this.focusChangeTime = Sys.getTime();
+			this.focusAnim.animateTo(focus ? 1.0f : 0.0f);
+			this.invalidate();
 		}
 		this.focused = focus;
 	}
@@ -544,6 +935,7 @@ public abstract class Frame implements Drawable, Clickable {
 	public void setDragged(boolean dragged) {
 		if (dragged != this.dragged) {
 			this.dragChangeTime = Sys.getTime();
+			this.dragAnim.animateTo(dragged ? 1.0f : 0.0f);
 		}
 		this.dragged = dragged;
 	}
@@ -564,6 +956,7 @@ public abstract class Frame implements Drawable, Clickable {
 	public void setResized(boolean resized) {
 		if (resized != this.resized) {
 			this.resizeChangeTime = Sys.getTime();
+			this.resizeAnim.animateTo(resized ? 1.0f : 0.0f);
 		}
 		this.resized = resized;
 	}
@@ -586,6 +979,7 @@ public abstract class Frame implements Drawable, Clickable {
 				this.getWidth() - 2 * getBorderWidth(),
 				this.getHeight() - 2 * getBorderWidth()
 						- this.getTitleBarHeight());
+		this.invalidate();
 	}
 
 	/** @return true if this frame is maximized */
@@ -615,6 +1009,7 @@ public abstract class Frame implements Drawable, Clickable {
 					this.windowedBounds.getHeight());
 			this.setPos(this.windowedPos.getX(), this.windowedPos.getY());
 		}
+		this.invalidate();
 	}
 
 	/**
@@ -640,7 +1035,9 @@ public abstract class Frame implements Drawable, Clickable {
 			// do not do fadeout animation when moving out of dock
 			this.apparitionTime = 0;
 			this.removalTime = 0;
+			this.appearAnim.set(this.isActive() ? 1.0f : 0.0f);
 		}
+		this.invalidate();
 	}
 
 	/**
@@ -658,6 +1055,7 @@ public abstract class Frame implements Drawable, Clickable {
 	/** @param r true to make this frame resizable */
 	public void setResizable(boolean r) {
 		this.resizable = r;
+		this.invalidate();
 	}
 
 	/** @return true if this frame can be moved */
@@ -683,6 +1081,7 @@ public abstract class Frame implements Drawable, Clickable {
 					this.getHeight() - 2 * getBorderWidth()
 							- this.getTitleBarHeight());
 		}
+		this.invalidate();
 	}
 
 	/** Resize this frame to fit the preferred size of its content */
@@ -701,6 +1100,7 @@ public abstract class Frame implements Drawable, Clickable {
 
 	@Override
 	public void mouseHover(int x, int y) {
+		// Widgets invalidate their own box when their appearance changes
 		int border = getBorderWidth();
 		boolean inside = border < x && x < this.getWidth() - border
 				&& border + getTitleBarHeight() < y
@@ -761,23 +1161,31 @@ public abstract class Frame implements Drawable, Clickable {
 
 	public void setControlCloseHover(boolean h) {
 		if (h != this.controlCloseHover) {
-			this.controlCloseHoverTime = Sys.getTime();
+			this.closeHoverAnim.animateTo(h ? 1.0f : 0.0f);
+			this.invalidate();
 		}
 		this.controlCloseHover = h;
 	}
 
 	public void setControlCloseDown(boolean d) {
+		if (d != this.controlCloseDown) {
+			this.invalidate();
+		}
 		this.controlCloseDown = d;
 	}
 
 	public void setControlMaximizeHover(boolean h) {
 		if (h != this.controlMaximizeHover) {
-			this.controlMaximizeHoverTime = Sys.getTime();
+			this.maximizeHoverAnim.animateTo(h ? 1.0f : 0.0f);
+			this.invalidate();
 		}
 		this.controlMaximizeHover = h;
 	}
 
 	public void setControlMaximizeDown(boolean d) {
+		if (d != this.controlMaximizeDown) {
+			this.invalidate();
+		}
 		this.controlMaximizeDown = d;
 	}
 
@@ -1006,6 +1414,7 @@ public abstract class Frame implements Drawable, Clickable {
 		this.keyboardFocus = a;
 		if (a != null)
 			a.setFocus(true);
+		this.invalidate();
 	}
 
 	protected abstract int getTitleBarHeight();
@@ -1044,16 +1453,8 @@ public abstract class Frame implements Drawable, Clickable {
 		Color unfocusCol = getFrameUnfocusedColor();
 
 		if (Config.get().isWmAnimations()) {
-			long t = Sys.getTime();
-			float animLen = (float) Config.get().getWmAnimationsLength();
-
-			float focusAnim = Util.clampf(
-					(float) (t - this.getFocusChangeTime()) / animLen, 0.0f,
-					1.0f);
-			if (!this.isFocused()) {
-				focusAnim = 1.0f - focusAnim;
-			}
-			return focusCol.blend(unfocusCol, focusAnim);
+			float focusAnim = this.focusAnim.getValue();
+			return this.uiColor.get(focusCol, unfocusCol, focusAnim);
 		} else {
 			if (this.isFocused()) {
 				return focusCol;
@@ -1071,16 +1472,8 @@ public abstract class Frame implements Drawable, Clickable {
 		Color shadowUnfCol = getFrameShadowUnfocusedColor();
 
 		if (Config.get().isWmAnimations()) {
-			long t = Sys.getTime();
-			float animLen = (float) Config.get().getWmAnimationsLength();
-
-			float focusAnim = Util.clampf(
-					(float) (t - this.getFocusChangeTime()) / animLen, 0.0f,
-					1.0f);
-			if (!this.isFocused()) {
-				focusAnim = 1.0f - focusAnim;
-			}
-			return shadowCol.blend(shadowUnfCol, focusAnim);
+			float focusAnim = this.focusAnim.getValue();
+			return this.shadowColor.get(shadowCol, shadowUnfCol, focusAnim);
 		} else {
 			if (this.isFocused()) {
 				return shadowCol;
@@ -1100,54 +1493,18 @@ public abstract class Frame implements Drawable, Clickable {
 		float movedAlpha = getFrameMovedAlpha();
 		float resizedAlpha = getFrameResizedAlpha();
 
-		if (Config.get().isWmAnimations()) {
-
-			long t = Sys.getTime();
-			float animLen = (float) Config.get().getWmAnimationsLength();
-
-			float movedAnim = Util.clampf(
-					(float) (t - this.getDragChangeTime()) / animLen, 0.0f,
-					1.0f);
-			if (!this.isDragged()) {
-				movedAnim = 1.0f - movedAnim;
-			}
-			float resizeAnim = Util.clampf(
-					(float) (t - this.getResizeChangeTime()) / animLen, 0.0f,
-					1.0f);
-			if (!this.isResized()) {
-				resizeAnim = 1.0f - resizeAnim;
-			}
-			float appearAnim = Util.clampf((float) (t - this.apparitionTime)
-					/ animLen, 0.0f, 1.0f);
-			if (this.isDocked()) {
-				appearAnim = 1.0f;
-			}
-			float removeAnim = 1.0f - Util.clampf(
-					(float) (t - this.removalTime) / animLen, 0.0f, 1.0f);
-			if (this.isDocked()) {
-				removeAnim = 1.0f;
-			}
-			if (removeAnim == 0.0f && this.isActive()) {
-				removeAnim = 1.0f;
-			}
+		float movedAnim = this.dragAnim.getValue();
+		float resizeAnim = this.resizeAnim.getValue();
+		float appearAnim = this.appearAnim.getValue();
+		if (this.isDocked() && Config.get().isWmAnimations()) {
+			appearAnim = 1.0f;
+		}
 
-			float alpha = (movedAlpha * movedAnim + 1.0f * (1.0f - movedAnim));
-			alpha *= (resizedAlpha * resizeAnim + 1.0f * (1.0f - resizeAnim));
-			alpha *= appearAnim * removeAnim;
+		float alpha = (movedAlpha * movedAnim + 1.0f * (1.0f - movedAnim));
+		alpha *= (resizedAlpha * resizeAnim + 1.0f * (1.0f - resizeAnim));
+		alpha *= appearAnim;
 
-			return alpha;
-		} else {
-			float ra = 1.0f;
-			if (this.isResized()) {
-				ra *= resizedAlpha;
-			} else if (this.isDragged()) {
-				ra *= movedAlpha;
-			}
-			if (!this.isActive()) {
-				ra = 0.0f;
-			}
-			return ra;
-		}
+		return alpha;
 	}
 
 	/**
@@ -1162,15 +1519,7 @@ public abstract class Frame implements Drawable, Clickable {
 
 		if (Config.get().isWmAnimations()) {
 
-			long t = Sys.getTime();
-			float animLen = (float) Config.get().getWmAnimationsLength();
-
-			float focusAnim = Util.clampf(
-					(float) (t - this.getFocusChangeTime()) / animLen, 0.0f,
-					1.0f);
-			if (!this.isFocused()) {
-				focusAnim = 1.0f - focusAnim;
-			}
+			float focusAnim = this.focusAnim.getValue();
 
 			float alpha = focusAlpha * focusAnim + unfocusAlpha
 					* (1.0f - focusAnim);
@@ -1193,17 +1542,46 @@ public abstract class Frame implements Drawable, Clickable {
 	 *         in between
 	 */
 	public float getFocusAnim() {
-		long t = Sys.getTime();
-		float animLen = (float) Config.get().getWmAnimationsLength();
-		float focusAnim = Util.clampf((float) (t - this.getFocusChangeTime())
-				/ animLen, 0.0f, 1.0f);
-		if (!this.isFocused()) {
-			focusAnim = 1.0f - focusAnim;
-		}
 		if (!Config.get().isWmAnimations()) {
-			focusAnim = ((this.isFocused()) ? 1.0f : 0.0f);
+			return ((this.isFocused()) ? 1.0f : 0.0f);
 		}
-		return focusAnim;
+		return this.focusAnim.getValue();
+	}
+
+	/**
+	 * When added to or removed from the WM, if animations are enabled, the
+	 * frame progressively fades in or out
+	 * 
+	 * @return 1.0 if the frame is part of the WM, 0.0 if it is not, or a
+	 *         value in between
+	 */
+	public float getAppearAnim() {
+		return this.appearAnim.getValue();
 	}
 
+	/**
+	 * Blend of two colors, kept while they and the factor do not change: the
+	 * UI and shadow colors of each Frame are read at each frame, which must
+	 * not allocate
+	 */
+	private static class BlendedColor {
+
+		private Color from = null, to = null, result = null;
+
+		private float factor = 0.0f;
+
+		/**
+		 * @see Color#blend(Color, float)
+		 */
+		Color get(Color from, Color to, float factor) {
+			if (this.result == null || from != this.from || to != this.to
+					|| factor != this.factor) {
+				this.result = from.blend(to, factor);
+				this.from = from;
+				this.to = to;
+				this.factor = factor;
+			}
+			return this.result;
+		}
+	}
 }
@@ -13,8 +13,13 @@ import bifstk.config.Cursors;
 import bifstk.config.Cursors.Type;
 import bifstk.config.Theme;
 import bifstk.gl.Util;
+import bifstk.util.FrameStats;
+import bifstk.util.FrameStats.Phase;
+import bifstk.util.InputEvent;
+import bifstk.util.Tracer;
 import bifstk.wm.State.DockPosition;
 import bifstk.wm.geom.Region;
+import bifstk.wm.util.PerfHud;
 
 /**
  * Internal logic of the WM
@@ -34,6 +39,9 @@ public class Logic {
 	/** true when an event signified the app should exit */
 	private boolean exitRequested = false;
 
+	/** performance overlay once shown, or null */
+	private PerfHud hud = null;
+
 	/** Internal state of a single mouse button */
 	private class MouseButton {
 		/** true when the left mouse button is down */
@@ -163,20 +171,59 @@ public class Logic {
 	 * Updates the logic's state: polls input, modifies WM state
 	 */
 	public void update() {
-		updateMouse();
+		InputEvent event = new InputEvent();
+		event.begin();
+		long trace = Tracer.begin();
+
+		long t = FrameStats.start();
+		int mouseEvents = updateMouse();
 		applyHoveringCursor();
 		applyMouse();
+		FrameStats.end(Phase.MOUSE, t);
+
+		t = FrameStats.start();
+		int keyEvents = updateKeyboard();
+		FrameStats.end(Phase.KEYBOARD, t);
+
+		Tracer.end("Logic.input", trace);
+		event.end();
+		if (event.shouldCommit()) {
+			event.mouseEvents = mouseEvents;
+			event.keyEvents = keyEvents;
+			event.commit();
+		}
 
-		updateKeyboard();
+		updateHud();
 
+		t = FrameStats.start();
 		this.state.update();
+		FrameStats.end(Phase.STATE, t);
 	}
 
 	/**
 	 * Polls keyboard events
+	 * 
+	 * @return number of events polled
 	 */
-	private void updateKeyboard() {
+	private int updateKeyboard() {
+		int n = 0;
 		while (Keyboard.next()) {
+			n++;
+			// WM shortcuts, not forwarded
+			if (Keyboard.getEventKey() == Keyboard.KEY_F12) {
+				if (Keyboard.getEventKeyState()) {
+					Config.get().setWmHud(!Config.get().isWmHud());
+				}
+				continue;
+			}
+			if (Keyboard.getEventKey() == Keyboard.KEY_F11
+					&& Tracer.isEnabled()) {
+				if (Keyboard.getEventKeyState()) {
+					Tracer.dump();
+				}
+				continue;
+			}
+
 			Frame f = this.state.getFocused();
 			boolean reserved = false;
 
@@ -195,17 +242,63 @@ public class Logic {
 			}
 			// event was not consumed, forward it to the user
 			else if (this.handler != null) {
-				this.handler.keyEvent(Keyboard.getEventKey(),
+				this.fireKeyEvent(Keyboard.getEventKey(),
 						Keyboard.getEventKeyState(),
 						Keyboard.getEventCharacter());
 			}
 		}
+		return n;
+	}
+
+	/**
+	 * Forwards a keyboard event to the client handler
+	 * 
+	 * @see Handler#keyEvent(int, boolean, char)
+	 */
+	private void fireKeyEvent(int key, boolean state, char character) {
+		long t = Tracer.begin();
+		this.handler.keyEvent(key, state, character);
+		Tracer.end("Handler.keyEvent", t);
+	}
+
+	/**
+	 * Forwards a mouse event to the client handler
+	 * 
+	 * @see Handler#mouseEvent(int, int, int, boolean)
+	 */
+	private void fireMouseEvent(int button, int x, int y, boolean state) {
+		long t = Tracer.begin();
+		this.handler.mouseEvent(button, x, y, state);
+		Tracer.end("Handler.mouseEvent", t);
+	}
+
+	/**
+	 * Shows or hides the performance overlay according to
+	 * {@link Config#isWmHud()}
+	 */
+	private void updateHud() {
+		if (Config.get().isWmHud()) {
+			this.hud = PerfHud.getInstance();
+			// wait for the fade out to end before adding it again
+			if (!this.state.getAreas().contains(this.hud)) {
+				int x = Display.getDisplayMode().getWidth()
+						- this.hud.getWidth() - 5;
+				this.hud.setPos(x, 5);
+				this.state.addArea(this.hud);
+			}
+		} else if (this.hud != null && this.hud.isActive()) {
+			this.state.removeArea(this.hud);
+		}
 	}
 
 	/**
 	 * Polls mouse events
+	 * 
+	 * @return number of events polled
 	 */
-	private void updateMouse() {
+	private int updateMouse() {
+		int n = 0;
+
 		// reset temporary values
 		this.leftMouse.clicked = false;
 		this.leftMouse.downLastPoll = this.leftMouse.down;
@@ -306,6 +399,7 @@ public class Logic {
 
 		// for each mouse event since last call
 		while (Mouse.next()) {
+			n++;
 			int button = Mouse.getEventButton();
 
 			switch (button) {
@@ -378,6 +472,8 @@ public class Logic {
 		} else {
 			leftMouse.draggedLastPoll = false;
 		}
+
+		return n;
 	}
 
 	/**
@@ -463,7 +559,7 @@ public class Logic {
 
 				// propagate click to user handler
 				if (this.handler != null) {
-					this.handler.mouseEvent(0, this.leftMouse.hoverX,
+					this.fireMouseEvent(0, this.leftMouse.hoverX,
 							this.leftMouse.hoverY, true);
 				}
 			}
@@ -494,7 +590,7 @@ public class Logic {
 			}
 			// propagate click to user handler
 			else if (this.handler != null) {
-				this.handler.mouseEvent(0, this.leftMouse.hoverX,
+				this.fireMouseEvent(0, this.leftMouse.hoverX,
 						this.leftMouse.hoverY, false);
 			}
 
@@ -550,7 +646,7 @@ public class Logic {
 			}
 			// propagate click to user handler
 			else if (this.handler != null) {
-				this.handler.mouseEvent(1, this.leftMouse.hoverX,
+				this.fireMouseEvent(1, this.leftMouse.hoverX,
 						this.leftMouse.hoverY, true);
 			}
 
@@ -568,7 +664,7 @@ public class Logic {
 			}
 			// propagate click to user handler
 			else if (this.handler != null) {
-				this.handler.mouseEvent(1, this.leftMouse.hoverX,
+				this.fireMouseEvent(1, this.leftMouse.hoverX,
 						this.leftMouse.hoverY, false);
 			}
 		}
@@ -580,7 +676,7 @@ public class Logic {
 			}
 			// propagate click to user handler
 			else if (this.handler != null) {
-				this.handler.mouseEvent(2, this.leftMouse.hoverX,
+				this.fireMouseEvent(2, this.leftMouse.hoverX,
 						this.leftMouse.hoverY, true);
 			}
 		}
@@ -597,7 +693,7 @@ public class Logic {
 			}
 			// propagate click to user handler
 			else if (this.handler != null) {
-				this.handler.mouseEvent(2, this.leftMouse.hoverX,
+				this.fireMouseEvent(2, this.leftMouse.hoverX,
 						this.leftMouse.hoverY, false);
 			}
 		}
@@ -1,22 +1,38 @@
 package bifstk.wm;
 
+import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.Sys;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.PixelFormat;
 
 import bifstk.Root;
 import bifstk.config.Config;
+import bifstk.config.TextureLoader;
 import bifstk.config.Theme;
 import bifstk.gl.Color;
+import bifstk.gl.DisplayBuffer;
+import bifstk.gl.QuadCache;
 import bifstk.gl.Rasterizer;
+import bifstk.gl.SceneRasterizer;
+import bifstk.gl.SoftwareRasterizer;
+import bifstk.gl.TrueTypeFont;
 import bifstk.gl.Util;
 import bifstk.util.BifstkException;
+import bifstk.util.FrameStats;
+import bifstk.util.FrameStats.Phase;
 import bifstk.util.Logger;
+import bifstk.util.Tracer;
 import bifstk.wm.State.DockPosition;
 
 /**
@@ -33,6 +49,43 @@ public class Renderer {
 	/** Client-side root renderer */
 	private Root root = null;
 
+	/** pixels of the software rasterizer, uploaded each frame */
+	private IntBuffer pixelBuffer = null;
+
+	/** display size of the last frame */
+	private int lastWidth = -1, lastHeight = -1;
+	/** damage drawn by the last frame, still missing from the back buffer */
+	private Boxes last = new Boxes();
+	/** appearance of the docks during the last frame */
+	private long leftDockKey = 0, rightDockKey = 0;
+	/** alternates the color of the damage overlay */
+	private boolean flash = false;
+	/** pixels drawn around Frames by their shadow */
+	private int margin = 0;
+	/** opacity of the modal mask during the last frame */
+	private float modalAlpha = 0.0f;
+	/** time of the earliest pending invalidation of a Frame, 0 if none */
+	private long nextUpdate = 0;
+	/** region of the display drawn by the current frame */
+	private Boxes region = new Boxes();
+	/** damage of the scene drawn by the current frame */
+	private Boxes damage = new Boxes();
+	/** offscreen copy of the display drawn into by hardware rasterizers */
+	private DisplayBuffer target = null;
+	/** true if the target could not be created: not tried again */
+	private boolean targetFailed = false;
+	/** true if the content of the target was lost and must be drawn */
+	private boolean targetFresh = false;
+	/** scene drawn by the last frame, when the WM runs in a logic thread */
+	private Scene scene = null;
+
+	/** builds the geometry of Windows in parallel, or null */
+	private ForkJoinPool pool = null;
+	/** geometry built by the pool for each Window being drawn */
+	private List<QuadCache> geometry = new ArrayList<QuadCache>();
+	/** Windows of the stack in drawing order */
+	private List<Window> order = new ArrayList<Window>();
+
 	/**
 	 * Default constructor Creates the opengl display
 	 * 
@@ -54,6 +107,7 @@ public class Renderer {
 
 		this.state = state;
 		this.root = root;
+		this.last.addFull();
 
 		int width = Config.get().getDisplayWidth();
 		int height = Config.get().getDisplayHeight();
@@ -93,6 +147,14 @@ public class Renderer {
 		}
 
 		Logger.info("Created display: " + Display.getDisplayMode().toString());
+
+		int threads = Config.get().getWmThreads();
+		if (threads == 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		if (threads > 1) {
+			this.pool = new ForkJoinPool(threads);
+		}
 	}
 
 	/**
@@ -100,35 +162,545 @@ public class Renderer {
 	 * <p>
 	 * Does not perform any form of Display synchronization; this should be done
 	 * by the caller
+	 * 
+	 * @return true if something was drawn, false if the display did not
+	 *         change since the last frame and buffers need not be swapped
 	 */
-	public void render() {
+	public boolean render() {
 		DisplayMode mode = Display.getDisplayMode();
 		int width = mode.getWidth();
 		int height = mode.getHeight();
+		Rasterizer raster = Rasterizer.getInstance();
+		TrueTypeFont.setDrawnFrame(TrueTypeFont.getFrame());
+
+		/* find out what changed since the last frame */
+		this.damage(width, height);
+
+		boolean kept = this.prepareTarget(raster, width, height);
+		boolean full = this.region(width, height, kept, Damage.getBoxes());
+		Damage.clear();
+		// GL calls of the Root are only cut to the last region set
+		if (this.root != null) {
+			this.region.bound();
+		}
+
+		if (this.region.isEmpty()) {
+			/* nothing changed: the display is up to date */
+			raster.flush();
+			this.updateNextTime();
+			return false;
+		}
+		if (kept && raster.isHardware()) {
+			this.target.bind();
+		}
+		if (!full) {
+			this.setClip(raster);
+		}
 
 		/* clear display */
 		this.clear(width, height);
 
 		/* first layer: user content */
-		if (this.root != null) {
-			this.root.render();
-		}
+		this.renderRoot();
 
 		/* init rendering context */
 		this.initRender(width, height);
 
+		this.renderLayers(width, height);
+
+		if (Config.get().isWmDebugDamage()) {
+			this.renderDamage(this.region, width, height);
+		}
+
+		/* send data to OpenGL */
+		long t = FrameStats.start();
+		raster.flush();
+		if (!full) {
+			raster.clearClip();
+		}
+		this.present(raster, kept);
+		FrameStats.end(Phase.FLUSH, t);
+
+		this.updateNextTime();
+		return true;
+	}
+
+	/**
+	 * Renders the layers of the WM over the Root
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	private void renderLayers(int width, int height) {
 		/* second layer: areas */
+		long t = FrameStats.start();
 		this.renderAreas(width, height);
+		FrameStats.end(Phase.AREAS, t);
 
 		/* third layer: docks */
+		t = FrameStats.start();
 		this.renderLeftDock(width, height);
 		this.renderRightDock(width, height);
+		FrameStats.end(Phase.DOCKS, t);
 
 		/* top layer: windows */
+		t = FrameStats.start();
 		this.renderWindows(width, height);
+		FrameStats.end(Phase.WINDOWS, t);
 
-		/* send data to OpenGL */
-		Rasterizer.getInstance().flush();
+		// cached quads may sample the glyphs evicted during this frame
+		if (TrueTypeFont.endFrame()) {
+			Frame.invalidateAll();
+		}
+	}
+
+	/**
+	 * Builds a snapshot of the WM, when
+	 * {@link Config#isDisplayThreaded()}
+	 * <p>
+	 * Called by the logic thread instead of {@link #render()}: every layer
+	 * is drawn in a {@link SceneRasterizer}, including the {@link Root}, so
+	 * that the scene can be drawn by another thread with
+	 * {@link #draw(Scene)}. Does not touch the GL context
+	 * 
+	 * @param scene the scene to fill
+	 * @return true if the scene was built, false if the display did not
+	 *         change since the last scene
+	 */
+	public boolean capture(Scene scene) {
+		DisplayMode mode = Display.getDisplayMode();
+		int width = mode.getWidth();
+		int height = mode.getHeight();
+
+		this.damage(width, height);
+		if (Damage.isEmpty()) {
+			this.updateNextTime();
+			return false;
+		}
+		scene.begin(width, height, Damage.getBoxes(), TrueTypeFont.getFrame());
+		Damage.clear();
+
+		SceneRasterizer raster = (SceneRasterizer) Rasterizer.getInstance();
+		raster.begin(scene.getQuads());
+		try {
+			// not culled: the drawing thread may draw a larger region
+			this.clear(width, height);
+			this.renderRoot();
+			this.renderLayers(width, height);
+
+			if (Config.get().isWmDebugDamage()) {
+				this.renderDamage(scene.getDamage(), width, height);
+			}
+		} finally {
+			raster.end();
+		}
+
+		this.updateNextTime();
+		return true;
+	}
+
+	/**
+	 * Draws a scene built by {@link #capture(Scene)}
+	 * <p>
+	 * Only the damage of the scene is drawn, along with the region drawn by
+	 * the last frame still missing from the back buffer when it is drawn
+	 * directly, see {@link #region}. Does not perform any
+	 * form of Display synchronization; this should be done by the caller
+	 * 
+	 * @param scene the latest scene, or null if none was published since the
+	 *            last call
+	 * @return true if something was drawn, false if the display did not
+	 *         change since the last frame and buffers need not be swapped
+	 */
+	public boolean draw(Scene scene) {
+		DisplayMode mode = Display.getDisplayMode();
+		int width = mode.getWidth();
+		int height = mode.getHeight();
+		Rasterizer raster = Rasterizer.getInstance();
+
+		Boxes damage = this.damage;
+		damage.clear();
+		if (scene != null) {
+			this.scene = scene;
+			// older scenes are never drawn again
+			TrueTypeFont.setDrawnFrame(scene.getFrame());
+			damage.add(scene.getDamage());
+		}
+		if (this.scene == null) {
+			return false;
+		}
+		// exposed or resized since the scene was built
+		if (Display.isDirty() || width != this.scene.getDisplayWidth()
+				|| height != this.scene.getDisplayHeight()) {
+			damage.addFull();
+		}
+
+		boolean kept = this.prepareTarget(raster, width, height);
+		boolean full = this.region(width, height, kept, damage);
+		if (this.region.isEmpty()) {
+			return false;
+		}
+		if (kept && raster.isHardware()) {
+			this.target.bind();
+		}
+		if (!full) {
+			this.setClip(raster);
+		}
+
+		long t = FrameStats.start();
+		this.initRender(width, height);
+		raster.replay(this.scene.getQuads());
+		raster.flush();
+		if (!full) {
+			raster.clearClip();
+		}
+		this.present(raster, kept);
+		FrameStats.end(Phase.FLUSH, t);
+		return true;
+	}
+
+	/**
+	 * @return true if the region drawn by the last frame is still missing
+	 *         from the back buffer: the next frame draws it even if nothing
+	 *         changed
+	 */
+	public boolean isPending() {
+		return !this.last.isEmpty();
+	}
+
+	/**
+	 * Finds the region of the display to draw, stored in {@link #region}
+	 * <p>
+	 * When the frame is drawn in a buffer that keeps the last one, the
+	 * software framebuffer or {@link #target}, only the damage is drawn.
+	 * When {@link Config#isWmDamagePreserved()}, the back buffer holds the
+	 * frame before the last one: what was drawn in the last frame is missing
+	 * there too. Otherwise its content is undefined and the whole display is
+	 * drawn whenever something changed
+	 * 
+	 * @param width display width
+	 * @param height display height
+	 * @param kept true if the frame is drawn in a buffer keeping the last one
+	 * @param damage what changed since the last frame
+	 * @return true if the whole display must be drawn
+	 */
+	private boolean region(int width, int height, boolean kept, Boxes damage) {
+		Boxes region = this.region;
+		region.clear();
+		if (!kept && !Config.get().isWmDamagePreserved()) {
+			this.last.clear();
+			if (!damage.isEmpty()) {
+				region.addFull();
+			}
+			return region.isFull();
+		}
+
+		if (this.targetFresh) {
+			this.targetFresh = false;
+			damage.addFull();
+		}
+		// the damage overlay is drawn in the kept buffer: erased by the next
+		// frame, as with a preserved back buffer
+		boolean carry = !kept || Config.get().isWmDebugDamage();
+		if (!carry) {
+			this.last.clear();
+		}
+
+		region.add(damage);
+		region.add(this.last);
+		region.clip(width, height);
+		if (region.getArea() * 100 > (long) Config.get()
+				.getWmDamageThreshold() * width * height) {
+			region.addFull();
+		}
+
+		if (carry) {
+			this.last.clear();
+			this.last.add(damage);
+		}
+		return region.isFull();
+	}
+
+	/**
+	 * Restricts drawing to the boxes of {@link #region}
+	 * 
+	 * @param raster the rasterizer drawing the frame
+	 */
+	private void setClip(Rasterizer raster) {
+		Boxes region = this.region;
+		raster.setClip(region.getX(0), region.getY(0), region.getWidth(0),
+				region.getHeight(0));
+		for (int i = 1; i < region.getCount(); i++) {
+			raster.addClip(region.getX(i), region.getY(i),
+					region.getWidth(i), region.getHeight(i));
+		}
+	}
+
+	/**
+	 * Chooses the buffer the frame is drawn in, creating or resizing
+	 * {@link #target} when needed
+	 * 
+	 * @param raster the rasterizer drawing the frame
+	 * @param width display width
+	 * @param height display height
+	 * @return true if the frame is drawn in a buffer that keeps the last one:
+	 *         the software framebuffer, or the target, false if drawn
+	 *         directly in the back buffer
+	 */
+	private boolean prepareTarget(Rasterizer raster, int width, int height) {
+		if (Config.get().isWmDamagePreserved()) {
+			return false;
+		}
+		if (!raster.isHardware()) {
+			return true;
+		}
+		if (this.targetFailed || !DisplayBuffer.isSupported()) {
+			return false;
+		}
+		try {
+			if (this.target == null) {
+				this.target = new DisplayBuffer(width, height);
+				this.targetFresh = true;
+			} else if (this.target.resize(width, height)) {
+				this.targetFresh = true;
+			}
+		} catch (BifstkException e) {
+			Logger.warn("Could not create the offscreen display buffer, "
+					+ "drawing the whole display at each frame", e);
+			if (this.target != null) {
+				this.target.destroy();
+				this.target = null;
+			}
+			this.targetFailed = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sends the frame to the back buffer, when it was not drawn there
+	 * 
+	 * @param raster the rasterizer that drew the frame
+	 * @param kept true if drawn in a buffer keeping the last frame: all of
+	 *            it is sent, otherwise the boxes of {@link #region}
+	 */
+	private void present(Rasterizer raster, boolean kept) {
+		if (raster.isHardware()) {
+			if (kept) {
+				this.target.unbind();
+				this.target.blit();
+			}
+			return;
+		}
+		SoftwareRasterizer soft = (SoftwareRasterizer) raster;
+		Boxes region = this.region;
+		if (kept || region.isFull()) {
+			this.present(soft, 0, 0, soft.getWidth(), soft.getHeight());
+		} else {
+			for (int i = 0; i < region.getCount(); i++) {
+				int x = region.getX(i), y = region.getY(i);
+				this.present(soft, x, y, x + region.getWidth(i), y
+						+ region.getHeight(i));
+			}
+		}
+	}
+
+	/**
+	 * Draws the user content
+	 */
+	private void renderRoot() {
+		long t = FrameStats.start();
+		long trace = Tracer.begin();
+		if (this.root != null) {
+			this.root.render();
+		}
+		Tracer.end("Root.render", trace);
+		FrameStats.end(Phase.ROOT, t);
+	}
+
+	/**
+	 * Shows the boxes being drawn, when {@link Config#isWmDebugDamage()}
+	 */
+	private void renderDamage(Boxes boxes, int width, int height) {
+		this.flash = !this.flash;
+		Color col = this.flash ? Color.RED : Color.BLUE;
+		if (boxes.isFull()) {
+			Util.raster().fillQuad(0, 0, width, height, col, 0.2f);
+			Util.raster().drawQuad(0, 0, width, height, col, 1.0f);
+			return;
+		}
+		for (int i = 0; i < boxes.getCount(); i++) {
+			int x = boxes.getX(i), y = boxes.getY(i);
+			int w = boxes.getWidth(i), h = boxes.getHeight(i);
+			Util.raster().fillQuad(x, y, w, h, col, 0.2f);
+			Util.raster().drawQuad(x, y, w, h, col, 1.0f);
+		}
+	}
+
+	/**
+	 * In idle mode, nothing is drawn until this time unless there is input
+	 * 
+	 * @return value of {@link Sys#getTime()} at which a Frame will change on
+	 *         its own, ie. a blinking caret; 0 if none will
+	 */
+	public long getNextUpdate() {
+		return this.nextUpdate;
+	}
+
+	/**
+	 * Finds the earliest pending invalidation, once Frames registered the
+	 * ones of this frame while drawing
+	 */
+	private void updateNextTime() {
+		long next = 0;
+		for (Frame f : this.state.getAreas()) {
+			next = earliest(next, f.getPendingTime());
+		}
+		for (Frame f : this.state.getLeftDock()) {
+			next = earliest(next, f.getPendingTime());
+		}
+		for (Frame f : this.state.getRightDock()) {
+			next = earliest(next, f.getPendingTime());
+		}
+		for (Frame f : this.state.getWindows()) {
+			next = earliest(next, f.getPendingTime());
+		}
+		this.nextUpdate = next;
+	}
+
+	/**
+	 * @return the earliest of two times, 0 meaning none
+	 */
+	private static long earliest(long a, long b) {
+		if (a == 0)
+			return b;
+		if (b == 0)
+			return a;
+		return Math.min(a, b);
+	}
+
+	/**
+	 * Collects the {@link Damage} of this frame
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	private void damage(int width, int height) {
+		// client content, exposed or resized display: no way to tell what
+		// changed. The Root may draw anywhere and is drawn each frame unless
+		// idle: it then damages the whole display every frame. In idle mode,
+		// the client invalidates its own content
+		if ((this.root != null && !Config.get().isDisplayIdle())
+				|| Display.isDirty() || width != this.lastWidth
+				|| height != this.lastHeight) {
+			Damage.addFull();
+		}
+		this.lastWidth = width;
+		this.lastHeight = height;
+
+		int margin = 0;
+		if (Theme.get().windowShadowEnabled) {
+			margin = Math.max(TextureLoader.getShadowTopLeft().getWidth(),
+					TextureLoader.getShadowLeft().getWidth());
+		}
+		this.margin = margin;
+
+		for (Area area : this.state.getAreas()) {
+			area.damage(area.getModAlpha(), area.getUiColor(),
+					area.getUiAlpha(), margin);
+		}
+
+		long left = this.dockKey(this.state.getLeftDock(), DockPosition.LEFT);
+		long right = this.dockKey(this.state.getRightDock(),
+				DockPosition.RIGHT);
+		if (left != this.leftDockKey || right != this.rightDockKey) {
+			Damage.addFull();
+			this.leftDockKey = left;
+			this.rightDockKey = right;
+		}
+		for (Window win : this.state.getLeftDock()) {
+			win.damage(1.0f, win.getUiColor(), win.getUiAlpha(), margin);
+		}
+		for (Window win : this.state.getRightDock()) {
+			win.damage(1.0f, win.getUiColor(), win.getUiAlpha(), margin);
+		}
+
+		for (Window win : this.state.getWindows()) {
+			win.damage(win.getModAlpha(), win.getUiColor(), win.getUiAlpha(),
+					margin);
+		}
+
+		// the modal mask fades over the whole display
+		float modalAlpha = this.getModalAlpha();
+		if (modalAlpha != this.modalAlpha) {
+			Damage.addFull();
+			this.modalAlpha = modalAlpha;
+		}
+
+		// everything that changed is drawn again
+		if (!Config.get().isWmDamage() && !Damage.isEmpty()) {
+			Damage.addFull();
+		}
+	}
+
+	/**
+	 * The borders and shadow of a dock span the whole display height and
+	 * take the colors of its first Window
+	 * 
+	 * @param dock the Windows of a dock
+	 * @param pos left or right dock
+	 * @return a value that changes when the decorations of the dock change
+	 */
+	private long dockKey(List<Window> dock, DockPosition pos) {
+		if (dock.size() == 0) {
+			return 0;
+		}
+		Window first = dock.get(0);
+		long key = first.getUiColor().toABGR(first.getUiAlpha());
+		key = key * 31 + first.getShadowColor().toABGR(1.0f);
+		key = key * 31 + this.state.getDockWidth(pos);
+		return key * 31 + dock.size();
+	}
+
+	/**
+	 * Copies a region of the framebuffer of a software rasterizer to the
+	 * display
+	 * 
+	 * @param raster the software rasterizer that rendered the frame
+	 * @param x0 left of the region
+	 * @param y0 top of the region
+	 * @param x1 right of the region, exclusive
+	 * @param y1 bottom of the region, exclusive
+	 */
+	private void present(SoftwareRasterizer raster, int x0, int y0, int x1,
+			int y1) {
+		int w = raster.getWidth();
+		int h = raster.getHeight();
+		x1 = Math.min(x1, w);
+		y1 = Math.min(y1, h);
+		if (x1 <= x0 || y1 <= y0) {
+			return;
+		}
+		if (this.pixelBuffer == null || this.pixelBuffer.capacity() != w * h) {
+			this.pixelBuffer = BufferUtils.createIntBuffer(w * h);
+		}
+		// whole rows of the region, columns are skipped by GL
+		this.pixelBuffer.clear();
+		this.pixelBuffer.put(raster.getPixels(), y0 * w, (y1 - y0) * w);
+		this.pixelBuffer.flip();
+
+		// framebuffer is top-down, GL is bottom-up
+		GL11.glDisable(GL11.GL_BLEND);
+		GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, w);
+		GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, x0);
+		GL11.glRasterPos2i(x0, y0);
+		GL11.glPixelZoom(1.0f, -1.0f);
+		GL11.glDrawPixels(x1 - x0, y1 - y0, GL12.GL_BGRA,
+				GL12.GL_UNSIGNED_INT_8_8_8_8_REV, this.pixelBuffer);
+		GL11.glPixelZoom(1.0f, 1.0f);
+		GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, 0);
+		GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, 0);
+		GL11.glEnable(GL11.GL_BLEND);
 	}
 
 	/**
@@ -139,6 +711,8 @@ public class Renderer {
 	 */
 	private void renderAreas(int width, int height) {
 		for (Area area : this.state.getAreas()) {
+			if (!this.isDrawn(area))
+				continue;
 			area.render(area.getModAlpha(), area.getUiColor(),
 					area.getUiAlpha());
 		}
@@ -161,8 +735,12 @@ public class Renderer {
 		int acc = 0;
 		float baseAlpha = this.state.getLeftDock().get(0).getUiAlpha();
 		/* draw the windows */
-		for (Window win : this.state.getLeftDock()) {
-			win.render(1.0f, win.getUiColor(), win.getUiAlpha());
+		List<Window> dock = this.state.getLeftDock();
+		WindowTask[] tasks = this.fork(dock, false);
+		for (int i = 0; i < tasks.length; i++) {
+			Window win = dock.get(i);
+			if (this.isDrawn(win))
+				this.renderWindow(win, tasks[i], false);
 
 			acc += win.getHeight();
 			// bot border
@@ -203,8 +781,12 @@ public class Renderer {
 		Color c = this.state.getRightDock().get(0).getUiColor();
 		int acc = 0;
 		/* draw the windows */
-		for (Window win : this.state.getRightDock()) {
-			win.render(1.0f, win.getUiColor(), win.getUiAlpha());
+		List<Window> dock = this.state.getRightDock();
+		WindowTask[] tasks = this.fork(dock, false);
+		for (int i = 0; i < tasks.length; i++) {
+			Window win = dock.get(i);
+			if (this.isDrawn(win))
+				this.renderWindow(win, tasks[i], false);
 
 			acc += win.getHeight();
 			// bot border
@@ -233,49 +815,178 @@ public class Renderer {
 	 * @param height
 	 */
 	private void renderWindows(int width, int height) {
-		Window f = null;
 		// reverse iteration : frames are stacked with the head of the list
 		// being the focused one
+		this.order.clear();
 		Iterator<Window> it = this.state.getWindows().descendingIterator();
 		while (it.hasNext()) {
-			f = it.next();
+			this.order.add(it.next());
+		}
+
+		WindowTask[] tasks = this.fork(this.order, true);
+		for (int i = 0; i < tasks.length; i++) {
+			Window f = this.order.get(i);
 
 			// display a mask when a modal is shown
 			if (this.state.getModalWindow() == f) {
-				float modalAlpha = Theme.get().rootBackgroundModalAlpha;
-
-				if (Config.get().isWmAnimations()) {
-					long t = Sys.getTime();
-					long app = this.state.getModalWindow().getApparitionTime();
-					long rem = this.state.getModalWindow().getRemovalTime();
-					float animLen = (float) Config.get()
-							.getWmAnimationsLength();
-
-					float aApp = Util.clampf((float) (t - app) / animLen, 0.0f,
-							1.0f);
-					float aRem = 1.0f - Util.clampf(
-							(float) (t - rem) / animLen, 0.0f, 1.0f);
-					if (aRem == 0.0f && state.getModalWindow().isActive()) {
-						aRem = 1.0f;
-					}
-					modalAlpha *= aApp * aRem;
-				}
-
 				Util.raster().fillQuad(0, 0, width, height,
-						Theme.get().rootBackgroundModalColor, modalAlpha);
+						Theme.get().rootBackgroundModalColor,
+						this.getModalAlpha());
 			}
-			float modAlpha = f.getModAlpha();
+			if (!this.isDrawn(f))
+				continue;
+
+			// render the Window
+			this.renderWindow(f, tasks[i], true);
+		}
+	}
 
-			if (Theme.get().windowShadowEnabled && !f.isMaximized()) {
-				Util.drawShadowQuad(f.getX(), f.getY(), f.getWidth(),
-						f.getHeight(),
-						Theme.get().windowShadowAlpha * modAlpha,
-						f.getShadowColor(), false);
+	/**
+	 * Starts building the geometry of Windows in the pool, when
+	 * {@link Config#getWmThreads()} allows it
+	 * <p>
+	 * Each Window is drawn in a {@link SceneRasterizer} of its own; the
+	 * quads are then replayed in drawing order by
+	 * {@link #renderWindow(Window, WindowTask, boolean)}, which must be
+	 * called for each Window
+	 * 
+	 * @param wins Windows in drawing order
+	 * @param floating true for the Windows of the stack, false for docked
+	 *            ones
+	 * @return the task building each Window, null for the ones drawn in the
+	 *         current thread
+	 */
+	private WindowTask[] fork(List<Window> wins, boolean floating) {
+		WindowTask[] tasks = new WindowTask[wins.size()];
+		if (this.pool == null || tasks.length < 2) {
+			return tasks;
+		}
+		boolean hardware = Util.raster().isHardware();
+		for (int i = 0; i < tasks.length; i++) {
+			Window win = wins.get(i);
+			// texture caches are drawn in the GL context
+			if (!this.isDrawn(win)
+					|| (hardware && win.isTextureCache() && Config.get()
+							.isWmTextureCache())) {
+				continue;
+			}
+			if (this.geometry.size() <= i) {
+				this.geometry.add(new QuadCache());
 			}
+			tasks[i] = new WindowTask(win, this.geometry.get(i), floating);
+			this.pool.execute(tasks[i]);
+		}
+		return tasks;
+	}
 
-			// render the Window
-			f.render(modAlpha, f.getUiColor(), f.getUiAlpha());
+	/**
+	 * Draws a Window, or the geometry built for it by the pool
+	 * 
+	 * @param win the Window to draw
+	 * @param task the task building it, or null to draw it now
+	 * @param floating true for a Window of the stack, false for a docked
+	 *            one
+	 */
+	private void renderWindow(Window win, WindowTask task, boolean floating) {
+		if (task != null) {
+			task.join();
+			Util.raster().replay(task.quads);
+		} else {
+			drawWindow(win, floating);
+		}
+	}
+
+	/**
+	 * Draws a Window with the rasterizer of the current thread
+	 * 
+	 * @param win the Window to draw
+	 * @param floating true for a Window of the stack, drawn with its shadow
+	 *            and opacity, false for a docked one
+	 */
+	private static void drawWindow(Window win, boolean floating) {
+		if (!floating) {
+			win.render(1.0f, win.getUiColor(), win.getUiAlpha());
+			return;
+		}
+		float modAlpha = win.getModAlpha();
+
+		if (Theme.get().windowShadowEnabled && !win.isMaximized()) {
+			Util.drawShadowQuad(win.getX(), win.getY(), win.getWidth(),
+					win.getHeight(), Theme.get().windowShadowAlpha * modAlpha,
+					win.getShadowColor(), false);
+		}
+
+		win.render(modAlpha, win.getUiColor(), win.getUiAlpha());
+	}
+
+	/**
+	 * Builds the geometry of a Window in a thread of the pool
+	 * <p>
+	 * Windows only touch their own state while drawing, they can be built
+	 * concurrently
+	 */
+	private static class WindowTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private Window win = null;
+		/** quads of the Window, in screen coordinates */
+		private QuadCache quads = null;
+		private boolean floating = false;
+
+		WindowTask(Window win, QuadCache quads, boolean floating) {
+			this.win = win;
+			this.quads = quads;
+			this.floating = floating;
 		}
+
+		@Override
+		protected void compute() {
+			SceneRasterizer raster = Rasterizer.getSceneRasterizer();
+			if (raster == null) {
+				raster = new SceneRasterizer();
+				Rasterizer.setSceneRasterizer(raster);
+			}
+			raster.begin(this.quads);
+			try {
+				drawWindow(this.win, this.floating);
+			} finally {
+				raster.end();
+			}
+		}
+	}
+
+	/**
+	 * @return opacity of the mask drawn under the modal Window, 0 if there is
+	 *         none
+	 */
+	private float getModalAlpha() {
+		Window modal = this.state.getModalWindow();
+		if (modal == null) {
+			return 0.0f;
+		}
+		float alpha = Theme.get().rootBackgroundModalAlpha;
+		if (Config.get().isWmAnimations()) {
+			alpha *= modal.getAppearAnim();
+		}
+		return alpha;
+	}
+
+	/**
+	 * @param f a Frame of the WM
+	 * @return false if the Frame and its shadow are entirely out of the
+	 *         region of the display being drawn
+	 */
+	private boolean isDrawn(Frame f) {
+		Rasterizer r = Util.raster();
+		if (!r.isClip())
+			return true;
+
+		int m = this.margin;
+		return f.getX() - m < r.getClipX() + r.getClipWidth()
+				&& f.getY() - m < r.getClipY() + r.getClipHeight()
+				&& f.getX() + f.getWidth() + m > r.getClipX()
+				&& f.getY() + f.getHeight() + m > r.getClipY();
 	}
 
 	/**
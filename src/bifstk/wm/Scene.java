@@ -0,0 +1,96 @@
+package bifstk.wm;
+
+import bifstk.gl.QuadCache;
+
+/**
+ * Snapshot of the display built by the logic thread
+ * <p>
+ * Holds all the quads of a frame, already translated, clipped and blended
+ * with the alpha of each Frame, along with the damage since the previous
+ * scene. Once published in a {@link SceneBuffer}, it is only read by the
+ * drawing thread, which replays it without touching the WM state
+ *
+ */
+public class Scene {
+
+	/** every quad of the frame, in drawing order */
+	private QuadCache quads = new QuadCache();
+
+	/** display size when captured */
+	private int width = 0, height = 0;
+
+	/** damage since the previous scene */
+	private Boxes damage = new Boxes();
+
+	/** frame of the glyphs when captured */
+	private long frame = 0;
+
+	/**
+	 * Default constructor: the whole display is damaged until captured
+	 */
+	public Scene() {
+		this.damage.addFull();
+	}
+
+	/**
+	 * Prepares this scene to be captured again
+	 *
+	 * @param width display width
+	 * @param height display height
+	 * @param damage damage since the previous scene, copied
+	 * @param frame frame of the glyphs, see
+	 *            {@link bifstk.gl.TrueTypeFont#getFrame()}
+	 */
+	void begin(int width, int height, Boxes damage, long frame) {
+		this.frame = frame;
+		this.damage.clear();
+		this.damage.add(damage);
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Adds the damage of a scene that was replaced before being drawn, so
+	 * that the region it changed is drawn with this one
+	 *
+	 * @param replaced the scene published before this one
+	 */
+	void merge(Scene replaced) {
+		this.damage.add(replaced.damage);
+	}
+
+	/**
+	 * @return the quads of the frame
+	 */
+	QuadCache getQuads() {
+		return this.quads;
+	}
+
+	/**
+	 * @return frame of the glyphs when captured
+	 */
+	long getFrame() {
+		return this.frame;
+	}
+
+	/**
+	 * @return display width when captured
+	 */
+	public int getDisplayWidth() {
+		return this.width;
+	}
+
+	/**
+	 * @return display height when captured
+	 */
+	public int getDisplayHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return damage since the previous scene
+	 */
+	Boxes getDamage() {
+		return this.damage;
+	}
+}
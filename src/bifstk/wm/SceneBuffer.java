@@ -0,0 +1,83 @@
+package bifstk.wm;
+
+/**
+ * Triple buffer of {@link Scene}s between the logic thread and the drawing
+ * thread
+ * <p>
+ * The logic thread always builds a scene in its own slot and publishes it
+ * by exchanging it with the ready slot; the drawing thread exchanges its own
+ * slot with the ready one to get the latest scene. Neither thread ever waits
+ * for the other to finish building or drawing a scene: when the logic thread
+ * is faster, the scenes that were never drawn are replaced and their damage
+ * is merged into the scene replacing them
+ *
+ */
+public class SceneBuffer {
+
+	private final Scene[] scenes = {
+			new Scene(), new Scene(), new Scene()
+	};
+
+	/** slot of the logic thread */
+	private int write = 0;
+	/** slot of the latest published scene */
+	private int ready = 1;
+	/** slot of the drawing thread */
+	private int read = 2;
+	/** true if the ready slot was published but not taken yet */
+	private boolean fresh = false;
+
+	/**
+	 * @return the scene the logic thread can build, not seen by the drawing
+	 *         thread until published
+	 */
+	public Scene getWriteScene() {
+		return this.scenes[this.write];
+	}
+
+	/**
+	 * Makes the scene built by the logic thread the latest one
+	 */
+	public synchronized void publish() {
+		// the ready scene is replaced before being drawn
+		if (this.fresh) {
+			this.scenes[this.write].merge(this.scenes[this.ready]);
+		}
+		int w = this.write;
+		this.write = this.ready;
+		this.ready = w;
+		this.fresh = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Takes the latest scene for the drawing thread, waiting for one to be
+	 * published if needed
+	 *
+	 * @param wait maximum milliseconds to wait, 0 to return immediately
+	 * @return the scene published since the last call, or null if none was
+	 */
+	public synchronized Scene take(long wait) {
+		if (!this.fresh && wait > 0) {
+			try {
+				this.wait(wait);
+			} catch (InterruptedException e) {
+			}
+		}
+		if (!this.fresh) {
+			return null;
+		}
+		int r = this.read;
+		this.read = this.ready;
+		this.ready = r;
+		this.fresh = false;
+		return this.scenes[this.read];
+	}
+
+	/**
+	 * Wakes up the drawing thread if it waits for a scene
+	 */
+	public synchronized void wake() {
+		this.notifyAll();
+	}
+}
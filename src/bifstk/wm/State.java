@@ -140,6 +140,8 @@ public class State {
 			f.init();
 			this.modalWindow = f;
 		}
+		// the mask covers the whole display
+		Damage.addFull();
 	}
 
 	/**
@@ -227,6 +229,8 @@ public class State {
 		}
 
 		if (w != null) {
+			// dock borders and shadow span the whole display height
+			Damage.addFull();
 			w.init();
 			int pos = 0;
 			// find the position in the dock depending the ordinate of the
@@ -356,6 +360,7 @@ public class State {
 	 */
 	public boolean removeFromDock(Window w, DockPosition dockPos) {
 		if (w != null) {
+			Damage.addFull();
 			w.teardown();
 
 			LinkedList<Window> dock = null;
@@ -423,6 +428,7 @@ public class State {
 				/ 2
 				- Theme.get().windowBorderWidth);
 		List<Window> dock = null;
+		Damage.addFull();
 
 		int dx = 0;
 		if (pos.equals(DockPosition.LEFT)) {
@@ -457,8 +463,11 @@ public class State {
 			focusFrame(tofocus);
 		}
 		if (tofocus != null) {
-			if (this.windows.remove(tofocus)) {
+			if (this.windows.peekFirst() != tofocus
+					&& this.windows.remove(tofocus)) {
 				this.windows.addFirst(tofocus);
+				// now drawn over the windows it overlaps
+				tofocus.invalidate();
 			}
 		}
 	}
@@ -619,7 +628,9 @@ public class State {
 	public void update() {
 		if (this.modalWindow != null && this.modalWindow.isRemovable()) {
 			this.windows.remove(modalWindow);
+			this.modalWindow.dispose();
 			this.modalWindow = null;
+			Damage.addFull();
 		}
 
 		Iterator<Window> it = this.windows.iterator();
@@ -627,6 +638,7 @@ public class State {
 			Window w = it.next();
 			if (w.isRemovable()) {
 				it.remove();
+				w.dispose();
 			}
 		}
 
@@ -635,6 +647,7 @@ public class State {
 			Area a = at.next();
 			if (a.isRemovable()) {
 				at.remove();
+				a.dispose();
 			}
 		}
 
@@ -643,6 +656,7 @@ public class State {
 			Window w = it.next();
 			if (w.isRemovable()) {
 				it.remove();
+				w.dispose();
 			}
 		}
 
@@ -651,6 +665,7 @@ public class State {
 			Window w = it.next();
 			if (w.isRemovable()) {
 				it.remove();
+				w.dispose();
 			}
 		}
 	}
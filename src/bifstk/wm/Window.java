@@ -62,8 +62,7 @@ public class Window extends Frame {
 
 	@Override
 	protected Color getFrameUnfocusedColor() {
-		return Theme.get().windowColor
-				.add(Theme.get().windowUnfocusedMask);
+		return Theme.get().windowUnfocusedColor;
 	}
 
 	@Override
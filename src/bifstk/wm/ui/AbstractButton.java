@@ -1,5 +1,6 @@
 package bifstk.wm.ui;
 
+import bifstk.util.Tracer;
 import bifstk.wm.geom.Rectangle;
 
 /**
@@ -59,18 +60,25 @@ public abstract class AbstractButton extends Actionable {
 
 	@Override
 	public void mouseHover(int x, int y) {
-		this.mouseHover = true;
+		if (!this.mouseHover) {
+			this.mouseHover = true;
+			this.invalidateBox();
+		}
 	}
 
 	@Override
 	public void mouseOut() {
-		this.mouseHover = false;
+		if (this.mouseHover) {
+			this.mouseHover = false;
+			this.invalidateBox();
+		}
 	}
 
 	@Override
 	public void mouseDown(int button) {
-		if (button == 0) {
+		if (button == 0 && !this.mouseClicked) {
 			this.mouseClicked = true;
+			this.invalidateBox();
 		}
 	}
 
@@ -78,8 +86,11 @@ public abstract class AbstractButton extends Actionable {
 	public void mouseUp(int button, int x, int y) {
 		if (button == 0) {
 			this.mouseClicked = false;
+			this.invalidateBox();
 			if (this.bounds.contains(x, y) && this.getHandler() != null) {
+				long t = Tracer.begin();
 				this.getHandler().actionPerformed(this.getAction(), this);
+				Tracer.end("Handler.actionPerformed", t);
 			}
 		}
 	}
@@ -31,6 +31,7 @@ public class Button extends AbstractButton {
 
 	@Override
 	public void render(float alpha, Color uiBg, float uiAlpha) {
+		this.setDrawn();
 		int w = this.getWidth();
 		int h = this.getHeight();
 
@@ -26,6 +26,7 @@ public class Checkbox extends AbstractButton {
 
 	@Override
 	public void render(float alpha, Color uiBg, float uiBgAlpha) {
+		this.setDrawn();
 		int w = this.getWidth();
 		int h = this.getHeight();
 
@@ -72,6 +73,7 @@ public class Checkbox extends AbstractButton {
 	 */
 	public void setChecked(boolean c) {
 		this.checked = c;
+		this.invalidate();
 	}
 
 	@Override
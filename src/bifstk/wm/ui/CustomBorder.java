@@ -5,6 +5,7 @@ import bifstk.config.Theme;
 import bifstk.gl.Color;
 import bifstk.gl.Rasterizer;
 import bifstk.gl.Util;
+import bifstk.util.Tracer;
 import bifstk.wm.geom.Rectangle;
 
 /**
@@ -105,6 +106,8 @@ public class CustomBorder extends Border {
 
 	@Override
 	public void render(float alpha, Color uiBg, float uiAlpha) {
+		long t = Tracer.begin();
+
 		int w = Math.max(left + right, this.getWidth());
 		int h = Math.max(top + bot, this.getHeight());
 		float a = alpha * uiAlpha;
@@ -123,7 +126,7 @@ public class CustomBorder extends Border {
 			// content
 			int nw = w - left - right;
 			int nh = h - top - bot;
-			if (nw > 0 && nh > 0) {
+			if (Rasterizer.isVisible(left, top, nw, nh)) {
 				Rasterizer.pushTranslate(left, top);
 				Rasterizer.pushScissor(w, h);
 
@@ -148,6 +151,8 @@ public class CustomBorder extends Border {
 
 			//Util.popScissor();
 		}
+
+		Tracer.end("CustomBorder.render", t);
 	}
 
 	@Override
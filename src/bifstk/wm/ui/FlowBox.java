@@ -7,6 +7,8 @@ import bifstk.config.Theme;
 import bifstk.gl.Color;
 import bifstk.gl.Rasterizer;
 import bifstk.gl.Util;
+import bifstk.util.LayoutEvent;
+import bifstk.util.Tracer;
 import bifstk.wm.geom.Rectangle;
 
 /**
@@ -128,6 +130,9 @@ public class FlowBox extends Container {
 	 * resize children widgets
 	 */
 	private void resize() {
+		LayoutEvent event = new LayoutEvent();
+		event.begin();
+
 		int w = this.getWidth();
 		int h = this.getHeight();
 		expandWidth = 0;
@@ -190,10 +195,24 @@ public class FlowBox extends Container {
 		} else {
 			this.drawExpanded = false;
 		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.container = this.getClass();
+			event.children = this.leftChildren.size()
+					+ this.rightChildren.size()
+					+ (this.expandChild != null ? 1 : 0);
+			event.width = w;
+			event.height = h;
+			event.commit();
+		}
 	}
 
 	@Override
 	public void render(float alpha, Color uiBg, float uiAlpha) {
+		long t = Tracer.begin();
+		this.setDrawn();
+
 		int w = this.getWidth();
 		int h = this.getHeight();
 
@@ -219,10 +238,11 @@ public class FlowBox extends Container {
 			for (Widget widg : wiz) {
 				i++;
 
-				if (this.orientation.equals(Orientation.HORIZONTAL) && acc > w) {
-					break;
-				} else if (this.orientation.equals(Orientation.VERTICAL)
-						&& acc > h) {
+				if (this.orientation.equals(Orientation.HORIZONTAL)) {
+					if (acc > w || !Rasterizer.isVisible(acc, 0, w - acc, h))
+						break;
+				} else if (acc > h || !Rasterizer.isVisible(0, acc, w, h - acc)) {
+					// nothing left to draw past the end of the scissor
 					break;
 				}
 				if (widg == null) {
@@ -236,19 +256,24 @@ public class FlowBox extends Container {
 
 					acc += expandWidth;
 				} else {
+					int wx = 0, wy = 0;
 					if (this.orientation.equals(Orientation.HORIZONTAL)) {
-						Rasterizer.pushTranslate(acc, 0);
-						Rasterizer.pushScissor(widg.getWidth(),
-								widg.getHeight());
+						wx = acc;
 					} else {
-						Rasterizer.pushTranslate(0, acc);
+						wy = acc;
+					}
+					// skip widgets scrolled out or hidden by a parent
+					if (Rasterizer.isVisible(wx, wy, widg.getWidth(),
+							widg.getHeight())) {
+						Rasterizer.pushTranslate(wx, wy);
 						Rasterizer.pushScissor(widg.getWidth(),
 								widg.getHeight());
-					}
-					widg.render(alpha, uiBg, uiAlpha);
 
-					Rasterizer.popScissor();
-					Rasterizer.popTranslate();
+						widg.render(alpha, uiBg, uiAlpha);
+
+						Rasterizer.popScissor();
+						Rasterizer.popTranslate();
+					}
 
 					if (this.orientation.equals(Orientation.HORIZONTAL)) {
 						if (widg.getHeight() < h) {
@@ -279,6 +304,8 @@ public class FlowBox extends Container {
 				}
 			}
 		}
+
+		Tracer.end("FlowBox.render", t);
 	}
 
 	/**
@@ -504,6 +531,7 @@ public class FlowBox extends Container {
 	 */
 	public void setBorderWidth(int b) {
 		this.borderWidth = b;
+		this.invalidate();
 	}
 
 	/**
@@ -574,6 +602,9 @@ public class FlowBox extends Container {
 
 	@Override
 	public void mouseHover(int x, int y) {
+		if (!this.mouseHover && this.boundButton != null) {
+			this.invalidateBox();
+		}
 		this.mouseHover = true;
 		//if (this.boundButton == null) {
 			int acc = 0;
@@ -644,6 +675,9 @@ public class FlowBox extends Container {
 			this.widgetHover.mouseOut();
 			this.widgetHover = null;
 		}
+		if (this.mouseHover && this.boundButton != null) {
+			this.invalidateBox();
+		}
 		this.mouseHover = false;
 	}
 
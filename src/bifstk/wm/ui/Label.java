@@ -73,6 +73,7 @@ public class Label extends Widget {
 		if (this.getParent() != null) {
 			this.getParent().update();
 		}
+		this.invalidate();
 	}
 
 	/**
@@ -5,6 +5,7 @@ import bifstk.config.Theme;
 import bifstk.gl.Color;
 import bifstk.gl.Rasterizer;
 import bifstk.gl.Util;
+import bifstk.util.Tracer;
 import bifstk.wm.Logic;
 import bifstk.wm.geom.Rectangle;
 
@@ -119,6 +120,9 @@ public class ScrollBox extends Border {
 
 	@Override
 	public void render(float alpha, Color uiBg, float uiBgAlpha) {
+		long t = Tracer.begin();
+		this.setDrawn();
+
 		int scrollWidth = getScrollBarWidth();
 		int w = this.bounds.getWidth();
 		int h = this.bounds.getHeight();
@@ -162,7 +166,9 @@ public class ScrollBox extends Border {
 		Rasterizer.pushTranslate(-xTranslate, -yTranslate);
 
 		Rasterizer.pushScissor(xTranslate, yTranslate, viewWidth, viewHeight);
-		this.getContent().render(alpha, uiBg, uiBgAlpha);
+		if (!Rasterizer.isClipEmpty()) {
+			this.getContent().render(alpha, uiBg, uiBgAlpha);
+		}
 		Rasterizer.popScissor();
 
 		Rasterizer.popTranslate();
@@ -233,6 +239,8 @@ public class ScrollBox extends Border {
 						scrollWidth, uiBg, a);
 			}
 		}
+
+		Tracer.end("ScrollBox.render", t);
 	}
 
 	@Override
@@ -242,6 +250,7 @@ public class ScrollBox extends Border {
 		int scrollWidth = getScrollBarWidth();
 		int w = this.bounds.getWidth();
 		int h = this.bounds.getHeight();
+		Region wasRegion = this.hoverRegion;
 		boolean wasContent = this.hoverRegion.equals(Region.content);
 
 		// region detection: very verbose; very fast
@@ -369,6 +378,11 @@ public class ScrollBox extends Border {
 			break;
 		}
 
+		// a dragged scrollbar follows the mouse
+		if (this.verDrag || this.horDrag || !wasRegion.equals(hoverRegion)) {
+			this.invalidateBox();
+		}
+
 		if (hoverRegion.equals(Region.content)) {
 			this.getContent().mouseHover(x + xTranslate, y + yTranslate);
 		} else if (wasContent) {
@@ -380,6 +394,8 @@ public class ScrollBox extends Border {
 	public void mouseOut() {
 		if (hoverRegion.equals(Region.content)) {
 			this.getContent().mouseOut();
+		} else if (!hoverRegion.equals(Region.outside)) {
+			this.invalidateBox();
 		}
 		this.hoverRegion = Region.outside;
 	}
@@ -419,8 +435,10 @@ public class ScrollBox extends Border {
 	public void mouseUp(int button, int x, int y) {
 		if (this.verDrag) {
 			this.verDrag = false;
+			this.invalidateBox();
 		} else if (this.horDrag) {
 			this.horDrag = false;
+			this.invalidateBox();
 		}
 
 		boolean hadOne = false;
@@ -8,6 +8,8 @@ import bifstk.config.Theme;
 import bifstk.gl.Color;
 import bifstk.gl.Rasterizer;
 import bifstk.gl.Util;
+import bifstk.util.LayoutEvent;
+import bifstk.util.Tracer;
 import bifstk.wm.geom.Rectangle;
 
 /**
@@ -61,6 +63,8 @@ public class Tabs extends Container {
 
 	@Override
 	public void render(float alpha, Color uiBg, float uiBgAlpha) {
+		long t = Tracer.begin();
+		this.setDrawn();
 
 		int bh = this.getTabsHeight();
 		int w = this.getWidth();
@@ -86,7 +90,9 @@ public class Tabs extends Container {
 			if (tab.equals(this.activeTab)) {
 				Rasterizer.pushTranslate(border, bh + border);
 				Rasterizer.pushScissor(w - 2 * border, h - bh - 2 * border);
-				tab.content.render(alpha, uiBg2, uiBgAlpha);
+				if (!Rasterizer.isClipEmpty()) {
+					tab.content.render(alpha, uiBg2, uiBgAlpha);
+				}
 				Rasterizer.popScissor();
 				Rasterizer.popTranslate();
 				activeAccL = acc;
@@ -147,6 +153,8 @@ public class Tabs extends Container {
 		Util.raster().fillQuad(activeAccL + 1, 0, 1, bh, hl, a);
 		Util.raster().fillQuad(activeAccL + 2, 0, activeAccR - activeAccL - 4,
 				1, hl, a);
+
+		Tracer.end("Tabs.render", t);
 	}
 
 	@Override
@@ -205,6 +213,9 @@ public class Tabs extends Container {
 	 * Size of this changed, need to resize tabs
 	 */
 	private void resize() {
+		LayoutEvent event = new LayoutEvent();
+		event.begin();
+
 		int bh = this.getTabsHeight();
 		int w = Math.max(0, this.getWidth() - 2 * border);
 		int h = Math.max(0, this.getHeight() - bh - 2 * border);
@@ -212,6 +223,15 @@ public class Tabs extends Container {
 		for (Tab tab : this.tabs) {
 			tab.content.setBounds(w, h);
 		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.container = this.getClass();
+			event.children = this.tabs.size();
+			event.width = this.getWidth();
+			event.height = this.getHeight();
+			event.commit();
+		}
 	}
 
 	@Override
@@ -346,8 +366,9 @@ public class Tabs extends Container {
 			if (this.activeTab != null) {
 				this.activeTab.content.mouseDown(button);
 			}
-		} else if (this.hoverTab != null) {
+		} else if (this.hoverTab != null && this.hoverTab != this.activeTab) {
 			this.activeTab = hoverTab;
+			this.invalidateBox();
 		}
 	}
 
@@ -8,6 +8,7 @@ import bifstk.config.Fonts;
 import bifstk.config.Theme;
 import bifstk.gl.Color;
 import bifstk.gl.Util;
+import bifstk.wm.AnimationScheduler;
 import bifstk.wm.geom.Rectangle;
 
 /**
@@ -30,6 +31,9 @@ public class Text extends Actionable implements Focusable {
 		ALL;
 	}
 
+	/** half period of the caret blinking in ms */
+	private static final long CARET_BLINK = 500;
+
 	/** dimensions */
 	private Rectangle bounds = null;
 
@@ -125,6 +129,7 @@ public class Text extends Actionable implements Focusable {
 			for (int i = chars.length - 1; i >= 0; i--)
 				this.insertChar(chars[i]);
 		}
+		this.invalidate();
 	}
 
 	@Override
@@ -157,6 +162,12 @@ public class Text extends Actionable implements Focusable {
 		Color fillCol = uiBg.add(Theme.get().uiEntryMask);
 		Util.raster().fillQuad(x, y, w, h, fillCol, a);
 
+		// the caret blinks: only this box changes when it toggles
+		if (this.focus) {
+			long t = AnimationScheduler.get().getTime() / CARET_BLINK;
+			this.invalidateLater((t + 1) * CARET_BLINK, x, y, w, h);
+		}
+
 		if (!this.multiLine) {
 			String str = this.content.toString();
 			renderLine(str, 0, uiBg, alpha, true);
@@ -180,7 +191,8 @@ public class Text extends Actionable implements Focusable {
 				alpha);
 
 		// caret
-		if (this.focus && System.currentTimeMillis() / 500 % 2 == 0
+		if (this.focus
+				&& AnimationScheduler.get().getTime() / CARET_BLINK % 2 == 0
 				&& drawCaret) {
 			int len = this.caretPos + this.offset + 2;
 			Util.raster().drawQuad(len - 1, 2 + yOff, 2,
@@ -210,6 +222,7 @@ public class Text extends Actionable implements Focusable {
 
 	@Override
 	public void keyEvent(int key, boolean state, char character) {
+		this.invalidate();
 		if (!state) {
 			switch (key) {
 			case Keyboard.KEY_LSHIFT:
@@ -539,5 +552,6 @@ public class Text extends Actionable implements Focusable {
 	@Override
 	public void setFocus(boolean f) {
 		this.focus = f;
+		this.invalidate();
 	}
 }
@@ -17,6 +17,9 @@ public abstract class Widget implements Drawable, Clickable {
 	/** frame this widget is the content of, or null */
 	private Frame frame = null;
 
+	/** box of this Widget relative to its Frame when last drawn, or empty */
+	private int drawnX = 0, drawnY = 0, drawnW = 0, drawnH = 0;
+
 	/**
 	 * The geometry of a Widget is handled by the frame holding it, or its
 	 * parent widget when using containers.
@@ -109,7 +112,9 @@ public abstract class Widget implements Drawable, Clickable {
 	 * @param c the Container containing this widget
 	 */
 	public void setParent(Container c) {
+		this.invalidate();
 		this.parent = c;
+		this.invalidate();
 	}
 
 	/**
@@ -132,7 +137,85 @@ public abstract class Widget implements Drawable, Clickable {
 	 * @param f the Frame holding this Widget as content
 	 */
 	public void setFrame(Frame f) {
+		this.invalidate();
 		this.frame = f;
+		this.invalidate();
+	}
+
+	/**
+	 * Notifies the Frame containing this Widget that its appearance changed,
+	 * so that it is drawn again on the next render
+	 * <p>
+	 * Widgets must call this whenever something they draw changes. When only
+	 * the Widget itself changes, ie. on a mouse event, prefer
+	 * {@link #invalidateBox()}
+	 * 
+	 * @see Frame#invalidate()
+	 */
+	public void invalidate() {
+		Frame f = this.getFrame();
+		if (f != null) {
+			f.invalidate();
+		}
+	}
+
+	/**
+	 * Notifies the Frame containing this Widget that only the box of this
+	 * Widget changed: the rest of the display is not drawn again
+	 * <p>
+	 * The box is the one recorded by {@link #setDrawn()}; the whole Frame is
+	 * invalidated if this Widget was never drawn
+	 * 
+	 * @see Frame#invalidate(int, int, int, int)
+	 */
+	public void invalidateBox() {
+		Frame f = this.getFrame();
+		if (f == null) {
+			return;
+		}
+		if (this.drawnW > 0 && this.drawnH > 0) {
+			f.invalidate(f.getX() + this.drawnX, f.getY() + this.drawnY,
+					this.drawnW, this.drawnH);
+		} else {
+			f.invalidate();
+		}
+	}
+
+	/**
+	 * Records where this Widget is drawn, for {@link #invalidateBox()}
+	 * <p>
+	 * Must be called from {@link #render(float, bifstk.gl.Color, float)},
+	 * before any translation of its own, by Widgets calling invalidateBox
+	 */
+	protected void setDrawn() {
+		Frame f = this.getFrame();
+		if (f != null) {
+			this.drawnX = f.getDrawnX();
+			this.drawnY = f.getDrawnY();
+			this.drawnW = this.getWidth();
+			this.drawnH = this.getHeight();
+		}
+	}
+
+	/**
+	 * Notifies the Frame containing this Widget that a part of it will change
+	 * at a given time, ie. for animations driven by the clock
+	 * <p>
+	 * Must be called while rendering
+	 * 
+	 * @param time value of {@link org.lwjgl.Sys#getTime()} at which the box
+	 *            changes
+	 * @param x top left abscissa relative to this Widget
+	 * @param y top left ordinate relative to this Widget
+	 * @param w box width
+	 * @param h box height
+	 * @see Frame#invalidateLater(long, int, int, int, int)
+	 */
+	public void invalidateLater(long time, int x, int y, int w, int h) {
+		Frame f = this.getFrame();
+		if (f != null) {
+			f.invalidateLater(time, x, y, w, h);
+		}
 	}
 
 	/**
@@ -4,6 +4,7 @@ import bifstk.Bifstk;
 import bifstk.Handler;
 import bifstk.config.Config;
 import bifstk.config.ConfigProperty;
+import bifstk.wm.Frame;
 import bifstk.wm.Window;
 import bifstk.wm.ui.Actionable;
 import bifstk.wm.ui.Button;
@@ -38,6 +39,8 @@ public final class ConfigWindow extends Window implements Handler {
 	/* WM */
 	private Checkbox focusFollowMouse;
 	private Checkbox debugLayout;
+	private Checkbox debugDamage;
+	private Checkbox hud;
 	private Checkbox windowSnapTop;
 	private Checkbox windowDockLeft;
 	private Checkbox windowDockRight;
@@ -51,6 +54,9 @@ public final class ConfigWindow extends Window implements Handler {
 		super(50, 50, 300, 200);
 		this.build();
 		this.reset();
+
+		// a form: content only changes on user input
+		this.setTextureCache(true);
 	}
 
 	public static ConfigWindow getInstance() {
@@ -134,6 +140,20 @@ public final class ConfigWindow extends Window implements Handler {
 		debugLayoutBox.bindButton(debugLayout);
 		wmBox.addBegin(debugLayoutBox);
 
+		FlowBox debugDamageBox = new FlowBox(FlowBox.Orientation.HORIZONTAL);
+		debugDamage = new Checkbox();
+		debugDamageBox.addBegin(debugDamage);
+		debugDamageBox.addBegin(new Label("Debug damage"));
+		debugDamageBox.bindButton(debugDamage);
+		wmBox.addBegin(debugDamageBox);
+
+		FlowBox hudBox = new FlowBox(FlowBox.Orientation.HORIZONTAL);
+		hud = new Checkbox();
+		hudBox.addBegin(hud);
+		hudBox.addBegin(new Label("Performance overlay"));
+		hudBox.bindButton(hud);
+		wmBox.addBegin(hudBox);
+
 		FlowBox frameAnimBox = new FlowBox(FlowBox.Orientation.HORIZONTAL);
 		frameAnims = new Checkbox();
 		frameAnimBox.addBegin(frameAnims);
@@ -226,6 +246,8 @@ public final class ConfigWindow extends Window implements Handler {
 
 		this.focusFollowMouse.setChecked(c.isWmFocusFollowmouse());
 		this.debugLayout.setChecked(c.isWmDebugLayout());
+		this.debugDamage.setChecked(c.isWmDebugDamage());
+		this.hud.setChecked(c.isWmHud());
 		this.windowSnapTop.setChecked(c.isWmWindowSnapTop());
 		this.windowDockLeft.setChecked(c.isWmWindowDockLeft());
 		this.windowDockRight.setChecked(c.isWmWindowDockRight());
@@ -247,11 +269,16 @@ public final class ConfigWindow extends Window implements Handler {
 
 			c.setWmFocusFollowmouse(this.focusFollowMouse.isChecked());
 			c.setWmDebugLayout(this.debugLayout.isChecked());
+			c.setWmDebugDamage(this.debugDamage.isChecked());
+			c.setWmHud(this.hud.isChecked());
 			c.setWmWindowSnapTop(this.windowSnapTop.isChecked());
 			c.setWmWindowDockLeft(this.windowDockLeft.isChecked());
 			c.setWmWindowDockRight(this.windowDockRight.isChecked());
 			c.setWmFrameSnap(this.frameSnap.isChecked());
 			c.setWmAnimations(this.frameAnims.isChecked());
+
+			// debug layout and animations change what every Frame draws
+			Frame.invalidateAll();
 		} else if (action.equals("cancel")) {
 			Bifstk.removeWindow(this);
 		}
@@ -0,0 +1,295 @@
+package bifstk.wm.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import bifstk.config.Config;
+import bifstk.config.Fonts;
+import bifstk.config.Theme;
+import bifstk.gl.Atlas;
+import bifstk.gl.Color;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.Util;
+import bifstk.util.FrameStats;
+import bifstk.util.FrameStats.Phase;
+import bifstk.wm.AnimationScheduler;
+import bifstk.wm.Area;
+import bifstk.wm.geom.Rectangle;
+import bifstk.wm.ui.Widget;
+
+/**
+ * Stock overlay showing the performance of the last frames
+ * <p>
+ * Displays a sparkline of the recent frame durations along with their 99th
+ * percentile, the quads, draw calls and mid-frame batch flushes of the last
+ * frame, how much of the texture atlas is used, the heap allocated per frame
+ * by the thread drawing the WM, and the number of garbage collections.
+ * <p>
+ * The counters of the last frame are published by the thread drawing the WM
+ * with {@link #publish()}: when the WM is drawn by another thread, the
+ * overlay is laid out by the logic thread, whose rasterizer only records
+ * scenes.
+ * <p>
+ * Values are sampled every {@link #REFRESH} milliseconds and drawn with at
+ * most {@link #MAX_QUADS} quads, so that it can stay displayed at little
+ * cost. Shown while {@link Config#isWmHud()} is true, toggled with F12
+ *
+ */
+public final class PerfHud extends Area {
+
+	/** number of frame durations in the sparkline */
+	private static final int BARS = 64;
+	/** pixel width of a bar of the sparkline, including the gap */
+	private static final int BAR_WIDTH = 3;
+	/** pixel height of the sparkline */
+	private static final int GRAPH_HEIGHT = 30;
+	/** frame duration at the top of the sparkline unless one is longer */
+	private static final long GRAPH_SCALE = 1000000000L / 30;
+	/** number of lines of text */
+	private static final int LINES = 4;
+	/** maximum characters in a line of text */
+	private static final int LINE_LENGTH = 30;
+	/** pixels around the content */
+	private static final int PAD = 3;
+
+	/** milliseconds between two samplings of the values */
+	public static final long REFRESH = 250;
+
+	/** maximum number of quads drawn by the content of the overlay */
+	public static final int MAX_QUADS = 2 + BARS + LINES * LINE_LENGTH;
+
+	private static PerfHud instance = null;
+
+	/** counters of the last frame drawn, published by the drawing thread */
+	private static volatile int quads = 0, draws = 0, flushes = 0;
+	/** frames published, and bytes allocated by the drawing thread then */
+	private static volatile long published = 0, allocated = -1;
+
+	private PerfHud(View view) {
+		super(0, 0, view.getPreferredWidth(0) + 2
+				* Theme.get().areaBorderWidth, view.getPreferredHeight(0) + 2
+				* Theme.get().areaBorderWidth);
+		this.setContent(view);
+	}
+
+	/**
+	 * @return the overlay, created on first call once the fonts are loaded
+	 */
+	public static PerfHud getInstance() {
+		if (PerfHud.instance == null) {
+			PerfHud.instance = new PerfHud(new View());
+		}
+		return PerfHud.instance;
+	}
+
+	/**
+	 * Publishes the counters of the frame that was just drawn: must be called
+	 * by the thread drawing the WM, once the frame is swapped
+	 */
+	public static void publish() {
+		Rasterizer r = Rasterizer.getInstance();
+		quads = r.getQuadCount();
+		draws = r.getDrawCount();
+		flushes = r.getOverflowCount();
+		allocated = View.getAllocatedBytes();
+		published++;
+	}
+
+	/**
+	 * Draws the sampled values
+	 */
+	private static class View extends Widget {
+
+		private Rectangle bounds = new Rectangle();
+
+		/** time of the next sampling */
+		private long next = 0;
+
+		/** recent frame durations, oldest first */
+		private long[] bars = new long[BARS];
+		/** number of valid durations in bars */
+		private int barCount = 0;
+		/** 99th percentile of the frame durations */
+		private long p99 = 0;
+
+		/** text of each line */
+		private String[] lines = new String[LINES];
+
+		/** frames and allocated bytes at the last sampling */
+		private long lastFrames = 0, lastAllocated = -1;
+
+		public View() {
+			for (int i = 0; i < LINES; i++) {
+				this.lines[i] = "";
+			}
+		}
+
+		/**
+		 * Reads all values displayed
+		 */
+		private void sample() {
+			if (FrameStats.isEnabled()) {
+				this.barCount = FrameStats.getSamples(Phase.FRAME, this.bars);
+				this.p99 = FrameStats.getSummary(Phase.FRAME).getP99();
+				this.lines[0] = String.format("frame p99 %.2f ms",
+						this.p99 / 1e6);
+			} else {
+				this.barCount = 0;
+				this.p99 = 0;
+				this.lines[0] = "frame stats disabled";
+			}
+
+			this.lines[1] = "quads " + quads + "  draws " + draws;
+			this.lines[2] = "flushes " + flushes + "  atlas "
+					+ (int) (Atlas.getInstance().getFill() * 100.0f) + "%";
+
+			// written by the drawing thread, possibly a frame apart
+			long frames = published;
+			long bytes = allocated;
+			String alloc = "-";
+			if (bytes >= 0 && this.lastAllocated >= 0
+					&& frames > this.lastFrames) {
+				alloc = ((bytes - this.lastAllocated)
+						/ (frames - this.lastFrames) / 1024)
+						+ " KB/frame";
+			}
+			this.lastFrames = frames;
+			this.lastAllocated = bytes;
+			this.lines[3] = "alloc " + alloc + "  gc " + getCollectionCount();
+
+			for (int i = 0; i < LINES; i++) {
+				if (this.lines[i].length() > LINE_LENGTH) {
+					this.lines[i] = this.lines[i].substring(0, LINE_LENGTH);
+				}
+			}
+		}
+
+		/**
+		 * @return bytes allocated in the heap by the current thread, or -1
+		 *         if the JVM does not measure it
+		 */
+		private static long getAllocatedBytes() {
+			ThreadMXBean t = ManagementFactory.getThreadMXBean();
+			if (t instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean st;
+				st = (com.sun.management.ThreadMXBean) t;
+				if (st.isThreadAllocatedMemorySupported()
+						&& st.isThreadAllocatedMemoryEnabled()) {
+					return st.getThreadAllocatedBytes(Thread.currentThread()
+							.getId());
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @return number of garbage collections since the JVM started
+		 */
+		private static long getCollectionCount() {
+			long n = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory
+					.getGarbageCollectorMXBeans()) {
+				n += Math.max(0, gc.getCollectionCount());
+			}
+			return n;
+		}
+
+		@Override
+		public void render(float alpha, Color uiBg, float uiAlpha) {
+			int w = this.getWidth();
+			int h = this.getHeight();
+
+			if (w <= 0 || h <= 0) {
+				return;
+			}
+
+			long now = AnimationScheduler.get().getTime();
+			if (now >= this.next) {
+				this.sample();
+				this.next = now + REFRESH;
+			}
+			// values change on their own: draw again on next sampling
+			this.invalidateLater(this.next, 0, 0, w, h);
+
+			Color col = uiBg.add(Theme.get().uiFontMask);
+			Util.raster().fillQuad(0, 0, w, h, uiBg, uiAlpha * alpha);
+
+			long scale = GRAPH_SCALE;
+			for (int i = 0; i < this.barCount; i++) {
+				scale = Math.max(scale, this.bars[i]);
+			}
+			int x = PAD + (BARS - this.barCount) * BAR_WIDTH;
+			for (int i = 0; i < this.barCount; i++) {
+				int bh = (int) Math.max(1, this.bars[i] * GRAPH_HEIGHT
+						/ scale);
+				Util.raster().fillQuad(x, PAD + GRAPH_HEIGHT - bh,
+						BAR_WIDTH - 1, bh, col, alpha * 0.6f);
+				x += BAR_WIDTH;
+			}
+			if (this.barCount > 0) {
+				int py = (int) (this.p99 * GRAPH_HEIGHT / scale);
+				Util.raster().fillQuad(PAD, PAD + GRAPH_HEIGHT - py,
+						BARS * BAR_WIDTH, 1, Color.RED, alpha);
+			}
+
+			int y = 2 * PAD + GRAPH_HEIGHT;
+			for (int i = 0; i < LINES; i++) {
+				Fonts.getSmall().drawString(PAD, y, this.lines[i], col, alpha);
+				y += Fonts.getSmall().getLineHeight();
+			}
+		}
+
+		@Override
+		public int getPreferredWidth(int max) {
+			return BARS * BAR_WIDTH + 2 * PAD;
+		}
+
+		@Override
+		public int getPreferredHeight(int max) {
+			return GRAPH_HEIGHT + LINES * Fonts.getSmall().getLineHeight() + 3
+					* PAD;
+		}
+
+		@Override
+		public void setWidth(int w) {
+			this.bounds.setWidth(w);
+		}
+
+		@Override
+		public void setHeight(int h) {
+			this.bounds.setHeight(h);
+		}
+
+		@Override
+		public void setBounds(int w, int h) {
+			this.bounds.setBounds(w, h);
+		}
+
+		@Override
+		public int getWidth() {
+			return this.bounds.getWidth();
+		}
+
+		@Override
+		public int getHeight() {
+			return this.bounds.getHeight();
+		}
+
+		@Override
+		public void mouseHover(int x, int y) {
+		}
+
+		@Override
+		public void mouseOut() {
+		}
+
+		@Override
+		public void mouseDown(int button) {
+		}
+
+		@Override
+		public void mouseUp(int button, int x, int y) {
+		}
+	}
+}
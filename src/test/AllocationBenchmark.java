@@ -0,0 +1,119 @@
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import bifstk.config.Config;
+import bifstk.config.Fonts;
+import bifstk.config.Theme;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.SoftwareRasterizer;
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Headless measure of the heap allocated per frame while drawing the
+ * {@link Test} scene
+ * <p>
+ * Renders the scene in the software rasterizer for a number of frames and
+ * reports the bytes allocated by the rendering thread, as counted by
+ * {@link ThreadMXBean#getThreadAllocatedBytes(long)}, for the first frames
+ * that fill the caches and for the following ones. Once warm, drawing a
+ * frame should not allocate at all: exits with status 1 when the median of
+ * the bytes allocated per frame is not 0. The median ignores the few frames
+ * during which HotSpot installs compiled code, which allocate on the thread
+ * even though the frame itself does not, as seen with <code>-Xint</code>
+ *
+ */
+public class AllocationBenchmark {
+
+	/** frames considered as warm-up */
+	private static final int WARMUP = 10;
+
+	public static void main(String[] args) throws BifstkException {
+		if (args.length < 1) {
+			System.out
+					.println("Usage: java AllocationBenchmark config [width height windows frames]");
+			System.exit(1);
+		}
+		int width = (args.length > 1) ? Integer.parseInt(args[1]) : 800;
+		int height = (args.length > 2) ? Integer.parseInt(args[2]) : 600;
+		int windows = (args.length > 3) ? Integer.parseInt(args[3]) : 10;
+		int frames = (args.length > 4) ? Integer.parseInt(args[4]) : 1000;
+
+		ThreadMXBean mx = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!mx.isThreadAllocatedMemorySupported()) {
+			System.out.println("Thread allocated memory is not supported");
+			System.exit(1);
+		}
+		mx.setThreadAllocatedMemoryEnabled(true);
+		long tid = Thread.currentThread().getId();
+
+		Config.set(Config.load(args[0]));
+		Config.get().setLoggerStdoutDebug(false);
+		Logger.init();
+
+		// single thread: all the drawing happens on the measured thread
+		SoftwareRasterizer raster = new SoftwareRasterizer(width, height, 1);
+		Rasterizer.setInstance(raster);
+		Theme.load(Config.get().getThemePath());
+		Fonts.load();
+
+		TestScene scene = new TestScene(width, height, windows);
+
+		long quads = 0;
+		long start = mx.getThreadAllocatedBytes(tid);
+		for (int i = 0; i < WARMUP; i++) {
+			scene.render();
+			raster.flush();
+		}
+		long warm = mx.getThreadAllocatedBytes(tid);
+
+		// recording and rasterization are counted apart: the latter depends
+		// on how the JVM compiles the span blender
+		long record = 0, flush = 0;
+		long[] perFrame = new long[frames];
+		for (int i = 0; i < frames; i++) {
+			long t0 = mx.getThreadAllocatedBytes(tid);
+			scene.render();
+			long t1 = mx.getThreadAllocatedBytes(tid);
+			raster.flush();
+			long t2 = mx.getThreadAllocatedBytes(tid);
+			record += t1 - t0;
+			flush += t2 - t1;
+			perFrame[i] = t2 - t0;
+			quads += raster.getQuadCount();
+		}
+
+		System.out.println(width + "x" + height + ", " + windows
+				+ " windows, " + frames + " frames");
+		System.out.println(String.format("quads per frame:              %10d",
+				quads / frames));
+		System.out.println(String.format("bytes per frame, warm-up:     %10d",
+				(warm - start) / WARMUP));
+		System.out.println(String.format("bytes per frame, recording:   %10d",
+				record / frames));
+		System.out.println(String.format("bytes per quad, recording:    %10.3f",
+				(double) record / Math.max(1, quads)));
+		System.out.println(String.format("bytes per frame, rasterizing: %10d",
+				flush / frames));
+
+		int allocating = 0;
+		for (long b : perFrame) {
+			if (b > 0)
+				allocating++;
+		}
+		Arrays.sort(perFrame);
+		long median = perFrame[frames / 2];
+		System.out.println(String.format("frames allocating:            %10d",
+				allocating));
+		System.out.println(String.format("bytes per frame, median:      %10d",
+				median));
+		if (median > 0) {
+			System.out.println("FAILED: frames allocate in steady state");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package test;
+
+import bifstk.config.Config;
+import bifstk.config.Fonts;
+import bifstk.config.Theme;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.SoftwareRasterizer;
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+
+/**
+ * Headless measure of the vertex data submitted per frame by the
+ * {@link Test} scene
+ * <p>
+ * Draws the scene in the software rasterizer, which fills the same
+ * {@link bifstk.gl.QuadBatch} as the GL rasterizers, and reports the quads
+ * and bytes of each frame. The bytes the scene took before vertices were
+ * interleaved with packed colors are computed from the quad count: 32 bytes
+ * of int positions, 64 of float colors and 32 of float texture coordinates
+ * per quad
+ *
+ */
+public class BandwidthBenchmark {
+
+	/** bytes per quad of the former separate int and float buffers */
+	private static final int FLOAT_QUAD_BYTES = 32 + 64 + 32;
+
+	public static void main(String[] args) throws BifstkException {
+		if (args.length < 1) {
+			System.out
+					.println("Usage: java BandwidthBenchmark config [width height windows frames]");
+			System.exit(1);
+		}
+		int width = (args.length > 1) ? Integer.parseInt(args[1]) : 800;
+		int height = (args.length > 2) ? Integer.parseInt(args[2]) : 600;
+		int windows = (args.length > 3) ? Integer.parseInt(args[3]) : 10;
+		int frames = (args.length > 4) ? Integer.parseInt(args[4]) : 100;
+
+		Config.set(Config.load(args[0]));
+		Config.get().setLoggerStdoutDebug(false);
+		Logger.init();
+
+		SoftwareRasterizer raster = new SoftwareRasterizer(width, height, 1);
+		Rasterizer.setInstance(raster);
+		Theme.load(Config.get().getThemePath());
+		Fonts.load();
+
+		TestScene scene = new TestScene(width, height, windows);
+
+		long quads = 0, bytes = 0;
+		for (int i = 0; i < frames; i++) {
+			scene.render();
+			raster.flush();
+			quads += raster.getQuadCount();
+			bytes += raster.getByteCount();
+		}
+
+		System.out.println(width + "x" + height + ", " + windows
+				+ " windows, " + frames + " frames");
+		System.out.println(String.format("quads per frame:         %10d",
+				quads / frames));
+		System.out.println(String.format("bytes per frame, before: %10d",
+				quads * FLOAT_QUAD_BYTES / frames));
+		System.out.println(String.format("bytes per frame, after:  %10d",
+				bytes / frames));
+		System.out.println(String.format("reduction:               %9.1f%%",
+				100.0 - 100.0 * bytes / Math.max(1, quads * FLOAT_QUAD_BYTES)));
+	}
+}
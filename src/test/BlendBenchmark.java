@@ -0,0 +1,182 @@
+package test;
+
+import java.util.Arrays;
+
+import bifstk.config.Config;
+import bifstk.config.Fonts;
+import bifstk.config.TextureLoader;
+import bifstk.config.Theme;
+import bifstk.gl.Atlas;
+import bifstk.gl.Color;
+import bifstk.gl.Image;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.ScalarSpanBlender;
+import bifstk.gl.SoftwareRasterizer;
+import bifstk.gl.SpanBlender;
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+
+/**
+ * Microbenchmark of the software rasterizer span blenders
+ * <p>
+ * Compares the scalar and the SIMD span blenders on solid color spans, as
+ * drawn with {@link TextureLoader#getBlank()}, and on glyph spans sampled
+ * from the font images in the atlas. Run with
+ * <code>--add-modules jdk.incubator.vector</code> to measure the SIMD one
+ *
+ */
+public class BlendBenchmark {
+
+	/** framebuffer width: one tile of the software rasterizer */
+	private static final int SPAN = 64;
+
+	private static final int ROWS = 1024;
+
+	private static final int WARMUP = 5, RUNS = 10;
+
+	/** destination pixels */
+	private int[] dst = new int[SPAN * ROWS];
+
+	/** glyph texels: one row of each glyph of a string, back to back */
+	private int[] glyphs;
+	/** offset and width of each glyph row in glyphs */
+	private int[] glyphOff, glyphLen;
+
+	private int tint = Color.WHITE.toABGR(0.8f);
+	private int solid;
+
+	private BlendBenchmark() {
+		Atlas atlas = Atlas.getInstance();
+
+		Image blank = TextureLoader.getBlank();
+		int[] tex = atlas.getPixels(blank.getPage());
+		int tw = atlas.getWidth(blank.getPage());
+		this.solid = tex[blank.getTexY() * tw + blank.getTexX()];
+
+		String str = "The quick brown fox jumps over the lazy dog 0123456789";
+		this.glyphOff = new int[str.length()];
+		this.glyphLen = new int[str.length()];
+		this.glyphs = new int[0];
+		for (int i = 0; i < str.length(); i++) {
+			Image g = Fonts.getNormal().getGlyph(str.charAt(i));
+			tex = atlas.getPixels(g.getPage());
+			tw = atlas.getWidth(g.getPage());
+			int row = (g.getTexY() + g.getHeight() / 2) * tw + g.getTexX();
+			this.glyphOff[i] = this.glyphs.length;
+			this.glyphLen[i] = g.getWidth();
+			this.glyphs = Arrays.copyOf(this.glyphs,
+					this.glyphs.length + g.getWidth());
+			System.arraycopy(tex, row, this.glyphs, this.glyphOff[i],
+					g.getWidth());
+		}
+	}
+
+	private void reset() {
+		Arrays.fill(this.dst, 0xFF404040);
+	}
+
+	/**
+	 * Solid color spans, translucent so that the destination is read
+	 *
+	 * @return number of blended pixels
+	 */
+	private long solid(SpanBlender b) {
+		for (int r = 0; r < ROWS; r++) {
+			b.fill(this.dst, r * SPAN, SPAN, this.solid, this.tint);
+		}
+		return (long) ROWS * SPAN;
+	}
+
+	/**
+	 * Glyph spans, laid out as text on each row
+	 *
+	 * @return number of blended pixels
+	 */
+	private long glyph(SpanBlender b) {
+		long n = 0;
+		for (int r = 0; r < ROWS; r++) {
+			int acc = 0;
+			for (int i = 0; i < this.glyphOff.length; i++) {
+				int len = Math.min(this.glyphLen[i], SPAN - acc);
+				if (len <= 0)
+					break;
+				b.blend(this.dst, r * SPAN + acc, this.glyphs,
+						this.glyphOff[i], len, this.tint);
+				acc += len;
+				n += len;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return millions of pixels blended per second
+	 */
+	private double measure(SpanBlender b, boolean glyph) {
+		long pixels = 0;
+		long t0 = 0;
+		for (int i = 0; i < WARMUP + RUNS; i++) {
+			if (i == WARMUP) {
+				pixels = 0;
+				t0 = System.nanoTime();
+			}
+			for (int j = 0; j < 100; j++) {
+				pixels += glyph ? glyph(b) : solid(b);
+			}
+		}
+		return pixels / ((System.nanoTime() - t0) / 1e3);
+	}
+
+	/**
+	 * @return true if both blenders produce the same pixels
+	 */
+	private boolean check(SpanBlender a, SpanBlender b, boolean glyph) {
+		reset();
+		if (glyph)
+			glyph(a);
+		else
+			solid(a);
+		int[] ref = this.dst.clone();
+
+		reset();
+		if (glyph)
+			glyph(b);
+		else
+			solid(b);
+		return Arrays.equals(ref, this.dst);
+	}
+
+	public static void main(String[] args) throws BifstkException {
+		if (args.length < 1) {
+			System.out.println("Usage: java BlendBenchmark config");
+			System.exit(1);
+		}
+
+		Config.set(Config.load(args[0]));
+		Config.get().setLoggerStdoutDebug(false);
+		// measure the vector implementation when it is available
+		Config.get().setDisplayRasterizerSimd(true);
+		Logger.init();
+
+		Rasterizer.setInstance(new SoftwareRasterizer(SPAN, SPAN, 1));
+		Theme.load(Config.get().getThemePath());
+		Fonts.load();
+
+		BlendBenchmark bench = new BlendBenchmark();
+		SpanBlender scalar = new ScalarSpanBlender();
+		SpanBlender best = SpanBlender.create();
+
+		System.out.println("blender: " + best.getClass().getSimpleName());
+		for (boolean glyph : new boolean[] {
+				false, true
+		}) {
+			String name = glyph ? "glyph" : "solid";
+			double s = bench.measure(scalar, glyph);
+			double v = bench.measure(best, glyph);
+			System.out.println(String.format(
+					"%s: scalar %8.1f Mpx/s, %s %8.1f Mpx/s, %5.2fx %s", name,
+					s, best.getClass().getSimpleName(), v, v / s, bench.check(
+							scalar, best, glyph) ? "" : "(PIXELS DIFFER)"));
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import bifstk.config.Config;
+import bifstk.config.Fonts;
+import bifstk.config.Theme;
+import bifstk.gl.Atlas;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.SoftwareRasterizer;
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+
+/**
+ * Headless measure of the startup time of the fonts
+ * <p>
+ * Loads the theme and the fonts the way {@link bifstk.Bifstk} does, with the
+ * glyph sheets stored on disk disabled so that glyphs are rasterized. With
+ * <code>preload</code>, fonts are prepared in the background while the
+ * theme loads. Prints the duration of each step and a hash of the atlas,
+ * which must not depend on the mode or on the number of threads: run it
+ * again with <code>-Djava.util.concurrent.ForkJoinPool.common.parallelism=1</code>
+ * to rasterize the glyphs serially
+ *
+ */
+public class PreloadBenchmark {
+
+	public static void main(String[] args) throws BifstkException {
+		if (args.length < 1) {
+			System.out
+					.println("Usage: java PreloadBenchmark config [preload]");
+			System.exit(1);
+		}
+		boolean preload = args.length > 1 && args[1].equals("preload");
+
+		Config.set(Config.load(args[0]));
+		Config.get().setLoggerStdoutDebug(false);
+		Config.get().setFontSheets(false);
+		Logger.init();
+
+		// AWT font setup is not part of the measure
+		new java.awt.Font("Dialog", java.awt.Font.PLAIN, 12).getFamily();
+
+		long t0 = System.nanoTime();
+		if (preload) {
+			Fonts.preload();
+		}
+
+		Rasterizer.setInstance(new SoftwareRasterizer(800, 600, 1));
+		Theme.load(Config.get().getThemePath());
+		long t1 = System.nanoTime();
+		Fonts.load();
+		long t2 = System.nanoTime();
+
+		Atlas atlas = Atlas.getInstance();
+		int hash = 0;
+		for (int p = 0; p < atlas.getPageCount(); p++) {
+			hash = 31 * hash + Arrays.hashCode(atlas.getPixels(p));
+		}
+
+		System.out.println((preload ? "preload" : "direct") + ", "
+				+ ForkJoinPool.getCommonPoolParallelism() + " threads");
+		if (Runtime.getRuntime().availableProcessors() == 1) {
+			System.out.println("a single core cannot measure the speedup of "
+					+ "rasterizing the glyphs in parallel");
+		}
+		System.out.println(String.format("theme:      %8.2f ms",
+				(t1 - t0) / 1e6));
+		System.out.println(String.format("fonts:      %8.2f ms",
+				(t2 - t1) / 1e6));
+		System.out.println(String.format("total:      %8.2f ms",
+				(t2 - t0) / 1e6));
+		System.out.println(String.format("atlas hash: %08x", hash));
+	}
+}
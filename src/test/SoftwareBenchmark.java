@@ -0,0 +1,185 @@
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import bifstk.config.Config;
+import bifstk.config.Fonts;
+import bifstk.config.Theme;
+import bifstk.gl.Color;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.SoftwareRasterizer;
+import bifstk.gl.Util;
+import bifstk.util.BifstkException;
+import bifstk.util.Logger;
+import bifstk.wm.ui.Button;
+import bifstk.wm.ui.Checkbox;
+import bifstk.wm.ui.CustomBorder;
+import bifstk.wm.ui.FlowBox;
+import bifstk.wm.ui.Label;
+import bifstk.wm.ui.Widget;
+
+/**
+ * Headless benchmark of the software rasterizer
+ * <p>
+ * Renders a scene of overlapping windows with shadows, titlebars and widget
+ * content into an offscreen framebuffer, with an increasing number of
+ * rasterization threads, and checks that each run produces the same image
+ *
+ */
+public class SoftwareBenchmark {
+
+	private static final int WARMUP = 10;
+
+	private int width, height;
+
+	private int[] winX, winY, winW, winH;
+	private Widget[] contents;
+
+	private SoftwareBenchmark(int width, int height, int windows) {
+		this.width = width;
+		this.height = height;
+
+		this.winX = new int[windows];
+		this.winY = new int[windows];
+		this.winW = new int[windows];
+		this.winH = new int[windows];
+		this.contents = new Widget[windows];
+
+		Random rand = new Random(42);
+		for (int i = 0; i < windows; i++) {
+			FlowBox vBox = new FlowBox(FlowBox.Orientation.VERTICAL);
+			for (int j = 0; j < 4; j++) {
+				FlowBox h = new FlowBox(FlowBox.Orientation.HORIZONTAL);
+				h.addBegin(new Label("Property #" + j));
+				h.addEnd((j % 2 == 0) ? new Button("toggle") : new Checkbox(
+						true));
+				vBox.addBegin(new CustomBorder(h, 2));
+			}
+			vBox.addEnd(new Button("Close window " + i));
+
+			this.contents[i] = vBox;
+			this.winW[i] = Math.max(vBox.getWidth(), 180 + rand.nextInt(220));
+			this.winH[i] = Math.max(vBox.getHeight(), 120 + rand.nextInt(200));
+			vBox.setWidth(this.winW[i]);
+			vBox.setHeight(this.winH[i]);
+			this.winX[i] = rand.nextInt(Math.max(1, width - winW[i]));
+			this.winY[i] = rand.nextInt(Math.max(1, height - winH[i]));
+		}
+	}
+
+	/**
+	 * Draws the whole scene and flushes it
+	 */
+	private void renderFrame() {
+		Theme t = Theme.get();
+		Rasterizer r = Util.raster();
+		int b = t.windowBorderWidth;
+		int title = Fonts.getNormal().getHeight() + 4;
+
+		r.fillQuad(0, 0, width, height, t.rootBackgroundColor, 1.0f);
+
+		for (int i = 0; i < contents.length; i++) {
+			int x = winX[i], y = winY[i], w = winW[i], h = winH[i];
+			int fw = w + 2 * b, fh = h + 2 * b + title;
+
+			Util.drawShadowQuad(x, y, fw, fh, t.windowShadowAlpha,
+					t.windowShadowUnfocusedColor, false);
+
+			r.fillQuad(x, y, fw, title + b, t.windowTitlebarColor,
+					t.windowBorderColor, t.windowAlpha, t.windowAlpha);
+			r.fillQuad(x, y + title + b, b, h + b, t.windowBorderColor,
+					t.windowAlpha);
+			r.fillQuad(x + fw - b, y + title + b, b, h + b,
+					t.windowBorderColor, t.windowAlpha);
+			r.fillQuad(x + b, y + fh - b, w, b, t.windowBorderColor,
+					t.windowAlpha);
+			Fonts.getNormal().drawString(x + b + 2, y + 2, "Window #" + i,
+					Color.WHITE, 1.0f);
+
+			Rasterizer.pushTranslate(x + b, y + b + title);
+			Rasterizer.pushScissor(w, h);
+			contents[i].render(1.0f, t.windowColor, t.windowAlpha);
+			Rasterizer.popScissor();
+			Rasterizer.popTranslate();
+		}
+
+		r.flush();
+	}
+
+	/**
+	 * @param raster the software rasterizer
+	 * @param threads number of threads to use
+	 * @param frames number of measured frames
+	 * @return average milliseconds per frame
+	 */
+	private double run(SoftwareRasterizer raster, int threads, int frames) {
+		raster.setParallelism(threads);
+		for (int i = 0; i < WARMUP; i++) {
+			renderFrame();
+		}
+		long t0 = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			renderFrame();
+		}
+		return (System.nanoTime() - t0) / 1e6 / frames;
+	}
+
+	/**
+	 * @return the next thread count to measure: powers of two, then all cores
+	 */
+	private static int next(int threads, int cores) {
+		if (threads == cores)
+			return cores + 1;
+		return Math.min(threads * 2, cores);
+	}
+
+	public static void main(String[] args) throws BifstkException {
+		if (args.length < 1) {
+			System.out
+					.println("Usage: java SoftwareBenchmark config [width height windows frames]");
+			System.exit(1);
+		}
+		int width = (args.length > 1) ? Integer.parseInt(args[1]) : 3840;
+		int height = (args.length > 2) ? Integer.parseInt(args[2]) : 2160;
+		int windows = (args.length > 3) ? Integer.parseInt(args[3]) : 300;
+		int frames = (args.length > 4) ? Integer.parseInt(args[4]) : 20;
+
+		Config.set(Config.load(args[0]));
+		Config.get().setLoggerStdoutDebug(false);
+		Logger.init();
+
+		SoftwareRasterizer raster = new SoftwareRasterizer(width, height, 1);
+		Rasterizer.setInstance(raster);
+		Theme.load(Config.get().getThemePath());
+		Fonts.load();
+
+		SoftwareBenchmark bench = new SoftwareBenchmark(width, height, windows);
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(width + "x" + height + ", " + windows
+				+ " windows, " + cores + " cores");
+		if (cores == 1) {
+			System.out.println("a single core cannot measure the speedup: "
+					+ "run with -XX:ActiveProcessorCount=N to check "
+					+ "the image with N threads");
+		}
+
+		double base = 0.0;
+		int[] reference = null;
+		for (int threads = 1; threads <= cores; threads = next(threads, cores)) {
+			double ms = bench.run(raster, threads, frames);
+			if (threads == 1) {
+				base = ms;
+				reference = raster.getPixels().clone();
+			}
+			boolean same = Arrays.equals(reference, raster.getPixels());
+
+			System.out.println(String.format(
+					"threads %2d: %8.2f ms/frame  %5.2fx  %d quads %s", threads,
+					ms, base / ms, raster.getQuadCount(), same ? ""
+							: "(IMAGE DIFFERS)"));
+		}
+		raster.setParallelism(1);
+	}
+}
@@ -14,6 +14,7 @@ import bifstk.gl.Image;
 import bifstk.gl.Rasterizer;
 import bifstk.gl.Util;
 import bifstk.util.BifstkException;
+import bifstk.util.FrameStats;
 import bifstk.util.Logger;
 import bifstk.util.SharedFrameException;
 import bifstk.wm.Area;
@@ -39,16 +40,19 @@ public class Test implements Handler, Root {
 
 	private Label fpsLabel = null;
 	private Label quadsLabel = null;
+	private Label bytesLabel = null;
 
 	@Override
 	public void init() {
-		Area info = new Area(5, 5, 90, 50);
+		Area info = new Area(5, 5, 110, 65);
 		FlowBox fb = new FlowBox(Orientation.VERTICAL);
 
 		fpsLabel = new Label("FPS  : ");
 		quadsLabel = new Label("Quads: ");
+		bytesLabel = new Label("Bytes: ");
 		fb.addBegin(fpsLabel);
 		fb.addBegin(quadsLabel);
+		fb.addBegin(bytesLabel);
 
 		info.setContent(fb);
 		Bifstk.addArea(info);
@@ -67,6 +71,7 @@ public class Test implements Handler, Root {
 			fps_acc++;
 		}
 		quadsLabel.setText("Quads:" + Rasterizer.getInstance().getQuadCount());
+		bytesLabel.setText("Bytes:" + Rasterizer.getInstance().getByteCount());
 
 		// render background image
 		Image bgImg = TextureLoader.getBifstk256();
@@ -94,49 +99,7 @@ public class Test implements Handler, Root {
 
 		case Keyboard.KEY_C:
 			if (state) {
-				Window f = new Window(100, 100);
-				f.setTitle("Frame #" + frameCount++);
-
-				FlowBox vBox = new FlowBox(FlowBox.Orientation.VERTICAL);
-
-				FlowBox h1 = new FlowBox(FlowBox.Orientation.HORIZONTAL);
-				Button b1 = new Button("toggle");
-				b1.setAction("resize");
-				b1.setHandler(this);
-				h1.addBegin(new Label("Resizable"));
-				h1.addEnd(b1);
-
-				FlowBox h2 = new FlowBox(FlowBox.Orientation.HORIZONTAL);
-				Button b2 = new Button("toggle");
-				b2.setAction("title");
-				b2.setHandler(this);
-				h2.addBegin(new Label("Titlebar"));
-				h2.addEnd(b2);
-
-				FlowBox h3 = new FlowBox(FlowBox.Orientation.HORIZONTAL);
-				Checkbox c1 = new Checkbox(Config.get().isWmDebugLayout());
-				c1.setAction("debugLayout");
-				c1.setHandler(this);
-				h3.addBegin(new Label("Debug layout"));
-				h3.addEnd(c1);
-				h3.bindButton(c1);
-
-				AbstractButton b3 = new Button("Message");
-				b3.setAction("message");
-				b3.setHandler(this);
-
-				Text t1 = new Text();
-
-				vBox.addBegin(new CustomBorder(h1, 2));
-				vBox.addBegin(new CustomBorder(h2, 2));
-				vBox.addBegin(new CustomBorder(h3, 2));
-				vBox.addBegin(new CustomBorder(new Text(5), 2));
-				vBox.setExpand(new CustomBorder(t1.getScrollBox(), 2));
-				vBox.addEnd(b3);
-
-				f.setContent(vBox);
-				f.pack();
-				Bifstk.addWindow(f);
+				Bifstk.addWindow(createWindow(frameCount++, this));
 			}
 			break;
 
@@ -157,9 +120,70 @@ public class Test implements Handler, Root {
 			}
 			break;
 
+		case Keyboard.KEY_T:
+			if (state) {
+				for (FrameStats.Phase p : FrameStats.Phase.values()) {
+					Logger.info(FrameStats.getSummary(p).toString());
+				}
+			}
+			break;
+
 		}
 	}
 
+	/**
+	 * Creates the Window opened with the C key
+	 * 
+	 * @param number shown in the title of the Window
+	 * @param handler receives the actions of the widgets
+	 * @return the packed Window, not added to the WM
+	 */
+	static Window createWindow(int number, Handler handler) {
+		Window f = new Window(100, 100);
+		f.setTitle("Frame #" + number);
+
+		FlowBox vBox = new FlowBox(FlowBox.Orientation.VERTICAL);
+
+		FlowBox h1 = new FlowBox(FlowBox.Orientation.HORIZONTAL);
+		Button b1 = new Button("toggle");
+		b1.setAction("resize");
+		b1.setHandler(handler);
+		h1.addBegin(new Label("Resizable"));
+		h1.addEnd(b1);
+
+		FlowBox h2 = new FlowBox(FlowBox.Orientation.HORIZONTAL);
+		Button b2 = new Button("toggle");
+		b2.setAction("title");
+		b2.setHandler(handler);
+		h2.addBegin(new Label("Titlebar"));
+		h2.addEnd(b2);
+
+		FlowBox h3 = new FlowBox(FlowBox.Orientation.HORIZONTAL);
+		Checkbox c1 = new Checkbox(Config.get().isWmDebugLayout());
+		c1.setAction("debugLayout");
+		c1.setHandler(handler);
+		h3.addBegin(new Label("Debug layout"));
+		h3.addEnd(c1);
+		h3.bindButton(c1);
+
+		AbstractButton b3 = new Button("Message");
+		b3.setAction("message");
+		b3.setHandler(handler);
+
+		Text t1 = new Text();
+
+		vBox.addBegin(new CustomBorder(h1, 2));
+		vBox.addBegin(new CustomBorder(h2, 2));
+		vBox.addBegin(new CustomBorder(h3, 2));
+		vBox.addBegin(new CustomBorder(new Text(5), 2));
+		vBox.setExpand(new CustomBorder(t1.getScrollBox(), 2));
+		vBox.addEnd(b3);
+
+		f.setContent(vBox);
+		f.pack();
+		return f;
+	}
+
 	@Override
 	public void mouseEvent(int button, int x, int y, boolean state) {
 	}
@@ -0,0 +1,81 @@
+package test;
+
+import bifstk.config.TextureLoader;
+import bifstk.config.Theme;
+import bifstk.gl.Image;
+import bifstk.gl.Rasterizer;
+import bifstk.gl.Util;
+import bifstk.wm.Area;
+import bifstk.wm.Window;
+import bifstk.wm.ui.FlowBox;
+import bifstk.wm.ui.FlowBox.Orientation;
+import bifstk.wm.ui.Label;
+
+/**
+ * The scene of {@link Test} drawn without a display, for benchmarks
+ * <p>
+ * Holds the background image, the information Area and a number of the
+ * Windows opened with the C key, cascading from the top left corner, and
+ * draws them the way the WM does in the current Rasterizer
+ *
+ */
+class TestScene {
+
+	private int width, height;
+
+	private Area info;
+
+	private Window[] windows;
+
+	/**
+	 * Must be created once the theme and the fonts are loaded
+	 *
+	 * @param width display width
+	 * @param height display height
+	 * @param windows number of Windows
+	 */
+	TestScene(int width, int height, int windows) {
+		this.width = width;
+		this.height = height;
+
+		this.info = new Area(5, 5, 110, 65);
+		FlowBox fb = new FlowBox(Orientation.VERTICAL);
+		fb.addBegin(new Label("FPS  : 120"));
+		fb.addBegin(new Label("Quads: 1000"));
+		fb.addBegin(new Label("Bytes: 48000"));
+		this.info.setContent(fb);
+
+		this.windows = new Window[windows];
+		for (int i = 0; i < windows; i++) {
+			Window w = Test.createWindow(i + 1, null);
+			w.setPos(20 + (i * 37) % Math.max(1, width - w.getWidth() - 20),
+					20 + (i * 23) % Math.max(1, height - w.getHeight() - 20));
+			this.windows[i] = w;
+		}
+	}
+
+	/**
+	 * Records the whole scene in the current Rasterizer, without flushing
+	 */
+	void render() {
+		Rasterizer r = Util.raster();
+		Theme t = Theme.get();
+
+		r.fillQuad(0, 0, this.width, this.height, t.rootBackgroundColor,
+				1.0f);
+		Image bg = TextureLoader.getBifstk256();
+		r.fillQuad((this.width - bg.getWidth()) / 2,
+				(this.height - bg.getHeight()) / 2, bg, 1.0f);
+
+		this.info.render(1.0f, this.info.getUiColor(), this.info.getUiAlpha());
+
+		for (Window w : this.windows) {
+			if (t.windowShadowEnabled) {
+				Util.drawShadowQuad(w.getX(), w.getY(), w.getWidth(),
+						w.getHeight(), t.windowShadowAlpha,
+						w.getShadowColor(), false);
+			}
+			w.render(1.0f, w.getUiColor(), w.getUiAlpha());
+		}
+	}
+}